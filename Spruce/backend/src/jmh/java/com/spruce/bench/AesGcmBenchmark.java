@@ -0,0 +1,101 @@
+package com.spruce.bench;
+
+import com.spruce.service.CryptoService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import javax.crypto.Cipher;
+import javax.crypto.spec.GCMParameterSpec;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.charset.StandardCharsets;
+import java.security.SecureRandom;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * AES-GCM through {@link CryptoService}: the byte[] API and the Base64 String wrappers,
+ * against the previous implementation (a provider lookup per call, Base64 Strings throughout).
+ * Run with {@code -prof gc} to compare bytes allocated per operation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AesGcmBenchmark {
+
+    @Param({"64", "1024", "16384"})
+    int payloadSize;
+
+    private CryptoService cryptoService;
+    private final SecureRandom random = new SecureRandom();
+    private byte[] sessionKey;
+    private byte[] plaintextBytes;
+    private String plaintext;
+    private byte[] sealed;
+    private CryptoService.AESResult encrypted;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cryptoService = BenchSupport.cryptoService();
+        sessionKey = new byte[32];
+        random.nextBytes(sessionKey);
+        char[] chars = new char[payloadSize];
+        Arrays.fill(chars, 'x');
+        plaintext = new String(chars);
+        plaintextBytes = plaintext.getBytes(StandardCharsets.UTF_8);
+        sealed = cryptoService.encryptMessage(plaintextBytes, sessionKey);
+        encrypted = cryptoService.encryptMessage(plaintext, sessionKey);
+    }
+
+    @Benchmark
+    public byte[] encryptBytes() {
+        return cryptoService.encryptMessage(plaintextBytes, sessionKey);
+    }
+
+    @Benchmark
+    public CryptoService.AESResult encryptString() {
+        return cryptoService.encryptMessage(plaintext, sessionKey);
+    }
+
+    @Benchmark
+    public CryptoService.AESResult encryptLegacy() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        byte[] iv = new byte[12];
+        random.nextBytes(iv);
+        cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(sessionKey, "AES"), new GCMParameterSpec(128, iv));
+        byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
+        return new CryptoService.AESResult(Base64.getEncoder().encodeToString(ciphertext), Base64.getEncoder().encodeToString(iv));
+    }
+
+    @Benchmark
+    public byte[] decryptBytes() {
+        return cryptoService.decryptMessage(sealed, sessionKey);
+    }
+
+    @Benchmark
+    public String decryptString() {
+        return cryptoService.decryptMessage(encrypted.ciphertext, encrypted.iv, sessionKey);
+    }
+
+    @Benchmark
+    public String decryptLegacy() throws Exception {
+        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
+        byte[] iv = Base64.getDecoder().decode(encrypted.iv);
+        cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(sessionKey, "AES"), new GCMParameterSpec(128, iv));
+        byte[] plain = cipher.doFinal(Base64.getDecoder().decode(encrypted.ciphertext));
+        return new String(plain, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,81 @@
+package com.spruce.bench;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Compares a JMH JSON result ({@code -rf json}) with a stored baseline and exits non-zero when
+ * any benchmark regressed by more than the threshold: less throughput, or more time per
+ * operation. Allocation per operation ({@code -prof gc}) is reported alongside, not judged.
+ *
+ * <pre>
+ * BaselineComparison baseline.json result.json [threshold percent, default 10]
+ * </pre>
+ */
+public final class BaselineComparison {
+
+    private static final String ALLOC = "gc.alloc.rate.norm";
+
+    private BaselineComparison() {
+    }
+
+    public static void main(String[] args) throws IOException {
+        if (args.length < 2) {
+            System.err.println("usage: BaselineComparison <baseline.json> <result.json> [threshold %]");
+            System.exit(2);
+        }
+        double threshold = args.length > 2 ? Double.parseDouble(args[2]) : 10;
+        Map<String, JsonNode> baseline = load(new File(args[0]));
+        Map<String, JsonNode> result = load(new File(args[1]));
+
+        int regressions = 0;
+        System.out.printf("%-72s %5s %14s %14s %8s %12s%n", "Benchmark", "Mode", "Baseline", "Result", "Change", "Alloc B/op");
+        for (Map.Entry<String, JsonNode> entry : result.entrySet()) {
+            JsonNode run = entry.getValue();
+            JsonNode before = baseline.get(entry.getKey());
+            double score = run.path("primaryMetric").path("score").asDouble();
+            String mode = run.path("mode").asText();
+            String name = entry.getKey().substring(0, entry.getKey().lastIndexOf('|'));
+            String alloc = run.path("secondaryMetrics").has(ALLOC)
+                ? String.format("%.0f", run.path("secondaryMetrics").path(ALLOC).path("score").asDouble()) : "-";
+            if (before == null) {
+                System.out.printf("%-72s %5s %14s %14.5g %8s %12s%n", name, mode, "-", score, "new", alloc);
+                continue;
+            }
+            double previous = before.path("primaryMetric").path("score").asDouble();
+            double change = (score - previous) / previous * 100;
+            // Throughput should not fall; time per operation should not rise
+            boolean regressed = "thrpt".equals(mode) ? change < -threshold : change > threshold;
+            if (regressed) {
+                regressions++;
+            }
+            System.out.printf("%-72s %5s %14.5g %14.5g %+7.1f%% %12s%s%n", name, mode, previous, score, change, alloc,
+                regressed ? "  REGRESSED" : "");
+        }
+
+        System.out.printf("%n%d of %d benchmarks regressed by more than %.0f%%%n", regressions, result.size(), threshold);
+        if (regressions > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Runs by benchmark, mode and parameters, e.g. {@code ...AllCores.encryptMessage [payloadSize=64]}.
+     */
+    private static Map<String, JsonNode> load(File file) throws IOException {
+        Map<String, JsonNode> runs = new LinkedHashMap<>();
+        for (JsonNode run : new ObjectMapper().readTree(file)) {
+            StringBuilder key = new StringBuilder(run.path("benchmark").asText().replace("com.spruce.bench.", ""));
+            if (run.has("params")) {
+                key.append(' ').append(run.path("params").toString().replace("\"", "").replace(':', '=').replace('{', '[').replace('}', ']'));
+            }
+            runs.put(key + "|" + run.path("mode").asText(), run);
+        }
+        return runs;
+    }
+}
@@ -0,0 +1,52 @@
+package com.spruce.bench;
+
+import com.spruce.config.CryptoProperties;
+import com.spruce.config.LogProperties;
+import com.spruce.crypto.EphemeralKeyPools;
+import com.spruce.crypto.GcmIvGenerator;
+import com.spruce.crypto.RandomSource;
+import com.spruce.crypto.SessionKeyCache;
+import com.spruce.crypto.VerificationExecutor;
+import com.spruce.logging.AsyncLogWriter;
+import com.spruce.logging.LogCategory;
+import com.spruce.service.CryptoService;
+import com.spruce.service.LogService;
+
+import java.util.List;
+
+/**
+ * Services wired the way the application wires them, minus Spring and the database.
+ */
+final class BenchSupport {
+
+    private BenchSupport() {
+    }
+
+    /**
+     * A log service with the application's CRYPTO rate limit whose writer discards events.
+     */
+    static LogService logService() {
+        LogProperties properties = new LogProperties();
+        LogProperties.CategoryPolicy crypto = new LogProperties.CategoryPolicy();
+        crypto.setMaxPerSecond(50);
+        properties.getCategories().put(LogCategory.CRYPTO, crypto);
+
+        AsyncLogWriter writer = new AsyncLogWriter(properties, List.of());
+        writer.start();
+        LogService logService = new LogService(null, writer, null, null, properties);
+        logService.init();
+        return logService;
+    }
+
+    /**
+     * A crypto service with its keypair pools disabled, so key generation is measured in full.
+     */
+    static CryptoService cryptoService() {
+        CryptoProperties properties = new CryptoProperties();
+        properties.getKeyPool().setX25519Depth(0);
+        properties.getKeyPool().setKyberDepth(0);
+        RandomSource randomSource = new RandomSource(properties);
+        return new CryptoService(logService(), new SessionKeyCache(properties), new EphemeralKeyPools(properties, randomSource),
+            new VerificationExecutor(properties), randomSource, new GcmIvGenerator(randomSource));
+    }
+}
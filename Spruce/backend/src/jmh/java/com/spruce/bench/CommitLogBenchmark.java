@@ -0,0 +1,242 @@
+package com.spruce.bench;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spruce.config.RelayProperties;
+import com.spruce.model.DeliveryChannel;
+import com.spruce.model.MessagePacket;
+import com.spruce.store.CommitLog;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * {@link CommitLog} appends, with and without waiting for the group commit, and recovery
+ * of a log holding many recipients or many gigabytes. Logs go to a temporary directory,
+ * so point {@code java.io.tmpdir} at the disk the relay would use.
+ */
+@Fork(1)
+public class CommitLogBenchmark {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().findAndRegisterModules();
+
+    /**
+     * Every thread appending for its own recipient, acknowledging every {@code ACK_EVERY}
+     * packets the way a consumer that keeps up would, so sealed segments get deleted.
+     * Runs on every core so sync appends share forces; compare with {@code -t 1}.
+     */
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.Throughput)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 3, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Threads(Threads.MAX)
+    public static class Append {
+
+        private static final int ACK_EVERY = 64;
+
+        @Param({"false", "true"})
+        boolean sync;
+
+        @Param({"256", "4096"})
+        int payloadSize;
+
+        Path directory;
+        CommitLog commitLog;
+        String content;
+        final AtomicInteger recipients = new AtomicInteger();
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            directory = Files.createTempDirectory("commit-log-bench");
+            commitLog = open(directory, sync);
+            commitLog.recover();
+            content = "x".repeat(payloadSize);
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            commitLog.close();
+            delete(directory);
+        }
+
+        @State(Scope.Thread)
+        public static class Recipient {
+
+            String name;
+            long seq;
+
+            @Setup(Level.Trial)
+            public void setup(Append append) {
+                name = "recipient-" + append.recipients.incrementAndGet();
+            }
+        }
+
+        @Benchmark
+        public long appendAndAcknowledge(Recipient recipient) {
+            MessagePacket packet = new MessagePacket("sender", recipient.name, content, "nonce", null);
+            packet.setSeq(++recipient.seq);
+            commitLog.append(DeliveryChannel.MESSAGES, packet);
+            if (recipient.seq % ACK_EVERY == 0) {
+                commitLog.acknowledge(DeliveryChannel.MESSAGES, recipient.name, recipient.seq);
+            }
+            return recipient.seq;
+        }
+    }
+
+    /**
+     * Replaying a log with one packet for each of {@code recipients} recipients, nine in
+     * ten of them acknowledged, spread over 1 MB segments.
+     */
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.AverageTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    @Warmup(iterations = 2, time = 2)
+    @Measurement(iterations = 5, time = 2)
+    @Threads(1)
+    public static class Recovery {
+
+        @Param({"10000", "100000"})
+        int recipients;
+
+        Path directory;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            directory = Files.createTempDirectory("commit-log-bench");
+            CommitLog commitLog = open(directory, false);
+            commitLog.recover();
+            String content = "x".repeat(256);
+            for (int i = 0; i < recipients; i++) {
+                MessagePacket packet = new MessagePacket("sender", "recipient-" + i, content, "nonce", null);
+                packet.setSeq(1);
+                commitLog.append(DeliveryChannel.MESSAGES, packet);
+                if (i % 10 != 0) {
+                    commitLog.acknowledge(DeliveryChannel.MESSAGES, packet.getRecipient(), 1);
+                }
+            }
+            commitLog.close();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(directory);
+        }
+
+        @Benchmark
+        public List<CommitLog.RecoveredQueue> recover() {
+            CommitLog commitLog = open(directory, false);
+            try {
+                return commitLog.recover();
+            } finally {
+                commitLog.close();
+            }
+        }
+    }
+
+    /**
+     * Replaying a log of about {@code logSizeMb} on disk, the size a relay reaches when one
+     * recipient stops reading: 4 KB packets for a thousand recipients who acknowledge as they
+     * go, plus one packet per 64 MB segment for a recipient who never does, so no segment is
+     * deleted. Writing the log takes several minutes and needs that much free disk under
+     * {@code java.io.tmpdir}; pass {@code -p logSizeMb=1024} for a quicker run. Pick a size
+     * well above RAM to measure replay from disk rather than from the page cache.
+     */
+    @State(Scope.Benchmark)
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.SECONDS)
+    @Warmup(iterations = 1)
+    @Measurement(iterations = 3)
+    @Threads(1)
+    @Fork(1)
+    public static class LargeRecovery {
+
+        private static final int SEGMENT_SIZE_MB = 64;
+        private static final int RECIPIENTS = 1000;
+
+        @Param({"10240"})
+        int logSizeMb;
+
+        Path directory;
+
+        @Setup(Level.Trial)
+        public void setup() throws IOException {
+            directory = Files.createTempDirectory("commit-log-bench");
+            CommitLog commitLog = open(directory, false, SEGMENT_SIZE_MB);
+            commitLog.recover();
+            String content = "x".repeat(4096);
+            long[] seqs = new long[RECIPIENTS];
+            long laggingSeq = 0;
+            int pinnedSegments = 0;
+            int segments = Math.max(1, logSizeMb / SEGMENT_SIZE_MB);
+            for (int i = 0; pinnedSegments < segments; i++) {
+                if (commitLog.getSegmentCount() > pinnedSegments) {
+                    MessagePacket pin = new MessagePacket("sender", "lagging", content, "nonce", null);
+                    pin.setSeq(++laggingSeq);
+                    commitLog.append(DeliveryChannel.MESSAGES, pin);
+                    pinnedSegments++;
+                }
+                int recipient = i % RECIPIENTS;
+                MessagePacket packet = new MessagePacket("sender", "recipient-" + recipient, content, "nonce", null);
+                packet.setSeq(++seqs[recipient]);
+                commitLog.append(DeliveryChannel.MESSAGES, packet);
+                commitLog.acknowledge(DeliveryChannel.MESSAGES, packet.getRecipient(), packet.getSeq());
+            }
+            commitLog.close();
+        }
+
+        @TearDown(Level.Trial)
+        public void tearDown() throws IOException {
+            delete(directory);
+        }
+
+        @Benchmark
+        public List<CommitLog.RecoveredQueue> recover() {
+            CommitLog commitLog = open(directory, false, SEGMENT_SIZE_MB);
+            try {
+                return commitLog.recover();
+            } finally {
+                commitLog.close();
+            }
+        }
+    }
+
+    private static CommitLog open(Path directory, boolean sync) {
+        return open(directory, sync, 1);
+    }
+
+    private static CommitLog open(Path directory, boolean sync, int segmentSizeMb) {
+        RelayProperties properties = new RelayProperties();
+        RelayProperties.CommitLog config = properties.getCommitLog();
+        config.setEnabled(true);
+        config.setDirectory(directory.toString());
+        config.setSegmentSizeMb(segmentSizeMb);
+        config.setSync(sync);
+        return new CommitLog(properties, MAPPER);
+    }
+
+    private static void delete(Path directory) throws IOException {
+        try (Stream<Path> files = Files.walk(directory)) {
+            files.sorted(Comparator.reverseOrder()).forEach(path -> path.toFile().delete());
+        }
+    }
+}
@@ -0,0 +1,144 @@
+package com.spruce.bench;
+
+import com.spruce.service.CryptoService;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Every {@link CryptoService} primitive on the handshake and message paths, in throughput and
+ * average time. {@link SingleThread} runs them on one thread and {@link AllCores} on one
+ * thread per core, so contention shows up as the gap between the two.
+ *
+ * The keypair pools are not started (see {@link BenchSupport}), so key generation is
+ * measured in full. Run with {@code -prof gc} for allocation, and compare the JSON result
+ * with the stored baseline through the {@code compare} execution of the jmh profile.
+ */
+@BenchmarkMode({Mode.Throughput, Mode.AverageTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public abstract class CryptoPrimitivesBenchmark {
+
+    @Threads(1)
+    public static class SingleThread extends CryptoPrimitivesBenchmark {
+    }
+
+    @Threads(Threads.MAX)
+    public static class AllCores extends CryptoPrimitivesBenchmark {
+    }
+
+    /**
+     * Keys and ciphertexts for one side of a handshake, shared read-only by all threads.
+     */
+    @State(Scope.Benchmark)
+    public static class Handshake {
+
+        CryptoService cryptoService;
+        byte[] x25519PrivateKey;
+        byte[] peerX25519PublicKey;
+        String kyberPublicKey;
+        String kyberPrivateKey;
+        String kyberCiphertext;
+        byte[] x25519Secret;
+        byte[] kyberSecret;
+
+        @Setup(Level.Trial)
+        public void setup() {
+            cryptoService = BenchSupport.cryptoService();
+            Base64.Decoder decoder = Base64.getDecoder();
+            x25519PrivateKey = decoder.decode(cryptoService.generateX25519KeyPair().privateKey);
+            peerX25519PublicKey = decoder.decode(cryptoService.generateX25519KeyPair().publicKey);
+            CryptoService.KyberKeyPair kyber = cryptoService.generateKyberKeyPair();
+            kyberPublicKey = kyber.publicKey;
+            kyberPrivateKey = kyber.privateKey;
+            CryptoService.KyberResult encapsulated = cryptoService.simulateKyberEncapsulation(kyberPublicKey);
+            kyberCiphertext = encapsulated.ciphertext;
+            kyberSecret = decoder.decode(encapsulated.sharedSecret);
+            x25519Secret = cryptoService.performX25519Agreement(x25519PrivateKey, peerX25519PublicKey);
+        }
+    }
+
+    /**
+     * A session key and a payload of each size, sealed once for the decrypt benchmark.
+     */
+    @State(Scope.Benchmark)
+    public static class Payload {
+
+        // Calls that get the AES-GCM paths compiled with their intrinsics, as on a relay that has been running
+        private static final int JIT_WARMUP_CALLS = 20_000;
+
+        @Param({"64", "1024", "16384", "262144", "1048576"})
+        int payloadSize;
+
+        byte[] sessionKey;
+        byte[] plaintext;
+        byte[] sealed;
+
+        @Setup(Level.Trial)
+        public void setup(Handshake handshake) {
+            SecureRandom random = new SecureRandom();
+            sessionKey = new byte[32];
+            random.nextBytes(sessionKey);
+            plaintext = new byte[payloadSize];
+            random.nextBytes(plaintext);
+            sealed = handshake.cryptoService.encryptMessage(plaintext, sessionKey);
+
+            // A 1 MB payload makes too few calls in the warmup iterations to get there itself
+            byte[] small = new byte[1024];
+            for (int i = 0; i < JIT_WARMUP_CALLS; i++) {
+                handshake.cryptoService.decryptMessage(handshake.cryptoService.encryptMessage(small, sessionKey), sessionKey);
+            }
+        }
+    }
+
+    @Benchmark
+    public CryptoService.X25519KeyPair generateX25519KeyPair(Handshake handshake) {
+        return handshake.cryptoService.generateX25519KeyPair();
+    }
+
+    @Benchmark
+    public byte[] performX25519Agreement(Handshake handshake) {
+        return handshake.cryptoService.performX25519Agreement(handshake.x25519PrivateKey, handshake.peerX25519PublicKey);
+    }
+
+    @Benchmark
+    public CryptoService.KyberResult kyberEncapsulate(Handshake handshake) {
+        return handshake.cryptoService.simulateKyberEncapsulation(handshake.kyberPublicKey);
+    }
+
+    @Benchmark
+    public String kyberDecapsulate(Handshake handshake) {
+        return handshake.cryptoService.decapsulateKyber(handshake.kyberCiphertext, handshake.kyberPrivateKey);
+    }
+
+    @Benchmark
+    public byte[] deriveSessionKey(Handshake handshake) {
+        return handshake.cryptoService.deriveSessionKey(handshake.x25519Secret, handshake.kyberSecret);
+    }
+
+    @Benchmark
+    public byte[] encryptMessage(Handshake handshake, Payload payload) {
+        return handshake.cryptoService.encryptMessage(payload.plaintext, payload.sessionKey);
+    }
+
+    @Benchmark
+    public byte[] decryptMessage(Handshake handshake, Payload payload) {
+        return handshake.cryptoService.decryptMessage(payload.sealed, payload.sessionKey);
+    }
+}
@@ -0,0 +1,95 @@
+package com.spruce.bench;
+
+import com.spruce.config.CryptoProperties;
+import com.spruce.crypto.GcmIvGenerator;
+import com.spruce.crypto.RandomSource;
+import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.bouncycastle.crypto.generators.X25519KeyPairGenerator;
+import org.bouncycastle.crypto.params.X25519KeyGenerationParameters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * GCM IVs and X25519 key generation from one shared {@link SecureRandom} (the previous
+ * implementation) against {@link RandomSource}'s per-thread DRBGs and {@link GcmIvGenerator}.
+ * Runs on every core by default; compare with {@code -t 1} to see how each scales.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+@Fork(1)
+public class RandomBenchmark {
+
+    private final SecureRandom shared = new SecureRandom();
+    private RandomSource randomSource;
+    private GcmIvGenerator ivGenerator;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        randomSource = new RandomSource(new CryptoProperties());
+        ivGenerator = new GcmIvGenerator(randomSource);
+    }
+
+    /**
+     * One generator per benchmark thread, the way the key pools' fallback generators are kept.
+     */
+    @State(Scope.Thread)
+    public static class Generators {
+
+        X25519KeyPairGenerator sharedRandom;
+        X25519KeyPairGenerator perThreadRandom;
+        final byte[] iv = new byte[GcmIvGenerator.IV_LENGTH];
+
+        @Setup(Level.Trial)
+        public void setup(RandomBenchmark benchmark) {
+            sharedRandom = new X25519KeyPairGenerator();
+            sharedRandom.init(new X25519KeyGenerationParameters(benchmark.shared));
+            perThreadRandom = new X25519KeyPairGenerator();
+            perThreadRandom.init(new X25519KeyGenerationParameters(benchmark.randomSource.secureRandom()));
+        }
+    }
+
+    @Benchmark
+    public byte[] ivSharedSecureRandom(Generators generators) {
+        shared.nextBytes(generators.iv);
+        return generators.iv;
+    }
+
+    @Benchmark
+    public byte[] ivPerThreadDrbg(Generators generators) {
+        randomSource.nextBytes(generators.iv);
+        return generators.iv;
+    }
+
+    @Benchmark
+    public byte[] ivCounter(Generators generators) {
+        ivGenerator.next(generators.iv, 0);
+        return generators.iv;
+    }
+
+    @Benchmark
+    public AsymmetricCipherKeyPair x25519SharedSecureRandom(Generators generators) {
+        return generators.sharedRandom.generateKeyPair();
+    }
+
+    @Benchmark
+    public AsymmetricCipherKeyPair x25519PerThreadDrbg(Generators generators) {
+        return generators.perThreadRandom.generateKeyPair();
+    }
+}
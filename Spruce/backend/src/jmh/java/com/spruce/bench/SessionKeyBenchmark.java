@@ -0,0 +1,77 @@
+package com.spruce.bench;
+
+import com.spruce.service.CryptoService;
+import org.bouncycastle.crypto.digests.SHA256Digest;
+import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
+import org.bouncycastle.crypto.params.HKDFParameters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.SecureRandom;
+import java.util.Base64;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hybrid session key derivation with cached digest and HKDF instances, against the previous
+ * implementation (new MessageDigest and HKDF generator per call, Base64 Kyber secret).
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SessionKeyBenchmark {
+
+    private CryptoService cryptoService;
+    private byte[] x25519Secret;
+    private byte[] kyberSecret;
+    private String kyberSecretBase64;
+
+    @Setup(Level.Trial)
+    public void setup() {
+        cryptoService = BenchSupport.cryptoService();
+        SecureRandom random = new SecureRandom();
+        x25519Secret = new byte[32];
+        kyberSecret = new byte[32];
+        random.nextBytes(x25519Secret);
+        random.nextBytes(kyberSecret);
+        kyberSecretBase64 = Base64.getEncoder().encodeToString(kyberSecret);
+    }
+
+    @Benchmark
+    public byte[] deriveBytes() {
+        return cryptoService.deriveSessionKey(x25519Secret, kyberSecret);
+    }
+
+    @Benchmark
+    public byte[] deriveBase64() {
+        return cryptoService.deriveSessionKey(x25519Secret, kyberSecretBase64);
+    }
+
+    @Benchmark
+    public byte[] deriveLegacy() throws Exception {
+        byte[] kyber = Base64.getDecoder().decode(kyberSecretBase64);
+        byte[] combined = new byte[x25519Secret.length + kyber.length];
+        System.arraycopy(x25519Secret, 0, combined, 0, x25519Secret.length);
+        System.arraycopy(kyber, 0, combined, x25519Secret.length, kyber.length);
+        byte[] seed = MessageDigest.getInstance("SHA-256").digest(combined);
+        HKDFBytesGenerator hkdf = new HKDFBytesGenerator(new SHA256Digest());
+        byte[] salt = "Spruce-Hybrid-Session".getBytes(StandardCharsets.UTF_8);
+        hkdf.init(new HKDFParameters(seed, salt, "Spruce-Hybrid-Session".getBytes(StandardCharsets.UTF_8)));
+        byte[] key = new byte[32];
+        hkdf.generateBytes(key, 0, 32);
+        return key;
+    }
+}
@@ -0,0 +1,109 @@
+package com.spruce.bench;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spruce.model.MessagePacket;
+import com.spruce.model.WirePacketModule;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+
+import java.io.IOException;
+import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A batch of packets in the JSON encoding (Base64 fields) against the binary one (raw bytes
+ * through {@link WirePacketModule}), with mappers configured the way Spring MVC configures its
+ * converters. Encoding is what the relay does for a receive, decoding what it does for a
+ * batch send: both end up as {@link MessagePacket}s with Base64 fields. HANDSHAKE packets carry
+ * the handshake JSON as content, which JSON escapes into a string and CBOR keeps as text.
+ * Encoded sizes are printed at setup; run with {@code -prof gc} to compare allocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class WireFormatBenchmark {
+
+    private static final int BATCH_SIZE = 20;
+
+    public enum Kind { MESSAGE, HANDSHAKE }
+
+    @Param({"MESSAGE", "HANDSHAKE"})
+    Kind kind;
+
+    @Param({"64", "1024", "16384"})
+    int payloadSize;
+
+    private final ObjectMapper json = Jackson2ObjectMapperBuilder.json().build();
+    private final ObjectMapper cbor = Jackson2ObjectMapperBuilder.cbor().modulesToInstall(new WirePacketModule()).build();
+
+    private List<MessagePacket> packets;
+    private byte[] jsonBytes;
+    private byte[] cborBytes;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        SecureRandom random = new SecureRandom();
+        packets = new ArrayList<>(BATCH_SIZE);
+        for (int i = 0; i < BATCH_SIZE; i++) {
+            MessagePacket packet = new MessagePacket("alice", "bob", null, base64(random, 12), "");
+            packet.setSeq(i + 1);
+            if (kind == Kind.MESSAGE) {
+                packet.setEncryptedContent(base64(random, payloadSize));
+                packets.add(packet);
+            } else {
+                // Ephemeral X25519 key, Kyber-768 ciphertext and a padding field, plus a Dilithium3 signature
+                packet.setEncryptedContent(String.format(
+                    "{\"ephemeralX25519PublicKey\":\"%s\",\"kyberCiphertext\":\"%s\",\"padding\":\"%s\",\"timestamp\":%d,\"signature\":\"%s\",\"success\":true}",
+                    base64(random, 32), base64(random, 1088), base64(random, payloadSize), System.currentTimeMillis(), base64(random, 3309)));
+                packets.add(packet);
+            }
+        }
+        jsonBytes = json.writeValueAsBytes(packets);
+        cborBytes = cbor.writeValueAsBytes(packets);
+        System.out.printf("%n%s %d B x %d: JSON %d bytes, CBOR %d bytes%n", kind, payloadSize, BATCH_SIZE, jsonBytes.length, cborBytes.length);
+    }
+
+    @Benchmark
+    public byte[] jsonEncode() throws IOException {
+        return json.writeValueAsBytes(packets);
+    }
+
+    @Benchmark
+    public byte[] cborEncode() throws IOException {
+        return cbor.writeValueAsBytes(packets);
+    }
+
+    @Benchmark
+    public List<MessagePacket> jsonDecode() throws IOException {
+        return json.readValue(jsonBytes, new TypeReference<List<MessagePacket>>() { });
+    }
+
+    @Benchmark
+    public List<MessagePacket> cborDecode() throws IOException {
+        return cbor.readValue(cborBytes, new TypeReference<List<MessagePacket>>() { });
+    }
+
+    private static String base64(SecureRandom random, int length) {
+        byte[] bytes = new byte[length];
+        random.nextBytes(bytes);
+        return Base64.getEncoder().encodeToString(bytes);
+    }
+}
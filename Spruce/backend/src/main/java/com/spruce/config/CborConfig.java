@@ -0,0 +1,29 @@
+package com.spruce.config;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.CBORFactory;
+import com.spruce.model.WirePacketModule;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.http.converter.json.Jackson2ObjectMapperBuilder;
+import org.springframework.http.converter.cbor.MappingJackson2CborHttpMessageConverter;
+
+/**
+ * Binary ({@code application/cbor}) encoding for the REST API.
+ * Controllers have one handler per endpoint; content negotiation picks JSON or CBOR from
+ * {@code Content-Type} and {@code Accept}, and JSON stays the default.
+ */
+@Configuration
+public class CborConfig {
+    
+    /**
+     * Takes the place of the default CBOR converter, after the JSON one, so a client that
+     * accepts anything still gets JSON.
+     */
+    @Bean
+    public MappingJackson2CborHttpMessageConverter cborHttpMessageConverter(Jackson2ObjectMapperBuilder builder) {
+        ObjectMapper mapper = builder.factory(new CBORFactory()).build();
+        mapper.registerModule(new WirePacketModule());
+        return new MappingJackson2CborHttpMessageConverter(mapper);
+    }
+}
@@ -0,0 +1,88 @@
+package com.spruce.config;
+
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Tunables for the crypto service, bound from the {@code spruce.crypto} prefix.
+ */
+@Component
+@ConfigurationProperties(prefix = "spruce.crypto")
+@Data
+public class CryptoProperties {
+    
+    private SessionCache sessionCache = new SessionCache();
+    
+    private KeyPool keyPool = new KeyPool();
+    
+    private Verification verification = new Verification();
+    
+    private Drbg drbg = new Drbg();
+    
+    private PublicKeyCache publicKeyCache = new PublicKeyCache();
+    
+    private Iv iv = new Iv();
+    
+    @Data
+    public static class SessionCache {
+        
+        /** Established session keys kept; the least recently used beyond this are evicted. */
+        private int maxEntries = 10_000;
+        
+        /** Lifetime of a cached session key from its derivation, however often it is used. */
+        private Duration ttl = Duration.ofHours(1);
+        
+        /** How often expired keys are looked for and zeroed. */
+        private long sweepIntervalMs = 60_000;
+    }
+    
+    @Data
+    public static class KeyPool {
+        
+        /** Ephemeral X25519 keypairs kept ready; zero disables the pool. */
+        private int x25519Depth = 256;
+        
+        /** Ephemeral Kyber-768 keypairs kept ready; zero disables the pool. */
+        private int kyberDepth = 64;
+        
+        /** Most keypairs of each kind generated per second in the background. */
+        private int refillPerSecond = 200;
+    }
+    
+    @Data
+    public static class Verification {
+        
+        /** Threads verifying signatures in parallel; zero or less means one per core. */
+        private int threads = 0;
+        
+        /** Verifications waiting for a thread; beyond this the submitting thread verifies itself. */
+        private int queueCapacity = 1024;
+    }
+    
+    @Data
+    public static class Drbg {
+        
+        /** How long a thread's DRBG runs before it is reseeded from the system entropy source. */
+        private Duration reseedInterval = Duration.ofMinutes(10);
+    }
+    
+    @Data
+    public static class PublicKeyCache {
+        
+        /** Users whose public keys are kept; the least recently used beyond this are evicted. */
+        private int maxEntries = 10_000;
+    }
+    
+    @Data
+    public static class Iv {
+        
+        /** Boot count behind the AES-GCM IV fixed field; blank draws the field at random per process. */
+        private String stateFile = "data/crypto/gcm-iv";
+        
+        /** Top byte of the IV fixed field; unique per instance that can hold the same keys. */
+        private int instanceId = 0;
+    }
+}
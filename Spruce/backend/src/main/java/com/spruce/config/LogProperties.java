@@ -0,0 +1,109 @@
+package com.spruce.config;
+
+import com.spruce.logging.LogCategory;
+import com.spruce.logging.LogFormat;
+import com.spruce.logging.LogOverflowPolicy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Tunables for the audit log pipeline, bound from the {@code spruce.log} prefix.
+ */
+@Component
+@ConfigurationProperties(prefix = "spruce.log")
+@Data
+public class LogProperties {
+    
+    /** Flat text log of every audit event. */
+    private String file = "logs/spruce-demo.log";
+    
+    /** Which of the text and binary log files are written. */
+    private LogFormat format = LogFormat.TEXT;
+    
+    /** Binary audit log, written when {@code format} is BINARY or BOTH. */
+    private String binaryFile = "logs/spruce-audit.slog";
+    
+    /** Distinct strings interned per binary log file; further ones are written inline. */
+    private int binaryDictionarySize = 65_536;
+    
+    /** Events the ring buffer holds between request threads and the writer; rounded up to a power of two. */
+    private int bufferCapacity = 8192;
+    
+    /** Maximum events the writer hands to the sinks at once. */
+    private int batchSize = 512;
+    
+    /** Recent events kept in memory for the admin console; rounded up to a power of two. */
+    private int tailCapacity = 1000;
+    
+    /** What a request thread does when the ring buffer is full. */
+    private LogOverflowPolicy overflowPolicy = LogOverflowPolicy.BLOCK;
+    
+    private Db db = new Db();
+    
+    private Retention retention = new Retention();
+    
+    /** Sampling and rate limits per category; categories without an entry log every event. */
+    private Map<LogCategory, CategoryPolicy> categories = new EnumMap<>(LogCategory.class);
+    
+    /** How often suppressed-event counts and summaries are written. */
+    private long summaryIntervalMs = 1_000;
+    
+    @Data
+    public static class CategoryPolicy {
+        
+        /** Write only periodic summaries with per-event counts, never individual events. */
+        private boolean summaryOnly = false;
+        
+        /** Fraction of events written individually; the rest are only counted. */
+        private double sampleRate = 1.0;
+        
+        /** Individual events per second before the rest are only counted; zero for no limit. */
+        private int maxPerSecond = 0;
+    }
+    
+    @Data
+    public static class Retention {
+        
+        /** Purge old log rows and file archives. */
+        private boolean enabled = true;
+        
+        /** Whole days older than this are removed from the {@code logs} table and the archives. */
+        private Duration maxAge = Duration.ofDays(7);
+        
+        /** How often expired day buckets are purged and archives compressed. */
+        private long purgeIntervalMs = 3_600_000;
+        
+        /** Rows per DELETE when purging without partitions. */
+        private int deleteChunk = 5_000;
+        
+        /** On MySQL, partition {@code logs} by day and drop expired partitions instead of deleting rows. */
+        private boolean partitioned = false;
+        
+        /** Daily partitions created ahead of time. */
+        private int partitionsAhead = 3;
+        
+        /** Roll the text log file once it reaches this size, in addition to daily. */
+        private long fileMaxSizeMb = 100;
+    }
+    
+    @Data
+    public static class Db {
+        
+        /** Persist events to the {@code logs} table. */
+        private boolean enabled = true;
+        
+        /** Flush once this many entries are pending; also the rows per JDBC batch. */
+        private int batchSize = 500;
+        
+        /** Flush pending entries at least this often. */
+        private long flushIntervalMs = 250;
+        
+        /** Entries kept while the database is failing; the oldest beyond this are dropped. */
+        private int maxPending = 20_000;
+    }
+}
@@ -0,0 +1,122 @@
+package com.spruce.config;
+
+import com.spruce.queue.OverflowPolicy;
+import lombok.Data;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+
+/**
+ * Tunables for the message relay, bound from the {@code spruce.relay} prefix.
+ */
+@Component
+@ConfigurationProperties(prefix = "spruce.relay")
+@Data
+public class RelayProperties {
+    
+    /** Message store implementation: {@code memory} or {@code jdbc}. */
+    private String store = "memory";
+    
+    /** Most packets a single batch request may carry; larger batches are refused with 413. */
+    private int maxBatch = 500;
+    
+    private Queue queue = new Queue();
+    
+    private Retention retention = new Retention();
+    
+    private CommitLog commitLog = new CommitLog();
+    
+    private Jdbc jdbc = new Jdbc();
+    
+    private Attachments attachments = new Attachments();
+    
+    private LongPoll longPoll = new LongPoll();
+    
+    private Push push = new Push();
+    
+    @Data
+    public static class Queue {
+        
+        /** Maximum packets held per recipient queue. */
+        private int capacity = 10_000;
+        
+        /** Maximum payload bytes held per recipient queue. */
+        private long maxBytes = 64L * 1024 * 1024;
+        
+        /** What to do with a packet that arrives while a queue is full. */
+        private OverflowPolicy overflowPolicy = OverflowPolicy.REJECT;
+    }
+    
+    @Data
+    public static class Retention {
+        
+        /** Lifetime of a queued packet that does not ask for one; zero keeps packets until acknowledged. */
+        private Duration defaultTtl = Duration.ofDays(7);
+        
+        /** Upper bound on a lifetime requested by the sender. */
+        private Duration maxTtl = Duration.ofDays(30);
+        
+        /** Resolution of the expiry sweeper. */
+        private long sweepIntervalMs = 1_000;
+    }
+    
+    @Data
+    public static class CommitLog {
+        
+        /** Persist queued packets to disk so they survive a restart. */
+        private boolean enabled = false;
+        
+        /** Directory holding the segment files. */
+        private String directory = "data/commit-log";
+        
+        /** Size of each memory-mapped segment file. */
+        private int segmentSizeMb = 64;
+        
+        /** Wait for the group-commit fsync before acknowledging a send. */
+        private boolean sync = true;
+    }
+    
+    @Data
+    public static class Jdbc {
+        
+        /** How long the batch writer waits for more senders before issuing the INSERT. */
+        private long batchWindowMs = 2;
+        
+        /** Maximum rows per multi-row INSERT. */
+        private int maxBatchSize = 256;
+    }
+    
+    @Data
+    public static class Attachments {
+        
+        /** Directory holding encrypted attachment blobs. */
+        private String directory = "data/attachments";
+        
+        /** Largest attachment accepted, encrypted size. */
+        private long maxSizeMb = 1024;
+        
+        /** How long an attachment is kept after upload. */
+        private Duration ttl = Duration.ofDays(7);
+        
+        /** How often expired attachments are looked for. */
+        private long sweepIntervalMs = 60_000;
+    }
+    
+    @Data
+    public static class LongPoll {
+        
+        /** Threads that complete parked long-poll requests when a sender wakes them. */
+        private int wakeThreads = 2;
+    }
+    
+    @Data
+    public static class Push {
+        
+        /** Threads that read queued packets and push them to online recipients. */
+        private int deliveryThreads = 2;
+        
+        /** Most seqs pushed to a session past its last acknowledgement. */
+        private int window = 256;
+    }
+}
@@ -0,0 +1,26 @@
+package com.spruce.config;
+
+import com.spruce.controller.RelayWebSocketHandler;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.web.socket.config.annotation.EnableWebSocket;
+import org.springframework.web.socket.config.annotation.WebSocketConfigurer;
+import org.springframework.web.socket.config.annotation.WebSocketHandlerRegistry;
+
+/**
+ * WebSocket configuration for Spruce backend.
+ * Exposes the push channel used by the frontend's websocketService at /ws.
+ */
+@Configuration
+@EnableWebSocket
+@RequiredArgsConstructor
+public class WebSocketConfig implements WebSocketConfigurer {
+    
+    private final RelayWebSocketHandler relayWebSocketHandler;
+    
+    @Override
+    public void registerWebSocketHandlers(WebSocketHandlerRegistry registry) {
+        registry.addHandler(relayWebSocketHandler, "/ws")
+            .setAllowedOriginPatterns("*");
+    }
+}
@@ -1,12 +1,22 @@
 package com.spruce.controller;
 
+import com.spruce.dto.LogQuery;
+import com.spruce.model.LogEntry;
+import com.spruce.service.AttachmentService;
+import com.spruce.service.CryptoService;
 import com.spruce.service.LogService;
+import com.spruce.service.LongPollService;
 import com.spruce.service.MessageService;
+import com.spruce.service.PushService;
+import com.spruce.service.UserService;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.format.annotation.DateTimeFormat;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
+import java.time.LocalDateTime;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -24,19 +34,57 @@ public class AdminController {
     
     private final LogService logService;
     private final MessageService messageService;
+    private final LongPollService longPollService;
+    private final PushService pushService;
+    private final CryptoService cryptoService;
+    private final AttachmentService attachmentService;
+    private final UserService userService;
     
     /**
      * Get recent system logs for admin console display.
+     * 
+     * Without filters this is the live tail. With any of category, level, from/to
+     * (ISO date-times), contains or before, the persisted log is queried newest first;
+     * pass the returned {@code nextBefore} as {@code before} to fetch the next page.
      */
     @GetMapping("/logs")
-    public ResponseEntity<Map<String, Object>> getLogs(@RequestParam(defaultValue = "100") int count) {
+    public ResponseEntity<Map<String, Object>> getLogs(
+            @RequestParam(defaultValue = "100") int count,
+            @RequestParam(required = false) String category,
+            @RequestParam(required = false) String level,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime from,
+            @RequestParam(required = false) @DateTimeFormat(iso = DateTimeFormat.ISO.DATE_TIME) LocalDateTime to,
+            @RequestParam(required = false) String contains,
+            @RequestParam(required = false) Long before) {
         try {
-            List<String> logs = logService.getRecentLogs(count);
+            LogQuery query = LogQuery.builder()
+                .category(category != null ? category.toUpperCase() : null)
+                .level(level != null ? level.toUpperCase() : null)
+                .from(from)
+                .to(to)
+                .contains(contains != null && !contains.isEmpty() ? contains : null)
+                .before(before)
+                .limit(Math.min(count, LogService.MAX_QUERY_LIMIT))
+                .build();
             
             Map<String, Object> response = new HashMap<>();
+            if (!query.isFiltered() && before == null) {
+                List<String> logs = logService.getRecentLogs(count);
+                response.put("logs", logs);
+                response.put("count", logs.size());
+            } else {
+                List<LogEntry> entries = logService.findLogs(query);
+                List<String> logs = new ArrayList<>(entries.size());
+                for (LogEntry entry : entries) {
+                    logs.add(entry.toLine());
+                }
+                response.put("logs", logs);
+                response.put("count", logs.size());
+                // A short page means there is nothing older to fetch
+                response.put("nextBefore", entries.isEmpty() || entries.size() < query.getLimit()
+                    ? null : entries.get(entries.size() - 1).getId());
+            }
             response.put("success", true);
-            response.put("logs", logs);
-            response.put("count", logs.size());
             response.put("timestamp", System.currentTimeMillis());
             
             return ResponseEntity.ok(response);
@@ -69,6 +117,21 @@ public class AdminController {
             response.put("handshakeQueues", handshakeStats);
             response.put("totalMessages", messageStats.values().stream().mapToInt(Integer::intValue).sum());
             response.put("totalHandshakes", handshakeStats.values().stream().mapToInt(Integer::intValue).sum());
+            response.put("expiredPackets", messageService.getExpiredCount());
+            response.put("rejectedPackets", messageService.getRejectedCount());
+            response.put("droppedLogEvents", logService.getDroppedLogCount());
+            response.put("logPersistence", logService.getPersistenceStats());
+            response.put("logRetention", logService.getRetentionStats());
+            response.put("suppressedLogEvents", logService.getSuppressedLogCounts());
+            response.put("sessionKeyCache", cryptoService.getSessionKeyCacheStats());
+            response.put("keyPools", cryptoService.getKeyPoolStats());
+            response.put("signatureVerification", cryptoService.getVerificationStats());
+            response.put("random", cryptoService.getRandomStats());
+            response.put("publicKeyCache", userService.getPublicKeyCacheStats());
+            response.put("attachments", attachmentService.getStats());
+            response.put("parkedRequests", longPollService.getParkedCount());
+            response.put("parkedUsers", longPollService.getParkedUserCount());
+            response.put("onlineUsers", pushService.getOnlineCount());
             response.put("timestamp", System.currentTimeMillis());
             
             return ResponseEntity.ok(response);
@@ -0,0 +1,108 @@
+package com.spruce.controller;
+
+import com.spruce.store.BlobStore;
+import com.spruce.store.BlobTooLargeException;
+import com.spruce.service.AttachmentService;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.NoSuchFileException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * REST controller for encrypted attachments.
+ * Bodies are raw {@code application/octet-stream} and are streamed, never buffered whole.
+ */
+@RestController
+@RequestMapping("/api/attachments")
+@RequiredArgsConstructor
+@Slf4j
+@CrossOrigin(origins = "*")
+public class AttachmentController {
+    
+    private final AttachmentService attachmentService;
+    
+    /**
+     * Upload an attachment already encrypted in the chunked attachment format.
+     */
+    @PostMapping(consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Map<String, Object>> upload(@RequestParam(required = false) String sender,
+                                                      HttpServletRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        if (request.getContentLengthLong() > attachmentService.getMaxBytes()) {
+            response.put("success", false);
+            response.put("message", "Attachment exceeds the size limit of " + attachmentService.getMaxBytes() + " bytes");
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(response);
+        }
+        try {
+            BlobStore.Blob blob = attachmentService.store(sender, request.getInputStream());
+            
+            response.put("success", true);
+            response.put("message", "Attachment stored");
+            response.put("attachmentId", blob.getId());
+            response.put("size", blob.getSize());
+            
+            return ResponseEntity.ok(response);
+        
+        } catch (BlobTooLargeException e) {
+            response.put("success", false);
+            response.put("message", e.getMessage());
+            return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(response);
+        
+        } catch (Exception e) {
+            log.error("Failed to store attachment from {}", sender, e);
+            
+            response.put("success", false);
+            response.put("message", "Failed to store attachment: " + e.getMessage());
+            
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * Download an attachment's encrypted bytes.
+     */
+    @GetMapping("/{id}")
+    public void download(@PathVariable String id, HttpServletResponse response) throws IOException {
+        try (FileChannel attachment = attachmentService.open(id)) {
+            response.setContentType(MediaType.APPLICATION_OCTET_STREAM_VALUE);
+            response.setContentLengthLong(attachment.size());
+            attachmentService.send(id, attachment, Channels.newChannel(response.getOutputStream()));
+        } catch (NoSuchFileException e) {
+            response.setStatus(HttpStatus.NOT_FOUND.value());
+        }
+    }
+    
+    /**
+     * Delete an attachment once its recipient has it.
+     */
+    @DeleteMapping("/{id}")
+    public ResponseEntity<Map<String, Object>> delete(@PathVariable String id) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            boolean deleted = attachmentService.delete(id);
+            response.put("success", deleted);
+            response.put("message", deleted ? "Attachment deleted" : "No such attachment");
+            
+            return deleted ? ResponseEntity.ok(response) : ResponseEntity.status(HttpStatus.NOT_FOUND).body(response);
+        
+        } catch (Exception e) {
+            log.error("Failed to delete attachment {}", id, e);
+            
+            response.put("success", false);
+            response.put("message", "Failed to delete attachment: " + e.getMessage());
+            
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+}
@@ -1,9 +1,15 @@
 package com.spruce.controller;
 
+import com.spruce.crypto.PublicKeyCache;
+import com.spruce.dto.KeyRotationRequest;
 import com.spruce.dto.PublicKeySet;
 import com.spruce.service.UserService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.CacheControl;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
 
@@ -13,12 +19,13 @@ import java.util.Map;
 /**
  * REST controller for public key management.
  * Handles retrieval of user public keys for handshake operations.
+ * Key lookups carry an ETag; clients that send it back in If-None-Match get 304 until the keys change.
  */
 @RestController
 @RequestMapping("/api/keys")
 @RequiredArgsConstructor
 @Slf4j
-@CrossOrigin(origins = "*")
+@CrossOrigin(origins = "*", exposedHeaders = HttpHeaders.ETAG)
 public class KeyController {
     
     private final UserService userService;
@@ -27,17 +34,24 @@ public class KeyController {
      * Get public keys for a specific user.
      */
     @GetMapping("/{username}")
-    public ResponseEntity<Map<String, Object>> getPublicKeys(@PathVariable String username) {
+    public ResponseEntity<Map<String, Object>> getPublicKeys(@PathVariable String username,
+                                                             @RequestHeader(value = HttpHeaders.IF_NONE_MATCH, required = false) String ifNoneMatch) {
         try {
-            PublicKeySet publicKeys = userService.getUserPublicKeys(username);
+            PublicKeyCache.Entry entry = userService.getPublicKeyEntry(username);
             
-            if (publicKeys == null) {
+            if (entry == null) {
                 Map<String, Object> response = new HashMap<>();
                 response.put("success", false);
                 response.put("message", "User not found: " + username);
                 return ResponseEntity.status(404).body(response);
             }
             
+            // Clients may keep the keys but must revalidate them before each use
+            if (matches(ifNoneMatch, entry.getEtag())) {
+                return ResponseEntity.status(HttpStatus.NOT_MODIFIED).eTag(entry.getEtag()).cacheControl(CacheControl.noCache()).build();
+            }
+            
+            PublicKeySet publicKeys = entry.getKeys();
             Map<String, Object> response = new HashMap<>();
             response.put("success", true);
             response.put("username", publicKeys.getUsername());
@@ -45,7 +59,7 @@ public class KeyController {
             response.put("kyberPublicKey", publicKeys.getKyberPublicKey());
             response.put("dilithiumPublicKey", publicKeys.getDilithiumPublicKey());
             
-            return ResponseEntity.ok(response);
+            return ResponseEntity.ok().eTag(entry.getEtag()).cacheControl(CacheControl.noCache()).body(response);
             
         } catch (Exception e) {
             log.error("Failed to retrieve public keys for user: {}", username, e);
@@ -58,6 +72,39 @@ public class KeyController {
         }
     }
     
+    /**
+     * Replace a user's public keys, e.g. after a device change or suspected compromise.
+     */
+    @PutMapping("/{username}")
+    public ResponseEntity<Map<String, Object>> rotateKeys(@PathVariable String username,
+                                                          @Valid @RequestBody KeyRotationRequest request) {
+        Map<String, Object> response = new HashMap<>();
+        try {
+            if (!userService.authenticateUser(username, request.getPassword())) {
+                response.put("success", false);
+                response.put("message", "Invalid credentials");
+                return ResponseEntity.status(HttpStatus.UNAUTHORIZED).body(response);
+            }
+            
+            userService.rotateKeys(username, request.getX25519PublicKey(), request.getKyberPublicKey(), request.getDilithiumPublicKey());
+            
+            response.put("success", true);
+            response.put("message", "Keys rotated");
+            response.put("username", username);
+            response.put("etag", userService.getPublicKeyEntry(username).getEtag());
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            log.error("Failed to rotate keys for user: {}", username, e);
+            
+            response.put("success", false);
+            response.put("message", "Error rotating keys: " + e.getMessage());
+            
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
     /**
      * Verify if a user exists and has registered keys.
      */
@@ -88,4 +135,24 @@ public class KeyController {
             return ResponseEntity.ok(response);
         }
     }
+    
+    /**
+     * Whether an If-None-Match header (a list of ETags, or *) matches the current ETag.
+     * Weak comparison, as RFC 9110 requires for If-None-Match.
+     */
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) {
+            return false;
+        }
+        for (String candidate : ifNoneMatch.split(",")) {
+            candidate = candidate.trim();
+            if (candidate.startsWith("W/")) {
+                candidate = candidate.substring(2);
+            }
+            if (candidate.equals("*") || candidate.equals(etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
 }
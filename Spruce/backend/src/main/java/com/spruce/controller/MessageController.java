@@ -1,11 +1,19 @@
 package com.spruce.controller;
 
+import com.spruce.config.RelayProperties;
+import com.spruce.model.DeliveryChannel;
+import com.spruce.dto.GroupMessageRequest;
+import com.spruce.dto.SendResult;
 import com.spruce.model.MessagePacket;
+import com.spruce.service.LongPollService;
 import com.spruce.service.MessageService;
+import jakarta.validation.Valid;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.async.DeferredResult;
 
 import java.util.HashMap;
 import java.util.List;
@@ -14,6 +22,10 @@ import java.util.Map;
 /**
  * REST controller for encrypted message transmission.
  * Handles sending and receiving encrypted messages between users.
+ * 
+ * Packets travel as JSON with Base64 fields by default. Send {@code Content-Type:
+ * application/cbor} or {@code Accept: application/cbor} for the binary encoding, in which
+ * Base64 fields are raw bytes (see {@link com.spruce.model.WirePacketModule}).
  */
 @RestController
 @RequestMapping("/api/messages")
@@ -22,7 +34,12 @@ import java.util.Map;
 @CrossOrigin(origins = "*")
 public class MessageController {
     
+    private static final int DEFAULT_RECEIVE_LIMIT = 100;
+    private static final int MAX_RECEIVE_LIMIT = 1000;
+    
     private final MessageService messageService;
+    private final LongPollService longPollService;
+    private final RelayProperties relayProperties;
     
     /**
      * Send an encrypted message to a recipient.
@@ -54,21 +71,83 @@ public class MessageController {
     }
     
     /**
-     * Receive messages for a specific user.
+     * Send several encrypted messages in one request, at most {@code spruce.relay.max-batch}.
+     * Each packet gets its own result; one failing packet does not fail the others.
      */
-    @GetMapping("/receive/{username}")
-    public ResponseEntity<Map<String, Object>> receiveMessages(@PathVariable String username) {
+    @PostMapping("/send-batch")
+    public ResponseEntity<Map<String, Object>> sendBatch(@RequestBody List<MessagePacket> messagePackets) {
+        if (messagePackets.size() > relayProperties.getMaxBatch()) {
+            return batchTooLarge(messagePackets.size());
+        }
         try {
-            List<MessagePacket> messages = messageService.getMessages(username);
+            List<SendResult> results = messageService.storeMessages(messagePackets);
+            long sent = results.stream().filter(SendResult::isSuccess).count();
             
             Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("messages", messages);
-            response.put("count", messages.size());
-            response.put("username", username);
+            response.put("success", sent == results.size());
+            response.put("message", String.format("Sent %d of %d messages", sent, results.size()));
+            response.put("results", results);
+            response.put("sent", sent);
+            response.put("failed", results.size() - sent);
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            log.error("Failed to send batch of {} messages", messagePackets.size(), e);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Failed to send batch: " + e.getMessage());
+            
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * Send one encrypted message to several recipients, each with their own key wrap.
+     */
+    @PostMapping("/send-group")
+    public ResponseEntity<Map<String, Object>> sendGroup(@Valid @RequestBody GroupMessageRequest request) {
+        try {
+            List<SendResult> results = messageService.storeGroupMessage(request);
+            long sent = results.stream().filter(SendResult::isSuccess).count();
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", sent == results.size());
+            response.put("message", String.format("Sent to %d of %d recipients", sent, results.size()));
+            response.put("results", results);
+            response.put("sent", sent);
+            response.put("failed", results.size() - sent);
             
             return ResponseEntity.ok(response);
             
+        } catch (Exception e) {
+            log.error("Failed to send group message from {}", request.getSender(), e);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Failed to send group message: " + e.getMessage());
+            
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * Receive messages for a specific user, a page of {@code limit} (default 100) at a time.
+     * With {@code after}, only messages queued after that sequence number are returned.
+     * Clients keeping a cursor also pass the {@code epoch} it came with; if the relay's
+     * sequence numbers have started over since, the cursor is ignored and the response
+     * carries {@code reset: true} with the new epoch.
+     */
+    @GetMapping("/receive/{username}")
+    public ResponseEntity<Map<String, Object>> receiveMessages(@PathVariable String username,
+                                                               @RequestParam(defaultValue = "0") long after,
+                                                               @RequestParam(required = false) Integer limit,
+                                                               @RequestParam(required = false) Long epoch) {
+        try {
+            long from = startAfter(after, epoch);
+            return messagesResponse(username, messageService.getMessages(username, from, clampLimit(limit)), from, epoch);
+            
         } catch (Exception e) {
             log.error("Failed to receive messages for user: {}", username, e);
             
@@ -82,6 +161,52 @@ public class MessageController {
         }
     }
     
+    /**
+     * Long-poll variant of message receive: parks the request until a message
+     * is queued for the user or {@code waitMs} elapses, without holding a thread.
+     */
+    @GetMapping(value = "/receive/{username}", params = "waitMs")
+    public DeferredResult<ResponseEntity<Map<String, Object>>> awaitMessages(@PathVariable String username,
+                                                                            @RequestParam long waitMs,
+                                                                            @RequestParam(defaultValue = "0") long after,
+                                                                            @RequestParam(required = false) Integer limit,
+                                                                            @RequestParam(required = false) Long epoch) {
+        int max = clampLimit(limit);
+        long from = startAfter(after, epoch);
+        return longPollService.park(username, DeliveryChannel.MESSAGES, waitMs,
+            () -> messageService.hasMessages(username, from),
+            () -> messagesResponse(username, messageService.getMessages(username, from, max), from, epoch),
+            () -> messagesResponse(username, List.of(), from, epoch));
+    }
+    
+    /**
+     * Acknowledge messages up to and including a sequence number, removing them from the queue.
+     */
+    @PostMapping("/ack/{username}")
+    public ResponseEntity<Map<String, Object>> acknowledgeMessages(@PathVariable String username,
+                                                                   @RequestParam long upTo) {
+        try {
+            int removed = messageService.acknowledgeMessages(username, upTo);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("removed", removed);
+            response.put("upTo", upTo);
+            response.put("username", username);
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            log.error("Failed to acknowledge messages for user: {}", username, e);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Failed to acknowledge messages: " + e.getMessage());
+            
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
     /**
      * Clear messages for a user after they've been retrieved.
      */
@@ -135,21 +260,52 @@ public class MessageController {
     }
     
     /**
-     * Receive handshake data for a user.
+     * Ingest several signed handshakes in one request, e.g. when clients reconnect together.
+     * Signatures are verified in parallel against each sender's registered key, and only
+     * verified handshakes are delivered; each packet gets its own result. Every entry costs a
+     * signature verification, so batches are capped like {@link #sendBatch}.
      */
-    @GetMapping("/handshake/{username}")
-    public ResponseEntity<Map<String, Object>> receiveHandshake(@PathVariable String username) {
+    @PostMapping("/handshake-batch")
+    public ResponseEntity<Map<String, Object>> ingestHandshakes(@RequestBody List<MessagePacket> handshakePackets) {
+        if (handshakePackets.size() > relayProperties.getMaxBatch()) {
+            return batchTooLarge(handshakePackets.size());
+        }
         try {
-            List<MessagePacket> handshakes = messageService.getHandshakeData(username);
+            List<SendResult> results = messageService.ingestHandshakes(handshakePackets);
+            long delivered = results.stream().filter(SendResult::isSuccess).count();
             
             Map<String, Object> response = new HashMap<>();
-            response.put("success", true);
-            response.put("handshakes", handshakes);
-            response.put("count", handshakes.size());
-            response.put("username", username);
+            response.put("success", delivered == results.size());
+            response.put("message", String.format("Delivered %d of %d handshakes", delivered, results.size()));
+            response.put("results", results);
+            response.put("delivered", delivered);
+            response.put("rejected", results.size() - delivered);
             
             return ResponseEntity.ok(response);
             
+        } catch (Exception e) {
+            log.error("Failed to ingest batch of {} handshakes", handshakePackets.size(), e);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Failed to ingest handshakes: " + e.getMessage());
+            
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    /**
+     * Receive handshake data for a user.
+     */
+    @GetMapping("/handshake/{username}")
+    public ResponseEntity<Map<String, Object>> receiveHandshake(@PathVariable String username,
+                                                                @RequestParam(defaultValue = "0") long after,
+                                                                @RequestParam(required = false) Integer limit,
+                                                                @RequestParam(required = false) Long epoch) {
+        try {
+            long from = startAfter(after, epoch);
+            return handshakesResponse(username, messageService.getHandshakeData(username, from, clampLimit(limit)), from, epoch);
+            
         } catch (Exception e) {
             log.error("Failed to receive handshake for user: {}", username, e);
             
@@ -162,4 +318,107 @@ public class MessageController {
             return ResponseEntity.ok(response);
         }
     }
+    
+    /**
+     * Long-poll variant of handshake receive.
+     */
+    @GetMapping(value = "/handshake/{username}", params = "waitMs")
+    public DeferredResult<ResponseEntity<Map<String, Object>>> awaitHandshake(@PathVariable String username,
+                                                                             @RequestParam long waitMs,
+                                                                             @RequestParam(defaultValue = "0") long after,
+                                                                             @RequestParam(required = false) Integer limit,
+                                                                             @RequestParam(required = false) Long epoch) {
+        int max = clampLimit(limit);
+        long from = startAfter(after, epoch);
+        return longPollService.park(username, DeliveryChannel.HANDSHAKES, waitMs,
+            () -> messageService.hasHandshakeData(username, from),
+            () -> handshakesResponse(username, messageService.getHandshakeData(username, from, max), from, epoch),
+            () -> handshakesResponse(username, List.of(), from, epoch));
+    }
+    
+    /**
+     * Acknowledge handshakes up to and including a sequence number, removing them from the queue.
+     */
+    @PostMapping("/handshake/{username}/ack")
+    public ResponseEntity<Map<String, Object>> acknowledgeHandshake(@PathVariable String username,
+                                                                    @RequestParam long upTo) {
+        try {
+            int removed = messageService.acknowledgeHandshakeData(username, upTo);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", true);
+            response.put("removed", removed);
+            response.put("upTo", upTo);
+            response.put("username", username);
+            
+            return ResponseEntity.ok(response);
+            
+        } catch (Exception e) {
+            log.error("Failed to acknowledge handshake for user: {}", username, e);
+            
+            Map<String, Object> response = new HashMap<>();
+            response.put("success", false);
+            response.put("message", "Failed to acknowledge handshake: " + e.getMessage());
+            
+            return ResponseEntity.badRequest().body(response);
+        }
+    }
+    
+    private ResponseEntity<Map<String, Object>> messagesResponse(String username, List<MessagePacket> messages, long after, Long epoch) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("messages", messages);
+        response.put("count", messages.size());
+        response.put("username", username);
+        response.put("cursor", cursorAfter(messages, after));
+        response.put("epoch", messageService.getEpoch());
+        response.put("reset", isStale(epoch));
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    private ResponseEntity<Map<String, Object>> handshakesResponse(String username, List<MessagePacket> handshakes, long after, Long epoch) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", true);
+        response.put("handshakes", handshakes);
+        response.put("count", handshakes.size());
+        response.put("username", username);
+        response.put("cursor", cursorAfter(handshakes, after));
+        response.put("epoch", messageService.getEpoch());
+        response.put("reset", isStale(epoch));
+        
+        return ResponseEntity.ok(response);
+    }
+    
+    /**
+     * Where a receive starts: from the beginning when the client's cursor belongs to an
+     * earlier epoch, since its sequence numbers no longer mean the same packets.
+     */
+    private long startAfter(long after, Long epoch) {
+        return isStale(epoch) ? 0 : after;
+    }
+    
+    private boolean isStale(Long epoch) {
+        return epoch != null && epoch != messageService.getEpoch();
+    }
+    
+    /**
+     * The cursor to pass as {@code after} on the next receive.
+     */
+    private static long cursorAfter(List<MessagePacket> packets, long after) {
+        return packets.isEmpty() ? after : Math.max(after, packets.get(packets.size() - 1).getSeq());
+    }
+    
+    private ResponseEntity<Map<String, Object>> batchTooLarge(int size) {
+        Map<String, Object> response = new HashMap<>();
+        response.put("success", false);
+        response.put("message", String.format("Batch of %d packets exceeds the limit of %d", size, relayProperties.getMaxBatch()));
+        response.put("maxBatch", relayProperties.getMaxBatch());
+        
+        return ResponseEntity.status(HttpStatus.PAYLOAD_TOO_LARGE).body(response);
+    }
+    
+    private static int clampLimit(Integer limit) {
+        return limit == null ? DEFAULT_RECEIVE_LIMIT : Math.max(1, Math.min(limit, MAX_RECEIVE_LIMIT));
+    }
 }
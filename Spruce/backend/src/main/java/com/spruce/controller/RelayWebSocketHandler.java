@@ -0,0 +1,117 @@
+package com.spruce.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spruce.service.LogService;
+import com.spruce.service.MessageService;
+import com.spruce.service.PushService;
+import com.spruce.service.UserService;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+import org.springframework.web.socket.CloseStatus;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.TextWebSocketHandler;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * WebSocket endpoint for real-time message push.
+ * Frames are JSON objects of the form {"type": ..., "payload": ...}; a client
+ * must send an "auth" frame with its credentials before packets are pushed to it.
+ * Pushed packets stay queued until the client sends an "ack" frame,
+ * {"channel": "messages" or "handshakes", "upTo": seq}.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class RelayWebSocketHandler extends TextWebSocketHandler {
+    
+    private static final String USERNAME_ATTRIBUTE = "spruce.username";
+    
+    private final PushService pushService;
+    private final UserService userService;
+    private final MessageService messageService;
+    private final LogService logService;
+    private final ObjectMapper objectMapper;
+    
+    @Override
+    protected void handleTextMessage(WebSocketSession session, TextMessage message) throws Exception {
+        JsonNode frame = objectMapper.readTree(message.getPayload());
+        String type = frame.path("type").asText();
+        
+        if ("auth".equals(type)) {
+            authenticate(session, frame.path("payload"));
+        } else if ("ack".equals(type)) {
+            acknowledge(session, frame.path("payload"));
+        } else if ("ping".equals(type)) {
+            reply(session, "pong", Map.of("timestamp", System.currentTimeMillis()));
+        } else {
+            reply(session, "error", Map.of("message", "Unsupported frame type: " + type));
+        }
+    }
+    
+    @Override
+    public void afterConnectionClosed(WebSocketSession session, CloseStatus status) {
+        Object username = session.getAttributes().get(USERNAME_ATTRIBUTE);
+        if (username != null) {
+            pushService.unregister((String) username, session);
+            logService.logSession("Push channel closed", "User: {}", username);
+        }
+    }
+    
+    private void authenticate(WebSocketSession session, JsonNode payload) throws IOException {
+        String username = payload.path("username").asText(null);
+        String password = payload.path("password").asText(null);
+        
+        Map<String, Object> response = new HashMap<>();
+        if (username != null && password != null && userService.authenticateUser(username, password)) {
+            session.getAttributes().put(USERNAME_ATTRIBUTE, username);
+            pushService.register(username, session);
+            logService.logSession("Push channel opened", "User: {}", username);
+            
+            response.put("success", true);
+            response.put("username", username);
+            reply(session, "auth", response);
+            pushService.replay(username);
+        } else {
+            response.put("success", false);
+            response.put("message", "Invalid username or password");
+            reply(session, "auth", response);
+            session.close(CloseStatus.POLICY_VIOLATION);
+        }
+    }
+    
+    private void acknowledge(WebSocketSession session, JsonNode payload) throws IOException {
+        Object username = session.getAttributes().get(USERNAME_ATTRIBUTE);
+        if (username == null) {
+            reply(session, "error", Map.of("message", "Not authenticated"));
+            return;
+        }
+        String channel = payload.path("channel").asText("messages");
+        JsonNode upTo = payload.path("upTo");
+        if (!upTo.canConvertToLong() || !("messages".equals(channel) || "handshakes".equals(channel))) {
+            reply(session, "error", Map.of("message", "Malformed ack"));
+            return;
+        }
+        
+        // Through MessageService so the removal is logged as it is for HTTP acks
+        if ("messages".equals(channel)) {
+            messageService.acknowledgeMessages((String) username, upTo.asLong());
+        } else {
+            messageService.acknowledgeHandshakeData((String) username, upTo.asLong());
+        }
+    }
+    
+    private void reply(WebSocketSession session, String type, Object payload) throws IOException {
+        // Replies go through the registered decorator once authenticated so they do not race pushes
+        Object username = session.getAttributes().get(USERNAME_ATTRIBUTE);
+        if (username != null && pushService.push((String) username, type, payload)) {
+            return;
+        }
+        session.sendMessage(new TextMessage(objectMapper.writeValueAsString(Map.of("type", type, "payload", payload))));
+    }
+}
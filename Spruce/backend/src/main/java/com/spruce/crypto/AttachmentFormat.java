@@ -0,0 +1,88 @@
+package com.spruce.crypto;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Layout of an encrypted attachment: AES-GCM over fixed-size chunks, so neither side ever
+ * holds more than a chunk of the file.
+ *
+ * <pre>
+ * file   := header chunk* final
+ * header := "SPRA" version:u8 chunkSize:u32 noncePrefix:7 bytes
+ * chunk  := ciphertext (chunkSize bytes) tag (16 bytes)
+ * final  := ciphertext (1 to chunkSize bytes; 0 only for an empty file) tag (16 bytes)
+ * nonce  := noncePrefix counter:u32 last:u8
+ * </pre>
+ *
+ * Chunk n is sealed under nonce counter n, with the last byte 1 for the final chunk only,
+ * and the header as associated data. Reordered, dropped, truncated or appended chunks
+ * therefore fail authentication. The nonce prefix is random per file, so a key can seal
+ * many attachments.
+ */
+public final class AttachmentFormat {
+
+    public static final byte[] MAGIC = {'S', 'P', 'R', 'A'};
+    public static final int VERSION = 1;
+
+    public static final int NONCE_PREFIX_LENGTH = 7;
+    public static final int HEADER_LENGTH = MAGIC.length + 1 + 4 + NONCE_PREFIX_LENGTH;
+    public static final int NONCE_LENGTH = 12;
+    public static final int TAG_LENGTH = 16;
+
+    public static final int DEFAULT_CHUNK_SIZE = 64 * 1024;
+    public static final int MAX_CHUNK_SIZE = 4 * 1024 * 1024;
+
+    private AttachmentFormat() {
+    }
+
+    /**
+     * Write a header for a new file.
+     */
+    public static byte[] header(int chunkSize, byte[] noncePrefix) {
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        header.put(MAGIC).put((byte) VERSION).putInt(chunkSize).put(noncePrefix, 0, NONCE_PREFIX_LENGTH);
+        return header.array();
+    }
+
+    /**
+     * Check a header and return the chunk size it declares.
+     */
+    public static int chunkSize(byte[] header) throws IOException {
+        if (header.length < HEADER_LENGTH || !Arrays.equals(header, 0, MAGIC.length, MAGIC, 0, MAGIC.length)) {
+            throw new IOException("Not an encrypted attachment");
+        }
+        if (header[MAGIC.length] != VERSION) {
+            throw new IOException("Unsupported attachment version " + header[MAGIC.length]);
+        }
+        int chunkSize = ByteBuffer.wrap(header, MAGIC.length + 1, 4).getInt();
+        if (chunkSize <= 0 || chunkSize > MAX_CHUNK_SIZE) {
+            throw new IOException("Invalid attachment chunk size " + chunkSize);
+        }
+        return chunkSize;
+    }
+
+    /**
+     * Fill {@code nonce} for chunk {@code counter} of the file with this header.
+     */
+    public static void nonce(byte[] header, long counter, boolean last, byte[] nonce) {
+        if (counter > 0xFFFFFFFFL) {
+            throw new IllegalArgumentException("Attachment has too many chunks");
+        }
+        System.arraycopy(header, HEADER_LENGTH - NONCE_PREFIX_LENGTH, nonce, 0, NONCE_PREFIX_LENGTH);
+        nonce[7] = (byte) (counter >>> 24);
+        nonce[8] = (byte) (counter >>> 16);
+        nonce[9] = (byte) (counter >>> 8);
+        nonce[10] = (byte) counter;
+        nonce[11] = (byte) (last ? 1 : 0);
+    }
+
+    /**
+     * Size of the encrypted file for a plaintext of {@code length} bytes.
+     */
+    public static long encryptedLength(long length, int chunkSize) {
+        long chunks = Math.max(1, (length + chunkSize - 1) / chunkSize);
+        return HEADER_LENGTH + length + chunks * TAG_LENGTH;
+    }
+}
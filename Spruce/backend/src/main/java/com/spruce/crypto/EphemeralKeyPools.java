@@ -0,0 +1,93 @@
+package com.spruce.crypto;
+
+import com.spruce.config.CryptoProperties;
+import jakarta.annotation.PreDestroy;
+import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.bouncycastle.crypto.AsymmetricCipherKeyPairGenerator;
+import org.bouncycastle.crypto.generators.X25519KeyPairGenerator;
+import org.bouncycastle.crypto.params.X25519KeyGenerationParameters;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberKeyGenerationParameters;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberKeyPairGenerator;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberParameters;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Pre-generated ephemeral X25519 and Kyber-768 keypairs for handshakes.
+ *
+ * Only ephemeral keys are pooled: long-term Dilithium identity keys are generated once
+ * per user, and an encapsulation depends on the peer's public key, so neither can be
+ * prepared in advance. On a miss the caller's thread generates the pair itself. Each pool
+ * starts refilling on its first take, so nothing is generated until a handshake needs it.
+ */
+@Component
+public class EphemeralKeyPools {
+
+    public static final KyberParameters KYBER_PARAMETERS = KyberParameters.kyber768;
+
+    private final RandomSource randomSource;
+
+    // Generators keep per-instance engine state, so callers generating on a miss get their own
+    private final ThreadLocal<AsymmetricCipherKeyPairGenerator> x25519Generator = ThreadLocal.withInitial(this::x25519Generator);
+    private final ThreadLocal<AsymmetricCipherKeyPairGenerator> kyberGenerator = ThreadLocal.withInitial(this::kyberGenerator);
+
+    private final KeyPairPool x25519;
+    private final KeyPairPool kyber;
+
+    public EphemeralKeyPools(CryptoProperties cryptoProperties, RandomSource randomSource) {
+        CryptoProperties.KeyPool config = cryptoProperties.getKeyPool();
+        this.randomSource = randomSource;
+        this.x25519 = new KeyPairPool("x25519", x25519Generator(), config.getX25519Depth(), config.getRefillPerSecond());
+        this.kyber = new KeyPairPool("kyber", kyberGenerator(), config.getKyberDepth(), config.getRefillPerSecond());
+    }
+
+    @PreDestroy
+    public void stop() {
+        x25519.stop();
+        kyber.stop();
+    }
+
+    /**
+     * A fresh X25519 keypair, never handed out before.
+     */
+    public AsymmetricCipherKeyPair takeX25519() {
+        return take(x25519, x25519Generator::get);
+    }
+
+    /**
+     * A fresh Kyber-768 keypair, never handed out before.
+     */
+    public AsymmetricCipherKeyPair takeKyber() {
+        return take(kyber, kyberGenerator::get);
+    }
+
+    /**
+     * Depth, refill rate and hit ratio of each pool (for admin monitoring).
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("x25519", x25519.getStats());
+        stats.put("kyber", kyber.getStats());
+        return stats;
+    }
+
+    private static AsymmetricCipherKeyPair take(KeyPairPool pool, Supplier<AsymmetricCipherKeyPairGenerator> fallback) {
+        AsymmetricCipherKeyPair pair = pool.poll();
+        return pair != null ? pair : fallback.get().generateKeyPair();
+    }
+
+    private AsymmetricCipherKeyPairGenerator x25519Generator() {
+        X25519KeyPairGenerator generator = new X25519KeyPairGenerator();
+        generator.init(new X25519KeyGenerationParameters(randomSource.secureRandom()));
+        return generator;
+    }
+
+    private AsymmetricCipherKeyPairGenerator kyberGenerator() {
+        KyberKeyPairGenerator generator = new KyberKeyPairGenerator();
+        generator.init(new KyberKeyGenerationParameters(randomSource.secureRandom(), KYBER_PARAMETERS));
+        return generator;
+    }
+}
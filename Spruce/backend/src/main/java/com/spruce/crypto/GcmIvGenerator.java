@@ -0,0 +1,132 @@
+package com.spruce.crypto;
+
+import com.spruce.config.CryptoProperties;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * AES-GCM IVs in the deterministic construction of NIST SP 800-38D: a 4-byte fixed field
+ * naming this run of this instance, then a 64-bit invocation counter shared by every key.
+ * Issuing an IV is a single atomic increment, with no lock and no call into a random generator.
+ *
+ * IVs are unique per key only while the fixed field is. With a state file configured it is
+ * the instance id in the top byte and a boot count, persisted before the first IV is issued,
+ * in the low three, so restarts of one instance never repeat a fixed field and instances with
+ * distinct ids never share one; that is what keys outliving a process, such as attachment
+ * keys, need. Two instances must not share an id or a state file. Without a state file the
+ * field is random per process, which is safe only while keys are single-process and
+ * per-handshake, like the session keys.
+ */
+@Component
+public class GcmIvGenerator {
+
+    public static final int IV_LENGTH = 12;
+
+    /** Restarts one instance can make before its fixed fields run out. */
+    static final int MAX_BOOTS = 1 << 24;
+
+    private final int fixedField;
+    private final AtomicLong counter = new AtomicLong();
+
+    @Autowired
+    public GcmIvGenerator(RandomSource randomSource, CryptoProperties properties) {
+        this(fixedField(randomSource, properties.getIv()));
+    }
+
+    /**
+     * A generator with a random fixed field, for keys that never leave this process.
+     */
+    public GcmIvGenerator(RandomSource randomSource) {
+        this(randomSource.current().nextInt());
+    }
+
+    public GcmIvGenerator(int fixedField) {
+        this.fixedField = fixedField;
+    }
+
+    /**
+     * Write the next IV into {@code iv} at {@code offset}.
+     */
+    public void next(byte[] iv, int offset) {
+        long invocation = counter.getAndIncrement();
+        if (invocation < 0) {
+            // 2^63 IVs; refuse rather than ever wrap around
+            throw new IllegalStateException("GCM IV counter exhausted");
+        }
+        iv[offset] = (byte) (fixedField >>> 24);
+        iv[offset + 1] = (byte) (fixedField >>> 16);
+        iv[offset + 2] = (byte) (fixedField >>> 8);
+        iv[offset + 3] = (byte) fixedField;
+        for (int i = 0; i < 8; i++) {
+            iv[offset + 4 + i] = (byte) (invocation >>> (56 - 8 * i));
+        }
+    }
+
+    public byte[] next() {
+        byte[] iv = new byte[IV_LENGTH];
+        next(iv, 0);
+        return iv;
+    }
+
+    public int getFixedField() {
+        return fixedField;
+    }
+
+    /**
+     * IVs issued so far (for admin monitoring).
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("issued", counter.get());
+        stats.put("fixedField", fixedField);
+        return stats;
+    }
+
+    private static int fixedField(RandomSource randomSource, CryptoProperties.Iv iv) {
+        if (iv.getStateFile() == null || iv.getStateFile().isBlank()) {
+            return randomSource.current().nextInt();
+        }
+        if (iv.getInstanceId() < 0 || iv.getInstanceId() > 255) {
+            throw new IllegalArgumentException("GCM IV instance id must be 0-255, was " + iv.getInstanceId());
+        }
+        return iv.getInstanceId() << 24 | nextBoot(Path.of(iv.getStateFile()));
+    }
+
+    /**
+     * Count one more boot in {@code stateFile} and return it. The new count is on disk
+     * before it is returned, so a crash can skip a fixed field but never reuse one.
+     */
+    static int nextBoot(Path stateFile) {
+        try {
+            int boot = Files.exists(stateFile) ? Integer.parseInt(Files.readString(stateFile).trim()) + 1 : 0;
+            if (boot >= MAX_BOOTS) {
+                throw new IllegalStateException("GCM IV fixed fields exhausted in " + stateFile);
+            }
+            Path directory = stateFile.toAbsolutePath().getParent();
+            Files.createDirectories(directory);
+            Path temp = directory.resolve(stateFile.getFileName() + ".tmp");
+            try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                    StandardOpenOption.TRUNCATE_EXISTING)) {
+                channel.write(ByteBuffer.wrap(Integer.toString(boot).getBytes(StandardCharsets.US_ASCII)));
+                channel.force(true);
+            }
+            Files.move(temp, stateFile, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+            return boot;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to update GCM IV state in " + stateFile, e);
+        }
+    }
+}
@@ -0,0 +1,152 @@
+package com.spruce.crypto;
+
+import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.bouncycastle.crypto.AsymmetricCipherKeyPairGenerator;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Keypairs generated ahead of time by a low-priority background thread, so a handshake
+ * takes a ready one instead of paying for key generation.
+ *
+ * Every pair is handed out once. When the pool is empty the caller generates its own
+ * (a miss); the refill thread tops the pool back up at no more than the configured rate.
+ * The thread starts on the first {@link #poll}, so a pool nothing takes from costs nothing.
+ */
+@Slf4j
+public class KeyPairPool {
+
+    private static final long FULL_POLL_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+
+    private final String name;
+    private final AsymmetricCipherKeyPairGenerator generator;
+    private final BlockingQueue<AsymmetricCipherKeyPair> ready;
+    private final int depth;
+    private final long refillIntervalNanos;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder refilled = new LongAdder();
+
+    // Pairs the refill thread generated in the last full second
+    private volatile long refilledLastSecond;
+
+    private final AtomicBoolean started = new AtomicBoolean();
+    private volatile boolean running;
+    private volatile Thread refiller;
+
+    /**
+     * @param generator       initialized generator; only the refill thread uses it
+     * @param depth           pairs kept ready; zero disables the pool, so every take is a miss
+     * @param refillPerSecond most pairs generated per second in the background
+     */
+    public KeyPairPool(String name, AsymmetricCipherKeyPairGenerator generator, int depth, int refillPerSecond) {
+        this.name = name;
+        this.generator = generator;
+        this.depth = Math.max(0, depth);
+        this.ready = new ArrayBlockingQueue<>(Math.max(1, this.depth));
+        this.refillIntervalNanos = TimeUnit.SECONDS.toNanos(1) / Math.max(1, refillPerSecond);
+    }
+
+    /**
+     * Start the refill thread, unless the pool is disabled or has been started (or stopped) before.
+     */
+    public void start() {
+        if (depth == 0 || !started.compareAndSet(false, true)) {
+            return;
+        }
+        running = true;
+        refiller = new Thread(this::refillLoop, name + "-keypool");
+        refiller.setDaemon(true);
+        refiller.setPriority(Thread.MIN_PRIORITY);
+        refiller.start();
+    }
+
+    public void stop() {
+        // A pool stopped before its first use stays stopped
+        started.set(true);
+        running = false;
+        if (refiller != null) {
+            refiller.interrupt();
+        }
+        ready.clear();
+    }
+
+    /**
+     * A pooled pair if one is ready, otherwise null; the caller then generates its own.
+     */
+    public AsymmetricCipherKeyPair poll() {
+        if (!started.get()) {
+            start();
+        }
+        AsymmetricCipherKeyPair pair = ready.poll();
+        if (pair == null) {
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return pair;
+    }
+
+    public int size() {
+        return ready.size();
+    }
+
+    /**
+     * Pool counters (for admin monitoring).
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("depth", ready.size());
+        stats.put("capacity", depth);
+        stats.put("maxRefillPerSecond", TimeUnit.SECONDS.toNanos(1) / refillIntervalNanos);
+        stats.put("refilledPerSecond", refilledLastSecond);
+        stats.put("refilled", refilled.sum());
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.sum());
+        stats.put("hitRate", lookups > 0 ? (double) hitCount / lookups : 0.0);
+        return stats;
+    }
+
+    private void refillLoop() {
+        long windowStart = System.nanoTime();
+        long windowCount = 0;
+        while (running) {
+            try {
+                long now = System.nanoTime();
+                if (now - windowStart >= TimeUnit.SECONDS.toNanos(1)) {
+                    refilledLastSecond = windowCount;
+                    windowStart = now;
+                    windowCount = 0;
+                }
+                if (ready.size() >= depth) {
+                    LockSupport.parkNanos(this, FULL_POLL_NANOS);
+                    continue;
+                }
+                long started = System.nanoTime();
+                if (ready.offer(generator.generateKeyPair())) {
+                    refilled.increment();
+                    windowCount++;
+                }
+                // Pace to the refill rate, counting the generation itself
+                long remaining = refillIntervalNanos - (System.nanoTime() - started);
+                if (remaining > 0) {
+                    LockSupport.parkNanos(this, remaining);
+                }
+            } catch (Exception e) {
+                log.error("{} key pool refill failed", name, e);
+                LockSupport.parkNanos(this, FULL_POLL_NANOS);
+            }
+        }
+    }
+}
@@ -0,0 +1,159 @@
+package com.spruce.crypto;
+
+import com.spruce.config.CryptoProperties;
+import com.spruce.dto.PublicKeySet;
+import org.springframework.stereotype.Component;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Bounded cache of users' public key sets, so key lookups before every handshake skip
+ * loading the user entity.
+ *
+ * Entries have no expiry: public keys only change on registration and rotation, and both
+ * invalidate the user's entry. The least recently used are evicted beyond
+ * {@code max-entries}. Each entry carries an ETag of its keys for conditional requests.
+ * Unknown users are not cached.
+ */
+@Component
+public class PublicKeyCache {
+
+    /**
+     * A user's public keys and the ETag that identifies exactly these keys.
+     */
+    public static final class Entry {
+        private final PublicKeySet keys;
+        private final String etag;
+
+        Entry(PublicKeySet keys, String etag) {
+            this.keys = keys;
+            this.etag = etag;
+        }
+
+        public PublicKeySet getKeys() {
+            return keys;
+        }
+
+        public String getEtag() {
+            return etag;
+        }
+    }
+
+    private final int maxEntries;
+    private final Map<String, Entry> entries;
+
+    // Bumped on every invalidation, so a load that raced one is not cached
+    private final AtomicLong generation = new AtomicLong();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder invalidated = new LongAdder();
+
+    public PublicKeyCache(CryptoProperties cryptoProperties) {
+        this.maxEntries = Math.max(1, cryptoProperties.getPublicKeyCache().getMaxEntries());
+        // Access order: iteration starts at the least recently used entry
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * The user's cached keys, loading and caching them on a miss. The load runs outside the
+     * cache lock and returns null for an unknown user.
+     */
+    public Entry get(String username, Function<String, PublicKeySet> load) {
+        synchronized (entries) {
+            Entry entry = entries.get(username);
+            if (entry != null) {
+                hits.increment();
+                return entry;
+            }
+        }
+        misses.increment();
+        long loadedAt = generation.get();
+        PublicKeySet keys = load.apply(username);
+        if (keys == null) {
+            return null;
+        }
+        Entry entry = new Entry(keys, etag(keys));
+        synchronized (entries) {
+            if (generation.get() == loadedAt) {
+                entries.put(username, entry);
+                evictOverflow();
+            }
+        }
+        return entry;
+    }
+
+    /**
+     * Drop a user's keys, e.g. after they register or rotate them.
+     */
+    public void invalidate(String username) {
+        synchronized (entries) {
+            generation.incrementAndGet();
+            if (entries.remove(username) != null) {
+                invalidated.increment();
+            }
+        }
+    }
+
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+
+    /**
+     * Hit, miss and eviction counters (for admin monitoring).
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size());
+        stats.put("maxEntries", maxEntries);
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.sum());
+        stats.put("hitRate", lookups > 0 ? (double) hitCount / lookups : 0.0);
+        stats.put("evicted", evicted.sum());
+        stats.put("invalidated", invalidated.sum());
+        return stats;
+    }
+
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+            evicted.increment();
+        }
+    }
+
+    /**
+     * Strong ETag over the three keys: the first 16 bytes of their SHA-256, base64url.
+     */
+    static String etag(PublicKeySet keys) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            for (String key : new String[] {keys.getX25519PublicKey(), keys.getKyberPublicKey(), keys.getDilithiumPublicKey()}) {
+                // Length-prefixed, so moving bytes between keys changes the tag
+                byte[] bytes = key != null ? key.getBytes(StandardCharsets.US_ASCII) : new byte[0];
+                digest.update(new byte[] {(byte) (bytes.length >>> 24), (byte) (bytes.length >>> 16), (byte) (bytes.length >>> 8), (byte) bytes.length});
+                digest.update(bytes);
+            }
+            byte[] hash = digest.digest();
+            return "\"" + Base64.getUrlEncoder().withoutPadding().encodeToString(Arrays.copyOf(hash, 16)) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    }
+}
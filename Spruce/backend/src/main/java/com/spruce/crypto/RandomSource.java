@@ -0,0 +1,118 @@
+package com.spruce.crypto;
+
+import com.spruce.config.CryptoProperties;
+import org.springframework.stereotype.Component;
+
+import java.security.DrbgParameters;
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Randomness for key generation, encapsulation, signing and nonces, from a DRBG per thread.
+ *
+ * A single shared {@link SecureRandom} serializes its callers (the default NativePRNG reads
+ * through one global lock), so every thread gets its own NIST SP 800-90A DRBG instead,
+ * seeded from the system entropy source. A thread reseeds its DRBG from that source on its
+ * first use after the reseed interval has passed, so no other thread ever touches it.
+ */
+@Component
+public class RandomSource {
+
+    private static final int SECURITY_STRENGTH = 256;
+
+    private final long reseedIntervalNanos;
+    private final ThreadLocal<Drbg> drbg = ThreadLocal.withInitial(this::instantiate);
+    private final SecureRandom view = new CurrentThreadRandom();
+
+    private final LongAdder instantiated = new LongAdder();
+    private final LongAdder reseeds = new LongAdder();
+
+    public RandomSource(CryptoProperties cryptoProperties) {
+        this.reseedIntervalNanos = cryptoProperties.getDrbg().getReseedInterval().toNanos();
+    }
+
+    /**
+     * The calling thread's DRBG, reseeded first if it is due. Use it on this thread only.
+     */
+    public SecureRandom current() {
+        Drbg state = drbg.get();
+        long now = System.nanoTime();
+        if (now - state.seededAt >= reseedIntervalNanos) {
+            state.random.reseed();
+            state.seededAt = now;
+            reseeds.increment();
+        }
+        return state.random;
+    }
+
+    /**
+     * A {@link SecureRandom} that draws from whichever thread calls it, for components such as
+     * BouncyCastle generators that keep the random they were initialized with.
+     */
+    public SecureRandom secureRandom() {
+        return view;
+    }
+
+    public void nextBytes(byte[] bytes) {
+        current().nextBytes(bytes);
+    }
+
+    /**
+     * DRBG instances and reseeds so far (for admin monitoring).
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("threads", instantiated.sum());
+        stats.put("reseeds", reseeds.sum());
+        stats.put("reseedIntervalSeconds", reseedIntervalNanos / 1_000_000_000L);
+        return stats;
+    }
+
+    private Drbg instantiate() {
+        try {
+            SecureRandom random = SecureRandom.getInstance("DRBG",
+                DrbgParameters.instantiation(SECURITY_STRENGTH, DrbgParameters.Capability.RESEED_ONLY, null));
+            instantiated.increment();
+            return new Drbg(random, System.nanoTime());
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("DRBG is not available", e);
+        }
+    }
+
+    private static final class Drbg {
+
+        final SecureRandom random;
+        long seededAt;
+
+        Drbg(SecureRandom random, long seededAt) {
+            this.random = random;
+            this.seededAt = seededAt;
+        }
+    }
+
+    private final class CurrentThreadRandom extends SecureRandom {
+
+        @Override
+        public void nextBytes(byte[] bytes) {
+            current().nextBytes(bytes);
+        }
+
+        @Override
+        public byte[] generateSeed(int numBytes) {
+            return current().generateSeed(numBytes);
+        }
+
+        @Override
+        public void setSeed(byte[] seed) {
+            current().setSeed(seed);
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return "DRBG";
+        }
+    }
+}
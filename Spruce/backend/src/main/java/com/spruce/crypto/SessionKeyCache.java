@@ -0,0 +1,225 @@
+package com.spruce.crypto;
+
+import com.spruce.config.CryptoProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Predicate;
+import java.util.function.Supplier;
+
+/**
+ * Bounded cache of derived session keys, so repeated operations on an established
+ * session skip the key agreement, decapsulation and HKDF.
+ *
+ * Entries live at most {@code ttl} from derivation and the least recently used are evicted
+ * beyond {@code max-entries}. Every key leaving the cache, for whatever reason, is zeroed.
+ * Callers get copies, which they should zero themselves once done.
+ */
+@Component
+@Slf4j
+public class SessionKeyCache {
+    
+    private static final class Entry {
+        final byte[] key;
+        final long expiresAt;
+        
+        Entry(byte[] key, long expiresAt) {
+            this.key = key;
+            this.expiresAt = expiresAt;
+        }
+    }
+    
+    private final CryptoProperties.SessionCache config;
+    private final Map<SessionKeyId, Entry> entries;
+    
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evicted = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder invalidated = new LongAdder();
+    
+    private volatile boolean running;
+    private Thread sweeper;
+    
+    public SessionKeyCache(CryptoProperties cryptoProperties) {
+        this.config = cryptoProperties.getSessionCache();
+        // Access order: iteration starts at the least recently used entry
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+    
+    @PostConstruct
+    public void start() {
+        running = true;
+        sweeper = new Thread(this::sweepLoop, "session-key-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+    
+    @PreDestroy
+    public void stop() {
+        running = false;
+        sweeper.interrupt();
+        clear();
+    }
+    
+    /**
+     * A copy of the cached key, or null if there is none or it has expired.
+     */
+    public byte[] get(SessionKeyId id) {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry entry = entries.get(id);
+            if (entry != null && entry.expiresAt > now) {
+                hits.increment();
+                return entry.key.clone();
+            }
+            if (entry != null) {
+                remove(id, expired);
+            }
+        }
+        misses.increment();
+        return null;
+    }
+    
+    /**
+     * A copy of the cached key, deriving and caching it on a miss. Derivation runs outside
+     * the cache lock; if two threads race, the first key stored wins and the other is zeroed.
+     */
+    public byte[] getOrDerive(SessionKeyId id, Supplier<byte[]> derive) {
+        byte[] cached = get(id);
+        if (cached != null) {
+            return cached;
+        }
+        byte[] derived = derive.get();
+        long expiresAt = System.currentTimeMillis() + config.getTtl().toMillis();
+        synchronized (entries) {
+            Entry existing = entries.get(id);
+            if (existing != null && existing.expiresAt > System.currentTimeMillis()) {
+                Arrays.fill(derived, (byte) 0);
+                return existing.key.clone();
+            }
+            if (existing != null) {
+                remove(id, expired);
+            }
+            entries.put(id, new Entry(derived.clone(), expiresAt));
+            evictOverflow();
+        }
+        return derived;
+    }
+    
+    /**
+     * Drop one session, e.g. when it is closed or re-keyed.
+     */
+    public void invalidate(SessionKeyId id) {
+        synchronized (entries) {
+            remove(id, invalidated);
+        }
+    }
+    
+    /**
+     * Drop every session of a user, e.g. after they rotate their keys.
+     */
+    public int invalidateUser(String username) {
+        return removeIf(id -> id.involves(username), invalidated);
+    }
+    
+    public void clear() {
+        removeIf(id -> true, invalidated);
+    }
+    
+    public int size() {
+        synchronized (entries) {
+            return entries.size();
+        }
+    }
+    
+    /**
+     * Hit, miss and eviction counters (for admin monitoring).
+     */
+    public Map<String, Object> getStats() {
+        long hitCount = hits.sum();
+        long lookups = hitCount + misses.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("size", size());
+        stats.put("hits", hitCount);
+        stats.put("misses", misses.sum());
+        stats.put("hitRate", lookups > 0 ? (double) hitCount / lookups : 0.0);
+        stats.put("evicted", evicted.sum());
+        stats.put("expired", expired.sum());
+        stats.put("invalidated", invalidated.sum());
+        return stats;
+    }
+    
+    private void sweepLoop() {
+        while (running) {
+            try {
+                Thread.sleep(config.getSweepIntervalMs());
+            } catch (InterruptedException e) {
+                return;
+            }
+            long now = System.currentTimeMillis();
+            int removed = removeExpired(now);
+            if (removed > 0) {
+                log.debug("Expired {} session keys", removed);
+            }
+        }
+    }
+    
+    private int removeExpired(long now) {
+        synchronized (entries) {
+            int removed = 0;
+            for (Iterator<Entry> it = entries.values().iterator(); it.hasNext(); ) {
+                Entry entry = it.next();
+                if (entry.expiresAt <= now) {
+                    Arrays.fill(entry.key, (byte) 0);
+                    it.remove();
+                    removed++;
+                }
+            }
+            expired.add(removed);
+            return removed;
+        }
+    }
+    
+    private int removeIf(Predicate<SessionKeyId> matches, LongAdder counter) {
+        synchronized (entries) {
+            int removed = 0;
+            for (Iterator<Map.Entry<SessionKeyId, Entry>> it = entries.entrySet().iterator(); it.hasNext(); ) {
+                Map.Entry<SessionKeyId, Entry> entry = it.next();
+                if (matches.test(entry.getKey())) {
+                    Arrays.fill(entry.getValue().key, (byte) 0);
+                    it.remove();
+                    removed++;
+                }
+            }
+            counter.add(removed);
+            return removed;
+        }
+    }
+    
+    // Caller holds the lock
+    private void remove(SessionKeyId id, LongAdder counter) {
+        Entry entry = entries.remove(id);
+        if (entry != null) {
+            Arrays.fill(entry.key, (byte) 0);
+            counter.increment();
+        }
+    }
+    
+    // Caller holds the lock
+    private void evictOverflow() {
+        Iterator<Entry> it = entries.values().iterator();
+        while (entries.size() > config.getMaxEntries() && it.hasNext()) {
+            Arrays.fill(it.next().key, (byte) 0);
+            it.remove();
+            evicted.increment();
+        }
+    }
+}
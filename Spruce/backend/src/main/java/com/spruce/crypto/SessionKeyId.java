@@ -0,0 +1,25 @@
+package com.spruce.crypto;
+
+import lombok.Value;
+
+/**
+ * Identifies an established session: the handshake that created it and the two peers.
+ * The peers are stored in a fixed order so both directions of a session share one entry.
+ */
+@Value
+public class SessionKeyId {
+    
+    String handshakeId;
+    String firstPeer;
+    String secondPeer;
+    
+    public static SessionKeyId of(String handshakeId, String peer, String otherPeer) {
+        return peer.compareTo(otherPeer) <= 0
+            ? new SessionKeyId(handshakeId, peer, otherPeer)
+            : new SessionKeyId(handshakeId, otherPeer, peer);
+    }
+    
+    public boolean involves(String username) {
+        return firstPeer.equals(username) || secondPeer.equals(username);
+    }
+}
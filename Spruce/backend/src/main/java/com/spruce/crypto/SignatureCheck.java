@@ -0,0 +1,15 @@
+package com.spruce.crypto;
+
+import lombok.Value;
+
+/**
+ * One Dilithium signature to verify, all parts as sent by clients: the signed text
+ * and the Base64 signature and public key.
+ */
+@Value
+public class SignatureCheck {
+    
+    String message;
+    String signature;
+    String publicKey;
+}
@@ -0,0 +1,80 @@
+package com.spruce.crypto;
+
+import com.spruce.config.CryptoProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.stereotype.Component;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Fixed-size pool for signature verification, sized to the cores rather than to the
+ * number of request threads.
+ *
+ * The queue is bounded. When it is full the submitting thread runs the task itself, which
+ * slows the submitter down instead of dropping work or growing the queue without limit.
+ */
+@Component
+public class VerificationExecutor {
+
+    private final ThreadPoolExecutor executor;
+    private final int queueCapacity;
+
+    private final LongAdder submitted = new LongAdder();
+    private final LongAdder callerRuns = new LongAdder();
+
+    public VerificationExecutor(CryptoProperties cryptoProperties) {
+        CryptoProperties.Verification config = cryptoProperties.getVerification();
+        int threads = config.getThreads() > 0 ? config.getThreads() : Runtime.getRuntime().availableProcessors();
+        this.queueCapacity = Math.max(1, config.getQueueCapacity());
+
+        AtomicInteger threadNumber = new AtomicInteger();
+        ThreadFactory threadFactory = task -> {
+            Thread thread = new Thread(task, "signature-verify-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        };
+        RejectedExecutionHandler runInCaller = (task, pool) -> {
+            if (!pool.isShutdown()) {
+                callerRuns.increment();
+                task.run();
+            }
+        };
+        this.executor = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS,
+            new ArrayBlockingQueue<>(queueCapacity), threadFactory, runInCaller);
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        executor.shutdownNow();
+    }
+
+    public <T> Future<T> submit(Callable<T> task) {
+        submitted.increment();
+        return executor.submit(task);
+    }
+
+    /**
+     * Pool size, queue depth and how often submitters had to run tasks themselves (for admin monitoring).
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("threads", executor.getMaximumPoolSize());
+        stats.put("active", executor.getActiveCount());
+        stats.put("queued", executor.getQueue().size());
+        stats.put("queueCapacity", queueCapacity);
+        stats.put("submitted", submitted.sum());
+        stats.put("completed", executor.getCompletedTaskCount());
+        stats.put("callerRuns", callerRuns.sum());
+        return stats;
+    }
+}
@@ -0,0 +1,44 @@
+package com.spruce.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotEmpty;
+import java.util.List;
+
+/**
+ * DTO for a fan-out message: one encrypted payload for several recipients,
+ * each with the content key wrapped for them.
+ */
+@Data
+public class GroupMessageRequest {
+    
+    @NotBlank(message = "Sender is required")
+    private String sender;
+    
+    @NotEmpty(message = "At least one recipient is required")
+    @Valid
+    private List<Recipient> recipients;
+    
+    @NotBlank(message = "Encrypted content is required")
+    private String encryptedContent;
+    
+    private String nonce;
+    private String aad;
+    private String messageId;
+    private Long ttlSeconds;
+    
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Recipient {
+        
+        @NotBlank(message = "Recipient username is required")
+        private String username;
+        
+        @NotBlank(message = "Key wrap is required")
+        private String keyWrap;
+    }
+}
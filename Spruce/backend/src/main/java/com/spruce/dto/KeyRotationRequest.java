@@ -0,0 +1,24 @@
+package com.spruce.dto;
+
+import lombok.Data;
+import jakarta.validation.constraints.NotBlank;
+
+/**
+ * DTO for key rotation request.
+ * Contains the user's password and their new public keys.
+ */
+@Data
+public class KeyRotationRequest {
+    
+    @NotBlank(message = "Password is required")
+    private String password;
+    
+    @NotBlank(message = "X25519 public key is required")
+    private String x25519PublicKey;
+    
+    @NotBlank(message = "Kyber public key is required")
+    private String kyberPublicKey;
+    
+    @NotBlank(message = "Dilithium public key is required")
+    private String dilithiumPublicKey;
+}
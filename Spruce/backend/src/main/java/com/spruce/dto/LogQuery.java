@@ -0,0 +1,30 @@
+package com.spruce.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+import lombok.Builder;
+
+import java.time.LocalDateTime;
+
+/**
+ * Filter and keyset cursor for an admin log query. Null fields do not filter.
+ */
+@Data
+@Builder
+@NoArgsConstructor
+@AllArgsConstructor
+public class LogQuery {
+    
+    private String category;
+    private String level;
+    private LocalDateTime from;      // Inclusive
+    private LocalDateTime to;        // Exclusive
+    private String contains;         // Case-sensitive substring of the message
+    private Long before;             // Only entries with a smaller id, i.e. the next page
+    private int limit;
+    
+    public boolean isFiltered() {
+        return category != null || level != null || from != null || to != null || contains != null;
+    }
+}
@@ -0,0 +1,21 @@
+package com.spruce.dto;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import lombok.AllArgsConstructor;
+
+/**
+ * Outcome of one packet in a batch send.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SendResult {
+    
+    private String messageId;
+    private String recipient;
+    private boolean success;
+    private boolean pushed;      // Also pushed over the recipient's WebSocket
+    private long seq;            // Queue position, 0 when failed
+    private String error;
+}
@@ -0,0 +1,151 @@
+package com.spruce.logging;
+
+import com.spruce.config.LogProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Moves audit log events off the request path.
+ *
+ * Request threads publish events into a bounded {@link LogRingBuffer}; a single
+ * "log-writer" thread drains whatever has accumulated and hands it to every
+ * {@link LogSink} as one batch. When the ring is full the configured
+ * {@link LogOverflowPolicy} decides whether the caller waits or the event is dropped.
+ */
+@Component
+@Slf4j
+public class AsyncLogWriter {
+
+    private static final long IDLE_PARK_NANOS = TimeUnit.MILLISECONDS.toNanos(100);
+    private static final long FULL_PARK_NANOS = TimeUnit.MICROSECONDS.toNanos(50);
+
+    private final LogProperties logProperties;
+    private final List<LogSink> sinks;
+    private final LogRingBuffer buffer;
+
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder written = new LongAdder();
+    private volatile boolean running;
+    private volatile boolean idle;
+    private Thread writer;
+
+    public AsyncLogWriter(LogProperties logProperties, List<LogSink> sinks) {
+        this.logProperties = logProperties;
+        this.sinks = sinks;
+        this.buffer = new LogRingBuffer(logProperties.getBufferCapacity());
+    }
+
+    @PostConstruct
+    public void start() {
+        running = true;
+        writer = new Thread(this::writeLoop, "log-writer");
+        writer.setDaemon(true);
+        writer.start();
+    }
+
+    /**
+     * Drain everything still buffered, then close the sinks.
+     */
+    @PreDestroy
+    public void stop() {
+        running = false;
+        LockSupport.unpark(writer);
+        try {
+            writer.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        sinks.forEach(LogSink::close);
+    }
+
+    /**
+     * Queue an event for the sinks, applying the overflow policy if the buffer is full.
+     *
+     * @return false if the event was dropped
+     */
+    public boolean submit(LogEvent event) {
+        while (!buffer.offer(event)) {
+            if (logProperties.getOverflowPolicy() == LogOverflowPolicy.DROP || !running
+                    || Thread.currentThread() == writer) {
+                dropped.increment();
+                return false;
+            }
+            LockSupport.unpark(writer);
+            LockSupport.parkNanos(this, FULL_PARK_NANOS);
+        }
+        if (idle) {
+            LockSupport.unpark(writer);
+        }
+        return true;
+    }
+
+    /**
+     * Number of events discarded because the buffer was full.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Number of events handed to the sinks.
+     */
+    public long getWrittenCount() {
+        return written.sum();
+    }
+
+    /**
+     * Number of events waiting for the writer.
+     */
+    public int getBufferedCount() {
+        return buffer.size();
+    }
+
+    private void writeLoop() {
+        int batchSize = logProperties.getBatchSize();
+        List<LogEvent> batch = new ArrayList<>(batchSize);
+        while (running || !buffer.isEmpty()) {
+            if (buffer.drainTo(batch, batchSize) == 0) {
+                idle = true;
+                // Re-check after announcing idleness so a concurrent submit cannot be missed for long
+                if (running && buffer.isEmpty()) {
+                    LockSupport.parkNanos(this, IDLE_PARK_NANOS);
+                } else if (!running) {
+                    // A producer has claimed a slot but not published it yet
+                    Thread.onSpinWait();
+                }
+                idle = false;
+                tickSinks();
+                continue;
+            }
+            for (LogSink sink : sinks) {
+                try {
+                    sink.write(batch);
+                } catch (RuntimeException e) {
+                    log.error("Log sink {} failed on a batch of {} events", sink.getClass().getSimpleName(), batch.size(), e);
+                }
+            }
+            written.add(batch.size());
+            batch.clear();
+            tickSinks();
+        }
+    }
+
+    private void tickSinks() {
+        long now = System.currentTimeMillis();
+        for (LogSink sink : sinks) {
+            try {
+                sink.tick(now);
+            } catch (RuntimeException e) {
+                log.error("Log sink {} failed on tick", sink.getClass().getSimpleName(), e);
+            }
+        }
+    }
+}
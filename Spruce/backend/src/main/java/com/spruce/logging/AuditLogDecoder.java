@@ -0,0 +1,139 @@
+package com.spruce.logging;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.function.Consumer;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Prints binary audit logs in the text log layout, one line per event.
+ *
+ * Needs nothing but the JDK and the compiled classes, e.g.
+ * {@code java -cp target/classes com.spruce.logging.AuditLogDecoder logs/spruce-audit.slog},
+ * or from the packaged jar {@code java -cp app.jar -Dloader.main=com.spruce.logging.AuditLogDecoder
+ * org.springframework.boot.loader.launch.PropertiesLauncher <files>}. Gzipped archives are
+ * read directly. A file that ends in the middle of a record is decoded up to that record.
+ */
+public final class AuditLogDecoder {
+
+    private final List<String> strings = new ArrayList<>();
+    private long lastTimestamp;
+
+    public static void main(String[] args) throws IOException {
+        if (args.length == 0) {
+            System.err.println("Usage: AuditLogDecoder <file.slog[.gz]>...");
+            System.exit(2);
+        }
+        PrintWriter out = new PrintWriter(new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8)));
+        int failed = 0;
+        for (String arg : args) {
+            Path path = Paths.get(arg);
+            try (InputStream in = open(path)) {
+                new AuditLogDecoder().decode(in, event -> out.println(event.toLine()));
+            } catch (IOException e) {
+                out.flush();
+                System.err.println(path + ": " + e.getMessage());
+                failed++;
+            }
+        }
+        out.flush();
+        if (failed > 0) {
+            System.exit(1);
+        }
+    }
+
+    /**
+     * Decode one file's events in order.
+     */
+    public void decode(InputStream in, Consumer<LogEvent> onEvent) throws IOException {
+        byte[] magic = in.readNBytes(BinaryLogFormat.MAGIC.length);
+        if (!Arrays.equals(magic, BinaryLogFormat.MAGIC)) {
+            throw new IOException("Not a binary audit log");
+        }
+        int version = in.read();
+        if (version != BinaryLogFormat.VERSION) {
+            throw new IOException("Unsupported format version " + version);
+        }
+        lastTimestamp = BinaryLogFormat.readVarLong(in);
+        strings.clear();
+
+        int type;
+        while ((type = in.read()) >= 0) {
+            try {
+                switch (type) {
+                    case BinaryLogFormat.STRING -> strings.add(readText(in));
+                    case BinaryLogFormat.EVENT -> onEvent.accept(readEvent(in));
+                    default -> throw new IOException("Unknown record type " + type);
+                }
+            } catch (EOFException e) {
+                // Torn final record from a crash or failed write
+                return;
+            }
+        }
+    }
+
+    private LogEvent readEvent(InputStream in) throws IOException {
+        long timestamp = lastTimestamp + BinaryLogFormat.unzigzag(BinaryLogFormat.readVarLong(in));
+        lastTimestamp = timestamp;
+        String level = readString(in);
+        String category = readString(in);
+        String name = readString(in);
+        String template = readString(in);
+        Object[] args = new Object[(int) BinaryLogFormat.readVarLong(in)];
+        for (int i = 0; i < args.length; i++) {
+            int argType = in.read();
+            switch (argType) {
+                case BinaryLogFormat.ARG_NULL -> args[i] = null;
+                case BinaryLogFormat.ARG_LONG -> args[i] = BinaryLogFormat.unzigzag(BinaryLogFormat.readVarLong(in));
+                case BinaryLogFormat.ARG_TEXT -> args[i] = readText(in);
+                case BinaryLogFormat.ARG_REF -> args[i] = lookup(BinaryLogFormat.readVarLong(in));
+                case -1 -> throw new EOFException();
+                default -> throw new IOException("Unknown argument type " + argType);
+            }
+        }
+        return new LogEvent(timestamp, level, category, name, template, args);
+    }
+
+    private String readString(InputStream in) throws IOException {
+        long tag = BinaryLogFormat.readVarLong(in);
+        if (tag == BinaryLogFormat.STR_NULL) {
+            return null;
+        }
+        if (tag == BinaryLogFormat.STR_INLINE) {
+            return readText(in);
+        }
+        return lookup(tag - BinaryLogFormat.STR_ID_BASE);
+    }
+
+    private String lookup(long id) throws IOException {
+        if (id < 0 || id >= strings.size()) {
+            throw new IOException("Undefined string id " + id);
+        }
+        return strings.get((int) id);
+    }
+
+    private static String readText(InputStream in) throws IOException {
+        long length = BinaryLogFormat.readVarLong(in);
+        if (length > Integer.MAX_VALUE) {
+            throw new IOException("String too long: " + length);
+        }
+        return new String(BinaryLogFormat.readBytes(in, (int) length), StandardCharsets.UTF_8);
+    }
+
+    private static InputStream open(Path path) throws IOException {
+        InputStream in = new BufferedInputStream(Files.newInputStream(path), 64 * 1024);
+        return path.getFileName().toString().endsWith(".gz") ? new GZIPInputStream(in, 64 * 1024) : in;
+    }
+}
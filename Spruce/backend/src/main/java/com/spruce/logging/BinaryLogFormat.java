@@ -0,0 +1,118 @@
+package com.spruce.logging;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Layout of the binary audit log, shared by {@link BinaryLogSink} and {@link AuditLogDecoder}.
+ *
+ * <pre>
+ * file    := header record*
+ * header  := "SPRL" version:u8 baseTimestamp:varint
+ * record  := STRING length:varint utf8        defines the next string id (0, 1, 2, ...)
+ *          | EVENT  delta:zigzag level:str category:str name:str template:str argCount:varint arg*
+ * str     := varint: 0 = null, 1 = inline (length:varint utf8 follows), n = string id n - 2
+ * arg     := NULL | LONG value:zigzag | TEXT length:varint utf8 | REF id:varint
+ * </pre>
+ *
+ * Timestamps are deltas from the previous event (from the base for the first), so a burst
+ * costs a byte or two each. Levels, categories, event names, templates and short arguments
+ * are written once per file and referred to by id; levels and categories come first and so
+ * always fit in one byte. Each file is self-contained: ids and timestamps start over.
+ */
+final class BinaryLogFormat {
+
+    static final byte[] MAGIC = {'S', 'P', 'R', 'L'};
+    static final int VERSION = 1;
+
+    static final int STRING = 1;
+    static final int EVENT = 2;
+
+    static final int STR_NULL = 0;
+    static final int STR_INLINE = 1;
+    static final int STR_ID_BASE = 2;
+
+    static final int ARG_NULL = 0;
+    static final int ARG_LONG = 1;
+    static final int ARG_TEXT = 2;
+    static final int ARG_REF = 3;
+
+    private BinaryLogFormat() {
+    }
+
+    static long zigzag(long value) {
+        return (value << 1) ^ (value >> 63);
+    }
+
+    static long unzigzag(long value) {
+        return (value >>> 1) ^ -(value & 1);
+    }
+
+    static long readVarLong(InputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint");
+    }
+
+    static byte[] readBytes(InputStream in, int length) throws IOException {
+        byte[] bytes = in.readNBytes(length);
+        if (bytes.length < length) {
+            throw new EOFException();
+        }
+        return bytes;
+    }
+
+    /**
+     * Growable byte buffer for encoding one batch.
+     */
+    static final class Output {
+        private byte[] bytes = new byte[64 * 1024];
+        private int size;
+
+        void clear() {
+            size = 0;
+        }
+
+        void write(int b) {
+            ensureRoom(1);
+            bytes[size++] = (byte) b;
+        }
+
+        void write(byte[] data) {
+            ensureRoom(data.length);
+            System.arraycopy(data, 0, bytes, size, data.length);
+            size += data.length;
+        }
+
+        void writeVarLong(long value) {
+            ensureRoom(10);
+            while ((value & ~0x7FL) != 0) {
+                bytes[size++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            bytes[size++] = (byte) value;
+        }
+
+        ByteBuffer view() {
+            return ByteBuffer.wrap(bytes, 0, size);
+        }
+
+        private void ensureRoom(int needed) {
+            if (size + needed > bytes.length) {
+                bytes = Arrays.copyOf(bytes, Math.max(bytes.length * 2, size + needed));
+            }
+        }
+    }
+}
@@ -0,0 +1,192 @@
+package com.spruce.logging;
+
+import com.spruce.config.LogProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Writes events in the compact {@link BinaryLogFormat} when {@code spruce.log.format} is
+ * {@code BINARY} or {@code BOTH}.
+ *
+ * The event's name and template are stored instead of the formatted message, so repeated
+ * events cost their timestamp delta, a few ids and their arguments. Strings are interned
+ * per file up to {@code binary-dictionary-size}; beyond that, and for arguments longer
+ * than {@link #MAX_INTERNED_ARG} characters, they are written inline each time. A run
+ * always starts a new file, and a failed write rolls the file, so a torn record can only
+ * ever end a file.
+ */
+@Component
+@Slf4j
+public class BinaryLogSink implements LogSink {
+
+    static final int MAX_INTERNED_ARG = 64;
+
+    private final RollingFile file;
+    private final boolean enabled;
+    private final int dictionarySize;
+    private final BinaryLogFormat.Output out = new BinaryLogFormat.Output();
+
+    // Per file: interned strings and the timestamp the next delta is relative to
+    private final Map<String, Integer> dictionary = new HashMap<>();
+    private long lastTimestamp;
+
+    public BinaryLogSink(LogProperties logProperties) {
+        this.file = new RollingFile(Paths.get(logProperties.getBinaryFile()),
+            logProperties.getRetention().getFileMaxSizeMb() * 1024 * 1024, false);
+        this.enabled = logProperties.getFormat() != LogFormat.TEXT;
+        this.dictionarySize = logProperties.getBinaryDictionarySize();
+    }
+
+    @Override
+    public void write(List<LogEvent> batch) {
+        if (!enabled || batch.isEmpty()) {
+            return;
+        }
+        file.rollIfDue(LocalDate.now());
+        out.clear();
+        if (file.size() == 0) {
+            startFile(batch.get(0).getTimestamp());
+        }
+        for (LogEvent event : batch) {
+            encode(event);
+        }
+        try {
+            file.write(out.view());
+        } catch (IOException e) {
+            log.error("Failed to write to binary log file {}: {}", file.getPath(), e.getMessage());
+            try {
+                file.roll();
+            } catch (IOException rollFailure) {
+                log.error("Failed to roll binary log file {}: {}", file.getPath(), rollFailure.getMessage());
+            }
+        }
+    }
+
+    @Override
+    public void tick(long now) {
+        LocalDate today = LocalDate.now();
+        if (file.isStale(today)) {
+            file.rollIfDue(today);
+        }
+    }
+
+    @Override
+    public void close() {
+        file.close();
+    }
+
+    Path getPath() {
+        return file.getPath();
+    }
+
+    private void startFile(long baseTimestamp) {
+        dictionary.clear();
+        lastTimestamp = baseTimestamp;
+        out.write(BinaryLogFormat.MAGIC);
+        out.write(BinaryLogFormat.VERSION);
+        out.writeVarLong(baseTimestamp);
+        // Fixed low ids so levels and categories are always single bytes
+        for (String level : new String[] {"INFO", "WARN", "ERROR", "DEBUG"}) {
+            intern(level);
+        }
+        for (LogCategory category : LogCategory.values()) {
+            intern(category.name());
+        }
+    }
+
+    private void encode(LogEvent event) {
+        int level = intern(event.getLevel());
+        int category = intern(event.getCategory());
+        int name = intern(event.getName());
+        int template = intern(event.getTemplate());
+        Object[] args = event.getArgs() != null ? event.getArgs() : new Object[0];
+
+        // Definitions for interned arguments must precede the event that uses them
+        int[] argRefs = new int[args.length];
+        for (int i = 0; i < args.length; i++) {
+            argRefs[i] = -1;
+            Object arg = args[i];
+            if (arg != null && !isIntegral(arg)) {
+                String text = arg.toString();
+                if (text.length() <= MAX_INTERNED_ARG) {
+                    argRefs[i] = intern(text);
+                }
+            }
+        }
+
+        out.write(BinaryLogFormat.EVENT);
+        out.writeVarLong(BinaryLogFormat.zigzag(event.getTimestamp() - lastTimestamp));
+        lastTimestamp = event.getTimestamp();
+        writeString(event.getLevel(), level);
+        writeString(event.getCategory(), category);
+        writeString(event.getName(), name);
+        writeString(event.getTemplate(), template);
+        out.writeVarLong(args.length);
+        for (int i = 0; i < args.length; i++) {
+            Object arg = args[i];
+            if (arg == null) {
+                out.write(BinaryLogFormat.ARG_NULL);
+            } else if (isIntegral(arg)) {
+                out.write(BinaryLogFormat.ARG_LONG);
+                out.writeVarLong(BinaryLogFormat.zigzag(((Number) arg).longValue()));
+            } else if (argRefs[i] >= 0) {
+                out.write(BinaryLogFormat.ARG_REF);
+                out.writeVarLong(argRefs[i]);
+            } else {
+                out.write(BinaryLogFormat.ARG_TEXT);
+                writeText(arg.toString());
+            }
+        }
+    }
+
+    /**
+     * @return the string's id, defining it first if needed, or -1 if it is null or the dictionary is full
+     */
+    private int intern(String value) {
+        if (value == null) {
+            return -1;
+        }
+        Integer id = dictionary.get(value);
+        if (id != null) {
+            return id;
+        }
+        if (dictionary.size() >= dictionarySize) {
+            return -1;
+        }
+        int next = dictionary.size();
+        dictionary.put(value, next);
+        out.write(BinaryLogFormat.STRING);
+        writeText(value);
+        return next;
+    }
+
+    private void writeString(String value, int id) {
+        if (value == null) {
+            out.writeVarLong(BinaryLogFormat.STR_NULL);
+        } else if (id < 0) {
+            out.writeVarLong(BinaryLogFormat.STR_INLINE);
+            writeText(value);
+        } else {
+            out.writeVarLong(BinaryLogFormat.STR_ID_BASE + id);
+        }
+    }
+
+    private void writeText(String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        out.writeVarLong(bytes.length);
+        out.write(bytes);
+    }
+
+    private static boolean isIntegral(Object arg) {
+        return arg instanceof Long || arg instanceof Integer || arg instanceof Short || arg instanceof Byte;
+    }
+}
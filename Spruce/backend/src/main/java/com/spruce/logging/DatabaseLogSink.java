@@ -0,0 +1,216 @@
+package com.spruce.logging;
+
+import com.spruce.config.LogProperties;
+import com.spruce.model.LogEntry;
+import com.spruce.repository.LogRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Persists events to the {@code logs} table in JDBC batches.
+ *
+ * Events accumulate until {@code batch-size} are pending or the oldest has waited
+ * {@code flush-interval-ms}, then go out in one transaction. With pooled sequence IDs
+ * and {@code hibernate.jdbc.batch_size} set, Hibernate sends each chunk as one JDBC
+ * batch (a multi-row INSERT on MySQL with {@code rewriteBatchedStatements}). If the
+ * database fails, entries are retried on the next trigger and the oldest beyond
+ * {@code max-pending} are dropped.
+ *
+ * Tables that predate the sequence hold IDENTITY ids while {@code logs_seq} starts at 1,
+ * so on startup the sequence is moved past {@code MAX(id)} if it is behind.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class DatabaseLogSink implements LogSink {
+
+    private final LogRepository logRepository;
+    private final LogProperties logProperties;
+    private final JdbcTemplate jdbcTemplate;
+
+    // Writer thread only
+    private final Deque<LogEvent> pending = new ArrayDeque<>();
+    private long oldestPendingAt;
+    private boolean failing;
+
+    private final LongAdder batches = new LongAdder();
+    private final LongAdder persisted = new LongAdder();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder flushNanos = new LongAdder();
+    private volatile int pendingCount;
+    private volatile int lastBatchSize;
+    private volatile int maxBatchSize;
+    private volatile long lastFlushNanos;
+    private volatile long maxFlushNanos;
+
+    /**
+     * Seed {@code logs_seq} to {@code MAX(id) + allocationSize} when it is behind. Runs before
+     * the log writer starts, once Hibernate has created or updated the schema.
+     */
+    @PostConstruct
+    public void seedSequence() {
+        if (!logProperties.getDb().isEnabled()) {
+            return;
+        }
+        try {
+            Long maxId = jdbcTemplate.queryForObject("SELECT MAX(id) FROM logs", Long.class);
+            if (maxId == null) {
+                return;
+            }
+            long floor = maxId + LogEntry.ID_ALLOCATION_SIZE;
+            String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+            if (product != null && product.toLowerCase().contains("mysql")) {
+                // Emulated with a one-row table; the guard keeps a running instance's later value
+                if (jdbcTemplate.update("UPDATE logs_seq SET next_val = ? WHERE next_val < ?", floor, floor) > 0) {
+                    log.info("Moved logs_seq past existing log ids to {}", floor);
+                }
+                return;
+            }
+            Long next = jdbcTemplate.queryForObject(
+                "SELECT BASE_VALUE FROM INFORMATION_SCHEMA.SEQUENCES WHERE UPPER(SEQUENCE_NAME) = 'LOGS_SEQ'", Long.class);
+            if (next != null && next < floor) {
+                jdbcTemplate.execute("ALTER SEQUENCE logs_seq RESTART WITH " + floor);
+                log.info("Moved logs_seq past existing log ids to {}", floor);
+            }
+        } catch (DataAccessException e) {
+            log.warn("Could not check logs_seq against existing log ids: {}", e.getMessage());
+        }
+    }
+
+    @Override
+    public void write(List<LogEvent> batch) {
+        LogProperties.Db config = logProperties.getDb();
+        if (!config.isEnabled()) {
+            return;
+        }
+        if (pending.isEmpty()) {
+            oldestPendingAt = System.currentTimeMillis();
+        }
+        pending.addAll(batch);
+        while (pending.size() > config.getMaxPending()) {
+            pending.pollFirst();
+            dropped.increment();
+        }
+        if (pending.size() >= config.getBatchSize()) {
+            flush();
+        }
+        pendingCount = pending.size();
+    }
+
+    @Override
+    public void tick(long now) {
+        if (!pending.isEmpty() && now - oldestPendingAt >= logProperties.getDb().getFlushIntervalMs()) {
+            flush();
+            pendingCount = pending.size();
+        }
+    }
+
+    @Override
+    public void close() {
+        flush();
+        if (!pending.isEmpty()) {
+            log.warn("Dropping {} log entries that could not be persisted before shutdown", pending.size());
+            dropped.add(pending.size());
+            pending.clear();
+        }
+        pendingCount = 0;
+    }
+
+    /**
+     * Batch persistence counters (for admin monitoring).
+     */
+    public Map<String, Object> getStats() {
+        long batchCount = batches.sum();
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("batches", batchCount);
+        stats.put("persisted", persisted.sum());
+        stats.put("pending", pendingCount);
+        stats.put("dropped", dropped.sum());
+        stats.put("lastBatchSize", lastBatchSize);
+        stats.put("maxBatchSize", maxBatchSize);
+        stats.put("avgBatchSize", batchCount > 0 ? (double) persisted.sum() / batchCount : 0.0);
+        stats.put("lastFlushMs", toMillis(lastFlushNanos));
+        stats.put("maxFlushMs", toMillis(maxFlushNanos));
+        stats.put("avgFlushMs", batchCount > 0 ? toMillis(flushNanos.sum() / batchCount) : 0.0);
+        return stats;
+    }
+
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    private void flush() {
+        int batchSize = logProperties.getDb().getBatchSize();
+        while (!pending.isEmpty()) {
+            List<LogEvent> chunk = new ArrayList<>(Math.min(batchSize, pending.size()));
+            while (chunk.size() < batchSize && !pending.isEmpty()) {
+                chunk.add(pending.pollFirst());
+            }
+            if (!persist(chunk)) {
+                // Put the chunk back in order and retry after another interval
+                for (int i = chunk.size() - 1; i >= 0; i--) {
+                    pending.addFirst(chunk.get(i));
+                }
+                oldestPendingAt = System.currentTimeMillis();
+                return;
+            }
+        }
+    }
+
+    private boolean persist(List<LogEvent> chunk) {
+        // Entities are built per attempt so a failed batch never leaves half-assigned IDs behind
+        List<LogEntry> entries = new ArrayList<>(chunk.size());
+        for (LogEvent event : chunk) {
+            entries.add(LogEntry.builder()
+                .level(event.getLevel())
+                .category(event.getCategory())
+                .message(event.getMessage())
+                .createdAt(event.getDateTime())
+                .logDay(LogEntry.dayOf(event.getDateTime().toLocalDate()))
+                .build());
+        }
+
+        long started = System.nanoTime();
+        try {
+            logRepository.saveAll(entries);
+        } catch (Exception e) {
+            if (!failing) {
+                log.warn("Failed to persist {} log entries, will retry: {}", entries.size(), e.getMessage());
+                failing = true;
+            }
+            return false;
+        }
+        long elapsed = System.nanoTime() - started;
+        if (failing) {
+            log.info("Log persistence recovered");
+            failing = false;
+        }
+
+        batches.increment();
+        persisted.add(entries.size());
+        flushNanos.add(elapsed);
+        lastBatchSize = entries.size();
+        maxBatchSize = Math.max(maxBatchSize, entries.size());
+        lastFlushNanos = elapsed;
+        maxFlushNanos = Math.max(maxFlushNanos, elapsed);
+        return true;
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / (double) TimeUnit.MILLISECONDS.toNanos(1);
+    }
+}
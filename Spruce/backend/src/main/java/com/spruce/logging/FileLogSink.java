@@ -0,0 +1,87 @@
+package com.spruce.logging;
+
+import com.spruce.config.LogProperties;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * Appends events to the flat text log through one long-lived {@link FileChannel},
+ * one write per batch.
+ *
+ * The file is rolled when the day changes or it reaches {@code file-max-size-mb}; see
+ * {@link RollingFile}. Inactive when {@code spruce.log.format} is {@code BINARY}.
+ */
+@Component
+@Slf4j
+public class FileLogSink implements LogSink {
+    
+    private static final byte[] LINE_SEPARATOR = System.lineSeparator().getBytes(StandardCharsets.UTF_8);
+    
+    private final RollingFile file;
+    private final boolean enabled;
+    private ByteBuffer buffer = ByteBuffer.allocate(64 * 1024);
+    
+    public FileLogSink(LogProperties logProperties) {
+        this.file = new RollingFile(Paths.get(logProperties.getFile()),
+            logProperties.getRetention().getFileMaxSizeMb() * 1024 * 1024, true);
+        this.enabled = logProperties.getFormat() != LogFormat.BINARY;
+    }
+    
+    @Override
+    public void write(List<LogEvent> batch) {
+        if (!enabled) {
+            return;
+        }
+        file.rollIfDue(LocalDate.now());
+        buffer.clear();
+        for (LogEvent event : batch) {
+            byte[] line = event.toLine().getBytes(StandardCharsets.UTF_8);
+            ensureRoom(line.length + LINE_SEPARATOR.length);
+            buffer.put(line).put(LINE_SEPARATOR);
+        }
+        buffer.flip();
+        try {
+            file.write(buffer);
+        } catch (IOException e) {
+            log.error("Failed to write to log file {}: {}", file.getPath(), e.getMessage());
+            file.close();
+        }
+    }
+    
+    @Override
+    public void tick(long now) {
+        // Roll at midnight even if nothing is logged around it
+        LocalDate today = LocalDate.now();
+        if (file.isStale(today)) {
+            file.rollIfDue(today);
+        }
+    }
+    
+    @Override
+    public void close() {
+        file.close();
+    }
+    
+    Path getPath() {
+        return file.getPath();
+    }
+    
+    private void ensureRoom(int bytes) {
+        if (buffer.remaining() >= bytes) {
+            return;
+        }
+        ByteBuffer larger = ByteBuffer.allocate(Math.max(buffer.capacity() * 2, buffer.position() + bytes));
+        buffer.flip();
+        larger.put(buffer);
+        buffer = larger;
+    }
+}
@@ -0,0 +1,13 @@
+package com.spruce.logging;
+
+/**
+ * Audit log categories. Sampling and rate limits are configured per category.
+ */
+public enum LogCategory {
+    GENERAL,
+    HANDSHAKE,
+    SIGNATURE,
+    SESSION,
+    MESSAGE,
+    CRYPTO
+}
@@ -0,0 +1,122 @@
+package com.spruce.logging;
+
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.time.format.DateTimeFormatter;
+
+/**
+ * One audit log event, captured on the request thread and written by the {@link AsyncLogWriter}.
+ *
+ * The message is kept as an event name plus a details template with {@code {}} placeholders
+ * and its arguments; it is only formatted when a sink or reader first needs the text,
+ * which normally happens on the writer thread.
+ */
+public final class LogEvent {
+    
+    private static final DateTimeFormatter FORMATTER = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    
+    private final long timestamp;
+    private final String level;
+    private final String category;
+    private final String name;
+    private final String template;
+    private final Object[] args;
+    
+    // Formatted on first use, by whichever thread gets there first
+    private String message;
+    private String line;
+    
+    /**
+     * @param name     what happened, e.g. "AES-GCM Encryption"
+     * @param template details with {@code {}} placeholders, or null for none
+     * @param args     values for the placeholders
+     */
+    public LogEvent(long timestamp, String level, String category, String name, String template, Object... args) {
+        this.timestamp = timestamp;
+        this.level = level;
+        this.category = category;
+        this.name = name;
+        this.template = template;
+        this.args = args;
+    }
+    
+    /**
+     * Epoch milliseconds at which the event was logged.
+     */
+    public long getTimestamp() {
+        return timestamp;
+    }
+    
+    public String getLevel() {
+        return level;
+    }
+    
+    public String getCategory() {
+        return category;
+    }
+    
+    public String getName() {
+        return name;
+    }
+    
+    public String getTemplate() {
+        return template;
+    }
+    
+    public Object[] getArgs() {
+        return args;
+    }
+    
+    /**
+     * The formatted message: {@code name | details}.
+     */
+    public String getMessage() {
+        String formatted = message;
+        if (formatted == null) {
+            formatted = template != null ? name + " | " + formatTemplate(template, args) : name;
+            message = formatted;
+        }
+        return formatted;
+    }
+    
+    public LocalDateTime getDateTime() {
+        return LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault());
+    }
+    
+    /**
+     * The event in the text log layout: {@code [timestamp] [LEVEL] [CATEGORY] message}.
+     */
+    public String toLine() {
+        String formatted = line;
+        if (formatted == null) {
+            formatted = format(getDateTime(), level, category, getMessage());
+            line = formatted;
+        }
+        return formatted;
+    }
+    
+    /**
+     * Substitute arguments for {@code {}} placeholders in order. Without arguments the
+     * template is returned as is, so literal braces in preformatted text survive.
+     */
+    public static String formatTemplate(String template, Object[] args) {
+        if (args == null || args.length == 0) {
+            return template;
+        }
+        StringBuilder out = new StringBuilder(template.length() + args.length * 16);
+        int from = 0;
+        int arg = 0;
+        int at;
+        while (arg < args.length && (at = template.indexOf("{}", from)) >= 0) {
+            out.append(template, from, at).append(args[arg++]);
+            from = at + 2;
+        }
+        return out.append(template, from, template.length()).toString();
+    }
+    
+    public static String format(LocalDateTime dateTime, String level, String category, String message) {
+        String timestamp = dateTime != null ? dateTime.format(FORMATTER) : "";
+        return String.format("[%s] [%s] [%s] %s", timestamp, level, category, message);
+    }
+}
@@ -0,0 +1,16 @@
+package com.spruce.logging;
+
+/**
+ * On-disk format(s) of the audit log file.
+ */
+public enum LogFormat {
+    
+    /** Formatted text lines only. */
+    TEXT,
+    
+    /** Compact binary records only; print them with {@link AuditLogDecoder}. */
+    BINARY,
+    
+    /** Both files. */
+    BOTH
+}
@@ -0,0 +1,13 @@
+package com.spruce.logging;
+
+/**
+ * What {@link AsyncLogWriter#submit} does when the ring buffer is full.
+ */
+public enum LogOverflowPolicy {
+    
+    /** Wait for the writer to make room; no event is lost. */
+    BLOCK,
+    
+    /** Discard the new event and count it; request threads never wait. */
+    DROP
+}
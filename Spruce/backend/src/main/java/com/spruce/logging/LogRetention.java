@@ -0,0 +1,328 @@
+package com.spruce.logging;
+
+import com.spruce.config.LogProperties;
+import com.spruce.model.LogEntry;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Removes audit log data older than {@code spruce.log.retention.max-age}, a whole day at a time.
+ *
+ * Rows in {@code logs} carry their day in {@code log_day}. On H2, or on MySQL without
+ * partitioning, expired days are deleted a chunk at a time through the {@code (log_day, id)}
+ * index, each chunk its own short statement, so the batch writer is never blocked for long.
+ * With {@code partitioned} on MySQL the table is range-partitioned by day and an expired day is
+ * one {@code DROP PARTITION}, which removes its rows without touching the others.
+ *
+ * The same thread compresses log files rolled by {@link FileLogSink} and {@link BinaryLogSink}
+ * and deletes archives past the retention age.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class LogRetention {
+
+    private static final String SELECT_EXPIRED = "SELECT id FROM logs WHERE log_day < ? ORDER BY log_day, id LIMIT ?";
+    private static final String SELECT_UNBUCKETED = "SELECT id FROM logs WHERE log_day IS NULL LIMIT ?";
+    private static final String DAY_OF_CREATED_AT =
+        "EXTRACT(YEAR FROM created_at) * 10000 + EXTRACT(MONTH FROM created_at) * 100 + EXTRACT(DAY FROM created_at)";
+    private static final String FUTURE_PARTITION = "p_future";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final LogProperties logProperties;
+    private final FileLogSink fileLogSink;
+    private final BinaryLogSink binaryLogSink;
+
+    private final LongAdder purgedRows = new LongAdder();
+    private final LongAdder droppedPartitions = new LongAdder();
+    private final LongAdder purgedArchives = new LongAdder();
+    private volatile boolean running;
+    private volatile boolean partitioned;
+    private Thread purger;
+
+    /**
+     * Start once the schema exists, i.e. after Hibernate has created or updated it.
+     */
+    @EventListener(ApplicationReadyEvent.class)
+    public void start() {
+        if (!logProperties.getRetention().isEnabled()) {
+            return;
+        }
+        running = true;
+        purger = new Thread(this::purgeLoop, "log-retention");
+        purger.setDaemon(true);
+        purger.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (purger != null) {
+            purger.interrupt();
+        }
+    }
+
+    /**
+     * Rows, partitions and file archives removed so far (for admin monitoring).
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("partitioned", partitioned);
+        stats.put("purgedRows", purgedRows.sum());
+        stats.put("droppedPartitions", droppedPartitions.sum());
+        stats.put("purgedArchives", purgedArchives.sum());
+        return stats;
+    }
+
+    private void purgeLoop() {
+        try {
+            bucketUnassignedRows();
+            partitioned = logProperties.getRetention().isPartitioned() && preparePartitions();
+        } catch (RuntimeException e) {
+            log.error("Log retention setup failed, falling back to chunked deletes", e);
+        }
+        while (running) {
+            try {
+                purge(LocalDate.now());
+                Thread.sleep(logProperties.getRetention().getPurgeIntervalMs());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Log retention purge failed", e);
+            }
+        }
+    }
+
+    void purge(LocalDate today) {
+        LocalDate cutoff = today.minusDays(logProperties.getRetention().getMaxAge().toDays());
+        int cutoffDay = LogEntry.dayOf(cutoff);
+        if (partitioned) {
+            maintainPartitions(today, cutoffDay);
+        } else {
+            deleteExpired(cutoffDay);
+        }
+        for (Path logFile : List.of(fileLogSink.getPath(), binaryLogSink.getPath())) {
+            compressArchives(logFile);
+            deleteArchives(logFile, cutoff);
+        }
+    }
+
+    /**
+     * Delete rows of expired days a chunk at a time.
+     */
+    private void deleteExpired(int cutoffDay) {
+        int chunk = logProperties.getRetention().getDeleteChunk();
+        long deleted = 0;
+        while (running) {
+            List<Long> ids = jdbcTemplate.queryForList(SELECT_EXPIRED, Long.class, cutoffDay, chunk);
+            if (ids.isEmpty()) {
+                break;
+            }
+            deleted += deleteByIds(ids);
+            if (ids.size() < chunk) {
+                break;
+            }
+        }
+        if (deleted > 0) {
+            purgedRows.add(deleted);
+            log.info("Purged {} log rows older than day {}", deleted, cutoffDay);
+        }
+    }
+
+    private int deleteByIds(List<Long> ids) {
+        String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+        return jdbcTemplate.update("DELETE FROM logs WHERE id IN (" + placeholders + ")", ids.toArray());
+    }
+
+    /**
+     * Rows written before the day column existed get their day from {@code created_at}.
+     */
+    private void bucketUnassignedRows() {
+        int chunk = logProperties.getRetention().getDeleteChunk();
+        while (running) {
+            List<Long> ids = jdbcTemplate.queryForList(SELECT_UNBUCKETED, Long.class, chunk);
+            if (ids.isEmpty()) {
+                return;
+            }
+            String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+            jdbcTemplate.update("UPDATE logs SET log_day = COALESCE(" + DAY_OF_CREATED_AT + ", ?) WHERE id IN (" + placeholders + ")",
+                prepend(LogEntry.dayOf(LocalDate.now()), ids));
+            if (ids.size() < chunk) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * Make sure {@code logs} is range-partitioned by {@code log_day}, converting it if needed.
+     *
+     * @return false if the database is not MySQL, in which case chunked deletes are used
+     */
+    private boolean preparePartitions() {
+        String product = jdbcTemplate.execute((ConnectionCallback<String>) c -> c.getMetaData().getDatabaseProductName());
+        if (product == null || !product.toLowerCase().contains("mysql")) {
+            log.info("Log partitioning needs MySQL, {} will purge with chunked deletes", product);
+            return false;
+        }
+        if (!partitionBounds().isEmpty()) {
+            return true;
+        }
+
+        // MySQL requires the partitioning column in every unique key, so the primary key
+        // becomes (id, log_day). Everything written before today lands in today's partition.
+        int tomorrow = LogEntry.dayOf(LocalDate.now().plusDays(1));
+        log.info("Partitioning the logs table by day");
+        jdbcTemplate.execute("ALTER TABLE logs MODIFY log_day INT NOT NULL");
+        jdbcTemplate.execute("ALTER TABLE logs DROP PRIMARY KEY, ADD PRIMARY KEY (id, log_day) "
+            + "PARTITION BY RANGE (log_day) ("
+            + "PARTITION " + partitionName(LocalDate.now()) + " VALUES LESS THAN (" + tomorrow + "), "
+            + "PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN MAXVALUE)");
+        return true;
+    }
+
+    /**
+     * Create upcoming daily partitions and drop the ones whose whole day has expired.
+     */
+    private void maintainPartitions(LocalDate today, int cutoffDay) {
+        List<PartitionBound> bounds = partitionBounds();
+        int highest = 0;
+        for (PartitionBound bound : bounds) {
+            if (bound.lessThan != null) {
+                highest = Math.max(highest, bound.lessThan);
+            }
+        }
+
+        // Split the empty catch-all partition so each coming day gets its own
+        for (int i = 0; i <= logProperties.getRetention().getPartitionsAhead(); i++) {
+            LocalDate day = today.plusDays(i);
+            int upper = LogEntry.dayOf(day.plusDays(1));
+            if (upper <= highest) {
+                continue;
+            }
+            jdbcTemplate.execute("ALTER TABLE logs REORGANIZE PARTITION " + FUTURE_PARTITION + " INTO ("
+                + "PARTITION " + partitionName(day) + " VALUES LESS THAN (" + upper + "), "
+                + "PARTITION " + FUTURE_PARTITION + " VALUES LESS THAN MAXVALUE)");
+            highest = upper;
+        }
+
+        for (PartitionBound bound : bounds) {
+            if (bound.lessThan != null && bound.lessThan <= cutoffDay) {
+                jdbcTemplate.execute("ALTER TABLE logs DROP PARTITION " + bound.name);
+                droppedPartitions.increment();
+                log.info("Dropped log partition {}", bound.name);
+            }
+        }
+    }
+
+    private List<PartitionBound> partitionBounds() {
+        return jdbcTemplate.query("SELECT PARTITION_NAME, PARTITION_DESCRIPTION FROM information_schema.PARTITIONS "
+                + "WHERE TABLE_SCHEMA = DATABASE() AND TABLE_NAME = 'logs' AND PARTITION_NAME IS NOT NULL",
+            (rs, row) -> {
+                String description = rs.getString(2);
+                Integer lessThan = description == null || "MAXVALUE".equalsIgnoreCase(description)
+                    ? null : Integer.valueOf(description.trim());
+                return new PartitionBound(rs.getString(1), lessThan);
+            });
+    }
+
+    private static String partitionName(LocalDate day) {
+        return "p" + LogEntry.dayOf(day);
+    }
+
+    /**
+     * Gzip archives the writer has rolled. A half-written {@code .gz} from a crash is simply redone.
+     */
+    private void compressArchives(Path logFile) {
+        for (Path archive : archives(logFile)) {
+            if (archive.getFileName().toString().endsWith(".gz")) {
+                continue;
+            }
+            Path compressed = archive.resolveSibling(archive.getFileName() + ".gz");
+            Path partial = archive.resolveSibling(archive.getFileName() + ".gz.tmp");
+            try {
+                try (InputStream in = Files.newInputStream(archive);
+                     OutputStream out = new GZIPOutputStream(Files.newOutputStream(partial), 64 * 1024)) {
+                    in.transferTo(out);
+                }
+                Files.move(partial, compressed, StandardCopyOption.ATOMIC_MOVE);
+                Files.delete(archive);
+            } catch (IOException e) {
+                log.warn("Failed to compress log archive {}: {}", archive, e.getMessage());
+            }
+        }
+    }
+
+    private void deleteArchives(Path logFile, LocalDate cutoff) {
+        for (Path archive : archives(logFile)) {
+            LocalDate day = RollingFile.archiveDate(logFile, archive);
+            if (day != null && day.isBefore(cutoff)) {
+                try {
+                    Files.deleteIfExists(archive);
+                    purgedArchives.increment();
+                } catch (IOException e) {
+                    log.warn("Failed to delete log archive {}: {}", archive, e.getMessage());
+                }
+            }
+        }
+    }
+
+    private List<Path> archives(Path logFile) {
+        Path directory = logFile.toAbsolutePath().getParent();
+        List<Path> archives = new ArrayList<>();
+        if (directory == null || !Files.isDirectory(directory)) {
+            return archives;
+        }
+        try (DirectoryStream<Path> files = Files.newDirectoryStream(directory)) {
+            for (Path file : files) {
+                if (RollingFile.archiveDate(logFile, file) != null) {
+                    archives.add(file);
+                }
+            }
+        } catch (IOException e) {
+            log.warn("Failed to list log archives: {}", e.getMessage());
+        }
+        return archives;
+    }
+
+    private static Object[] prepend(Object first, List<Long> rest) {
+        Object[] args = new Object[rest.size() + 1];
+        args[0] = first;
+        for (int i = 0; i < rest.size(); i++) {
+            args[i + 1] = rest.get(i);
+        }
+        return args;
+    }
+
+    private static final class PartitionBound {
+        final String name;
+        final Integer lessThan;     // Null for the MAXVALUE partition
+
+        PartitionBound(String name, Integer lessThan) {
+            this.name = name;
+            this.lessThan = lessThan;
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.spruce.logging;
+
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Bounded, lock-free, multi-producer/single-consumer ring of log events.
+ *
+ * Every slot carries a sequence number telling producers and the consumer whose turn it
+ * is: a slot is free for the producer that claims position {@code p} when its sequence
+ * equals {@code p}, and holds a published event when it equals {@code p + 1}. Producers
+ * claim positions with a CAS on {@code tail}; the consumer needs no atomics for {@code head}.
+ */
+final class LogRingBuffer {
+
+    private final LogEvent[] slots;
+    private final AtomicLongArray sequences;
+    private final int mask;
+
+    private final AtomicLong tail = new AtomicLong();
+    // Written only by the consumer; volatile so size() is meaningful from other threads
+    private volatile long head;
+
+    LogRingBuffer(int requestedCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        this.slots = new LogEvent[capacity];
+        this.sequences = new AtomicLongArray(capacity);
+        this.mask = capacity - 1;
+        for (int i = 0; i < capacity; i++) {
+            sequences.set(i, i);
+        }
+    }
+
+    /**
+     * Publish an event.
+     *
+     * @return false if the ring is full
+     */
+    boolean offer(LogEvent event) {
+        while (true) {
+            long position = tail.get();
+            int index = (int) (position & mask);
+            long available = sequences.get(index) - position;
+            if (available == 0) {
+                if (tail.compareAndSet(position, position + 1)) {
+                    slots[index] = event;
+                    sequences.set(index, position + 1);
+                    return true;
+                }
+            } else if (available < 0) {
+                // The consumer has not freed this slot from the previous lap yet
+                return false;
+            }
+            // Another producer claimed this position first; retry with the new tail
+        }
+    }
+
+    /**
+     * Move up to {@code max} published events into {@code batch}. Consumer thread only.
+     *
+     * @return the number of events moved
+     */
+    int drainTo(List<LogEvent> batch, int max) {
+        long position = head;
+        int drained = 0;
+        while (drained < max) {
+            int index = (int) (position & mask);
+            if (sequences.get(index) != position + 1) {
+                break;
+            }
+            batch.add(slots[index]);
+            slots[index] = null;
+            // Hand the slot to the producer one lap ahead
+            sequences.set(index, position + slots.length);
+            position++;
+            drained++;
+        }
+        head = position;
+        return drained;
+    }
+
+    boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Number of claimed positions not yet consumed (includes events still being published).
+     */
+    int size() {
+        return (int) Math.max(0, tail.get() - head);
+    }
+
+    int capacity() {
+        return slots.length;
+    }
+}
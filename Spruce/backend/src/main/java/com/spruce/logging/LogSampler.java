@@ -0,0 +1,117 @@
+package com.spruce.logging;
+
+import com.spruce.config.LogProperties;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Decides per category whether an event is logged individually or only counted,
+ * and turns the counts into periodic summary events.
+ *
+ * The check runs on the request thread before anything is formatted or allocated,
+ * so a suppressed event costs a few atomic operations.
+ */
+public final class LogSampler {
+    
+    private final Map<LogCategory, CategoryState> states = new EnumMap<>(LogCategory.class);
+    
+    public LogSampler(Map<LogCategory, LogProperties.CategoryPolicy> policies) {
+        policies.forEach((category, policy) -> states.put(category, new CategoryState(policy)));
+    }
+    
+    /**
+     * @return true if the event should be logged individually
+     */
+    public boolean admit(LogCategory category, String name) {
+        CategoryState state = states.get(category);
+        return state == null || state.admit(name);
+    }
+    
+    /**
+     * Build one summary event per category that counted anything since the last call.
+     */
+    public List<LogEvent> drainSummaries(long now, long intervalMs) {
+        List<LogEvent> summaries = new ArrayList<>();
+        states.forEach((category, state) -> {
+            Map<String, Long> counts = new TreeMap<>();
+            long total = 0;
+            for (Map.Entry<String, LongAdder> entry : state.counted.entrySet()) {
+                long count = entry.getValue().sumThenReset();
+                if (count > 0) {
+                    counts.put(entry.getKey(), count);
+                    total += count;
+                }
+            }
+            if (total == 0) {
+                return;
+            }
+            StringBuilder breakdown = new StringBuilder();
+            counts.forEach((name, count) -> breakdown.append(breakdown.length() > 0 ? ", " : "").append(name).append(" x").append(count));
+            String kind = state.policy.isSummaryOnly() ? "events" : "events suppressed";
+            summaries.add(new LogEvent(now, "INFO", category.name(), "Summary",
+                "{} {} in the last {} ms: {}", total, kind, intervalMs, breakdown));
+        });
+        return summaries;
+    }
+    
+    /**
+     * Events counted instead of logged individually since startup, per category.
+     */
+    public Map<String, Long> getSuppressedCounts() {
+        Map<String, Long> counts = new TreeMap<>();
+        states.forEach((category, state) -> counts.put(category.name(), state.suppressed.sum()));
+        return counts;
+    }
+    
+    public boolean isEmpty() {
+        return states.isEmpty();
+    }
+    
+    private static final class CategoryState {
+        private final LogProperties.CategoryPolicy policy;
+        private final Map<String, LongAdder> counted = new ConcurrentHashMap<>();
+        private final LongAdder suppressed = new LongAdder();
+        private final AtomicLong windowSecond = new AtomicLong();
+        private final AtomicInteger windowCount = new AtomicInteger();
+        
+        private CategoryState(LogProperties.CategoryPolicy policy) {
+            this.policy = policy;
+        }
+        
+        private boolean admit(String name) {
+            if (policy.isSummaryOnly()) {
+                return count(name);
+            }
+            if (policy.getSampleRate() < 1.0 && ThreadLocalRandom.current().nextDouble() >= policy.getSampleRate()) {
+                return count(name);
+            }
+            if (policy.getMaxPerSecond() > 0) {
+                long second = System.currentTimeMillis() / 1000;
+                long current = windowSecond.get();
+                // Whoever moves the window resets it; a few events may slip in around the boundary
+                if (current != second && windowSecond.compareAndSet(current, second)) {
+                    windowCount.set(0);
+                }
+                if (windowCount.incrementAndGet() > policy.getMaxPerSecond()) {
+                    return count(name);
+                }
+            }
+            return true;
+        }
+        
+        private boolean count(String name) {
+            counted.computeIfAbsent(name, k -> new LongAdder()).increment();
+            suppressed.increment();
+            return false;
+        }
+    }
+}
@@ -0,0 +1,29 @@
+package com.spruce.logging;
+
+import java.util.List;
+
+/**
+ * Destination for batches of audit log events. Sinks are only ever called from the
+ * {@link AsyncLogWriter}'s thread, so implementations need no locking of their own.
+ */
+public interface LogSink {
+    
+    /**
+     * Write a batch of events, oldest first. Failures are the sink's to report;
+     * one failing sink must not stop the others.
+     */
+    void write(List<LogEvent> batch);
+    
+    /**
+     * Called by the writer after every batch and at least every idle interval,
+     * so sinks that buffer can flush on a timer.
+     */
+    default void tick(long now) {
+    }
+    
+    /**
+     * Release resources once the writer has drained its buffer.
+     */
+    default void close() {
+    }
+}
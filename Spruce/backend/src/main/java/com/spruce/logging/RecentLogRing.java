@@ -0,0 +1,62 @@
+package com.spruce.logging;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Fixed-capacity, lock-free ring holding the most recent log events.
+ *
+ * Producers claim a sequence number with one atomic increment and overwrite the slot
+ * it maps to; nothing is ever copied or shifted. Each slot remembers the sequence it
+ * was written for, so a reader walking back from the newest sequence can tell a live
+ * entry from one that has been lapped or is still being published, and skip it.
+ */
+public final class RecentLogRing {
+
+    private static final class Slot {
+        final long seq;
+        final LogEvent event;
+
+        Slot(long seq, LogEvent event) {
+            this.seq = seq;
+            this.event = event;
+        }
+    }
+
+    private final AtomicReferenceArray<Slot> slots;
+    private final int mask;
+    private final AtomicLong next = new AtomicLong();
+
+    public RecentLogRing(int requestedCapacity) {
+        int capacity = Integer.highestOneBit(Math.max(2, requestedCapacity - 1)) << 1;
+        this.slots = new AtomicReferenceArray<>(capacity);
+        this.mask = capacity - 1;
+    }
+
+    public void add(LogEvent event) {
+        long seq = next.getAndIncrement();
+        slots.set((int) (seq & mask), new Slot(seq, event));
+    }
+
+    /**
+     * Up to {@code count} of the most recent events, newest first, in O(count).
+     */
+    public List<LogEvent> latest(int count) {
+        long end = next.get();
+        long start = Math.max(0, end - Math.min(count, slots.length()));
+        List<LogEvent> events = new ArrayList<>((int) (end - start));
+        for (long seq = end - 1; seq >= start; seq--) {
+            Slot slot = slots.get((int) (seq & mask));
+            if (slot != null && slot.seq == seq) {
+                events.add(slot.event);
+            }
+        }
+        return events;
+    }
+
+    public int capacity() {
+        return slots.length();
+    }
+}
@@ -0,0 +1,160 @@
+package com.spruce.logging;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.LocalDate;
+import java.time.ZoneId;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+/**
+ * An append-only log file that rolls daily and at a size limit. Writer thread only.
+ *
+ * Rolling renames the file to {@code <name>-<yyyy-MM-dd>.<n><ext>} and starts a new one.
+ * Renaming is all that happens on the writer thread; {@link LogRetention} compresses
+ * and expires the archives.
+ */
+@Slf4j
+final class RollingFile {
+
+    private final Path path;
+    private final long maxBytes;
+    private final boolean appendToExisting;
+    private FileChannel channel;
+
+    // The day the current file's contents belong to (null until first use), and its size
+    private LocalDate fileDay;
+    private long fileSize;
+
+    /**
+     * @param maxBytes         roll at this size as well as daily; zero or less for daily only
+     * @param appendToExisting continue a file left by a previous run, rather than archiving it
+     */
+    RollingFile(Path path, long maxBytes, boolean appendToExisting) {
+        this.path = path;
+        this.maxBytes = maxBytes;
+        this.appendToExisting = appendToExisting;
+    }
+
+    Path getPath() {
+        return path;
+    }
+
+    /**
+     * Bytes in the current file; zero means whatever is written next starts a new file.
+     */
+    long size() {
+        return fileSize;
+    }
+
+    /**
+     * Start a new file if the day has changed or the size limit is reached.
+     */
+    void rollIfDue(LocalDate today) {
+        try {
+            if (fileDay == null) {
+                // First use since startup: pick up an existing file and the day it was last written
+                boolean exists = Files.exists(path);
+                fileDay = exists ? LocalDate.ofInstant(Files.getLastModifiedTime(path).toInstant(), ZoneId.systemDefault()) : today;
+                fileSize = exists ? Files.size(path) : 0;
+                if (!appendToExisting && fileSize > 0) {
+                    roll();
+                    fileDay = today;
+                    return;
+                }
+            }
+            if (fileDay.equals(today) && (maxBytes <= 0 || fileSize < maxBytes)) {
+                return;
+            }
+            roll();
+        } catch (IOException e) {
+            log.error("Failed to roll log file {}: {}", path, e.getMessage());
+        }
+        fileDay = today;
+    }
+
+    /**
+     * True once the day has moved on from the current file's.
+     */
+    boolean isStale(LocalDate today) {
+        return fileDay != null && !fileDay.equals(today);
+    }
+
+    void write(ByteBuffer buffer) throws IOException {
+        FileChannel target = channel();
+        while (buffer.hasRemaining()) {
+            fileSize += target.write(buffer);
+        }
+    }
+
+    void close() {
+        if (channel == null) {
+            return;
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.debug("Failed to close log file {}", path, e);
+        }
+        channel = null;
+    }
+
+    /**
+     * Archive the current file now, e.g. because a failed write may have left it torn.
+     */
+    void roll() throws IOException {
+        close();
+        if (fileSize > 0 && Files.exists(path)) {
+            Files.move(path, nextArchive(fileDay != null ? fileDay : LocalDate.now()));
+        }
+        fileSize = 0;
+    }
+
+    /**
+     * The archive date of a rolled file of {@code logFile}, or null if {@code candidate} is not one.
+     * Matches both plain and compressed archives.
+     */
+    static LocalDate archiveDate(Path logFile, Path candidate) {
+        Matcher matcher = archivePattern(logFile).matcher(candidate.getFileName().toString());
+        return matcher.matches() ? LocalDate.parse(matcher.group(1)) : null;
+    }
+
+    private static Pattern archivePattern(Path logFile) {
+        String[] parts = splitName(logFile);
+        return Pattern.compile(Pattern.quote(parts[0]) + "-(\\d{4}-\\d{2}-\\d{2})\\.\\d+" + Pattern.quote(parts[1]) + "(\\.gz)?");
+    }
+
+    private static String[] splitName(Path logFile) {
+        String name = logFile.getFileName().toString();
+        int dot = name.lastIndexOf('.');
+        return dot > 0 ? new String[] {name.substring(0, dot), name.substring(dot)} : new String[] {name, ""};
+    }
+
+    private FileChannel channel() throws IOException {
+        if (channel == null || !channel.isOpen()) {
+            Path parent = path.toAbsolutePath().getParent();
+            if (parent != null) {
+                Files.createDirectories(parent);
+            }
+            channel = FileChannel.open(path, StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        }
+        return channel;
+    }
+
+    private Path nextArchive(LocalDate day) {
+        String[] parts = splitName(path);
+        for (int n = 1; ; n++) {
+            String name = parts[0] + "-" + day + "." + n + parts[1];
+            Path archive = path.resolveSibling(name);
+            if (!Files.exists(archive) && !Files.exists(archive.resolveSibling(name + ".gz"))) {
+                return archive;
+            }
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package com.spruce.logging;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.util.List;
+
+/**
+ * Mirrors audit events into the application log under the {@code LogService} logger,
+ * as the service did before events went through the writer thread.
+ */
+@Component
+@Slf4j(topic = "com.spruce.service.LogService")
+public class Slf4jLogSink implements LogSink {
+    
+    @Override
+    public void write(List<LogEvent> batch) {
+        if (!log.isInfoEnabled()) {
+            return;
+        }
+        for (LogEvent event : batch) {
+            log.info(event.toLine());
+        }
+    }
+}
@@ -0,0 +1,9 @@
+package com.spruce.model;
+
+/**
+ * The per-recipient queues a packet can be delivered through.
+ */
+public enum DeliveryChannel {
+    MESSAGES,
+    HANDSHAKES
+}
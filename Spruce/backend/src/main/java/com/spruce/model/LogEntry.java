@@ -1,11 +1,19 @@
 package com.spruce.model;
 
+import com.spruce.logging.LogEvent;
 import jakarta.persistence.*;
 import lombok.*;
+import java.time.LocalDate;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "logs")
+@Table(name = "logs", indexes = {
+    @Index(name = "idx_logs_category_id", columnList = "category, id"),
+    @Index(name = "idx_logs_level_id", columnList = "level, id"),
+    @Index(name = "idx_logs_category_level_id", columnList = "category, level, id"),
+    @Index(name = "idx_logs_created_at", columnList = "created_at"),
+    @Index(name = "idx_logs_day_id", columnList = "log_day, id")
+})
 @Getter
 @Setter
 @NoArgsConstructor
@@ -13,8 +21,14 @@ import java.time.LocalDateTime;
 @Builder
 public class LogEntry {
 
+    /** IDs reserved per sequence round trip. */
+    public static final int ID_ALLOCATION_SIZE = 500;
+
+    // Pooled sequence IDs: Hibernate reserves a block per round trip and can batch the inserts,
+    // which IDENTITY prevents. On MySQL the sequence is emulated with a table.
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    @GeneratedValue(strategy = GenerationType.SEQUENCE, generator = "logs_seq")
+    @SequenceGenerator(name = "logs_seq", sequenceName = "logs_seq", allocationSize = ID_ALLOCATION_SIZE)
     private Long id;
 
     @Column(name = "level", length = 32)
@@ -29,11 +43,29 @@ public class LogEntry {
     @Column(name = "created_at")
     private LocalDateTime createdAt;
 
+    // Day bucket as yyyyMMdd; retention purges, and on MySQL partitions, by whole days
+    @Column(name = "log_day")
+    private Integer logDay;
+
+    /**
+     * The entry in the text log layout used by the admin console.
+     */
+    public String toLine() {
+        return LogEvent.format(createdAt, level, category, message);
+    }
+
+    public static int dayOf(LocalDate date) {
+        return date.getYear() * 10_000 + date.getMonthValue() * 100 + date.getDayOfMonth();
+    }
+
     @PrePersist
     public void onCreate() {
         if (createdAt == null) {
             createdAt = LocalDateTime.now();
         }
+        if (logDay == null) {
+            logDay = dayOf(createdAt.toLocalDate());
+        }
     }
 }
 
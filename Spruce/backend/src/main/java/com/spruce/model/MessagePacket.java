@@ -21,6 +21,11 @@ public class MessagePacket {
     private String aad;
     private LocalDateTime timestamp;
     private String messageId;
+    private long seq;                          // Per-recipient queue position, 0 until queued
+    private String keyWrap;                    // Per-recipient wrapped content key for group messages
+    private String groupId;                    // Shared by every copy of a fan-out message
+    private Long ttlSeconds;                   // Requested lifetime while queued, null for the server default
+    private long expiresAt;                    // Epoch millis when the relay drops the packet, 0 = never
     
     public MessagePacket(String sender, String recipient, String encryptedContent, 
                         String nonce, String aad) {
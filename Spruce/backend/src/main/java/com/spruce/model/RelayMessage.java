@@ -0,0 +1,75 @@
+package com.spruce.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import java.time.LocalDateTime;
+
+/**
+ * Queued packet row used by the JDBC message store.
+ * The entity defines the schema; rows are written and read with plain JDBC
+ * so that inserts from concurrent senders can be batched into one statement.
+ */
+@Entity
+@Table(name = "relay_messages", indexes = {
+    @Index(name = "idx_relay_messages_recipient_seq", columnList = "recipient, channel, seq", unique = true),
+    @Index(name = "idx_relay_messages_payload", columnList = "payload_id"),
+    @Index(name = "idx_relay_messages_expires", columnList = "expires_at")
+})
+@Getter
+@Setter
+@NoArgsConstructor
+public class RelayMessage {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    // The packet's sequence number, allocated per recipient and channel from relay_sequences
+    @Column(name = "seq", nullable = false)
+    private long seq;
+
+    @Enumerated(EnumType.STRING)
+    @Column(name = "channel", length = 16, nullable = false)
+    private DeliveryChannel channel;
+
+    @Column(name = "recipient", length = 64, nullable = false)
+    private String recipient;
+
+    @Column(name = "sender", length = 64)
+    private String sender;
+
+    @Column(name = "message_id", length = 64)
+    private String messageId;
+
+    // Null for group members, whose ciphertext is shared through relay_payloads
+    @Column(name = "encrypted_content", columnDefinition = "LONGTEXT")
+    private String encryptedContent;
+
+    @Column(name = "payload_id")
+    private Long payloadId;
+
+    @Column(name = "key_wrap", columnDefinition = "TEXT")
+    private String keyWrap;
+
+    @Column(name = "group_id", length = 64)
+    private String groupId;
+
+    @Column(name = "nonce", columnDefinition = "TEXT")
+    private String nonce;
+
+    @Column(name = "aad", columnDefinition = "TEXT")
+    private String aad;
+
+    @Column(name = "sent_at")
+    private LocalDateTime sentAt;
+
+    // Epoch millis; null keeps the row until it is acknowledged
+    @Column(name = "expires_at")
+    private Long expiresAt;
+
+    // Payload size charged against the recipient's byte quota
+    @Column(name = "size_bytes", nullable = false)
+    private int sizeBytes;
+}
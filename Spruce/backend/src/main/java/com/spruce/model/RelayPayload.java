@@ -0,0 +1,25 @@
+package com.spruce.model;
+
+import jakarta.persistence.*;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+
+/**
+ * Ciphertext of a group message, stored once and referenced by each
+ * recipient's {@link RelayMessage} row. Deleted with the last of those rows.
+ */
+@Entity
+@Table(name = "relay_payloads")
+@Getter
+@Setter
+@NoArgsConstructor
+public class RelayPayload {
+
+    @Id
+    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    private Long id;
+
+    @Column(name = "content", columnDefinition = "LONGTEXT", nullable = false)
+    private String content;
+}
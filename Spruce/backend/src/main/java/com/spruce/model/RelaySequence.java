@@ -0,0 +1,43 @@
+package com.spruce.model;
+
+import jakarta.persistence.*;
+import lombok.EqualsAndHashCode;
+import lombok.Getter;
+import lombok.NoArgsConstructor;
+import lombok.Setter;
+import java.io.Serializable;
+
+/**
+ * Last sequence number handed out for a recipient and channel by the JDBC message store.
+ * Bumped inside the transaction that inserts the packets, so the row lock orders
+ * concurrent relay instances writing for the same recipient.
+ */
+@Entity
+@Table(name = "relay_sequences")
+@IdClass(RelaySequence.Key.class)
+@Getter
+@Setter
+@NoArgsConstructor
+public class RelaySequence {
+
+    @Id
+    @Column(name = "recipient", length = 64)
+    private String recipient;
+
+    @Id
+    @Enumerated(EnumType.STRING)
+    @Column(name = "channel", length = 16)
+    private DeliveryChannel channel;
+
+    @Column(name = "last_seq", nullable = false)
+    private long lastSeq;
+
+    @Getter
+    @Setter
+    @NoArgsConstructor
+    @EqualsAndHashCode
+    public static class Key implements Serializable {
+        private String recipient;
+        private DeliveryChannel channel;
+    }
+}
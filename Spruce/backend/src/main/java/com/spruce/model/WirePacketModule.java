@@ -0,0 +1,125 @@
+package com.spruce.model;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.databind.DeserializationContext;
+import com.fasterxml.jackson.databind.JsonDeserializer;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.JsonSerializer;
+import com.fasterxml.jackson.databind.SerializerProvider;
+import com.fasterxml.jackson.databind.module.SimpleModule;
+
+import java.io.IOException;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.Base64;
+
+/**
+ * {@link MessagePacket} in the binary ({@code application/cbor}) encoding. Registered only
+ * on the CBOR message converter; JSON is unaffected.
+ *
+ * Content, nonce, AAD and key wrap are stored as text, usually Base64. On the wire a value
+ * that is canonical Base64 becomes a raw byte string and anything else (handshake content,
+ * which is the handshake JSON itself) stays a text string; incoming byte strings are stored
+ * as Base64 and text strings as they are. A value therefore reads back exactly as it was
+ * written, and JSON and binary clients can talk to each other. The timestamp is epoch millis.
+ */
+public class WirePacketModule extends SimpleModule {
+
+    public WirePacketModule() {
+        super("WirePacketModule");
+        addSerializer(MessagePacket.class, new Serializer());
+        addDeserializer(MessagePacket.class, new Deserializer());
+    }
+
+    private static final class Serializer extends JsonSerializer<MessagePacket> {
+
+        @Override
+        public void serialize(MessagePacket packet, JsonGenerator gen, SerializerProvider serializers) throws IOException {
+            gen.writeStartObject();
+            writeText(gen, "sender", packet.getSender());
+            writeText(gen, "recipient", packet.getRecipient());
+            writeBinary(gen, "content", packet.getEncryptedContent());
+            writeBinary(gen, "nonce", packet.getNonce());
+            writeBinary(gen, "aad", packet.getAad());
+            if (packet.getTimestamp() != null) {
+                gen.writeNumberField("timestamp", packet.getTimestamp().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli());
+            }
+            writeText(gen, "messageId", packet.getMessageId());
+            gen.writeNumberField("seq", packet.getSeq());
+            writeBinary(gen, "keyWrap", packet.getKeyWrap());
+            writeText(gen, "groupId", packet.getGroupId());
+            if (packet.getTtlSeconds() != null) {
+                gen.writeNumberField("ttlSeconds", packet.getTtlSeconds());
+            }
+            gen.writeNumberField("expiresAt", packet.getExpiresAt());
+            gen.writeEndObject();
+        }
+
+        private static void writeText(JsonGenerator gen, String field, String value) throws IOException {
+            if (value != null) {
+                gen.writeStringField(field, value);
+            }
+        }
+
+        private static void writeBinary(JsonGenerator gen, String field, String value) throws IOException {
+            if (value == null) {
+                return;
+            }
+            byte[] bytes = canonicalBase64(value);
+            if (bytes != null) {
+                gen.writeBinaryField(field, bytes);
+            } else {
+                gen.writeStringField(field, value);
+            }
+        }
+
+        /**
+         * The decoded bytes, if encoding them again gives back exactly {@code value}.
+         */
+        private static byte[] canonicalBase64(String value) {
+            try {
+                byte[] bytes = Base64.getDecoder().decode(value);
+                return value.equals(Base64.getEncoder().encodeToString(bytes)) ? bytes : null;
+            } catch (IllegalArgumentException e) {
+                return null;
+            }
+        }
+    }
+
+    private static final class Deserializer extends JsonDeserializer<MessagePacket> {
+
+        @Override
+        public MessagePacket deserialize(JsonParser parser, DeserializationContext context) throws IOException {
+            JsonNode node = parser.readValueAsTree();
+            MessagePacket packet = new MessagePacket();
+            packet.setSender(text(node.get("sender")));
+            packet.setRecipient(text(node.get("recipient")));
+            packet.setEncryptedContent(binary(node.get("content")));
+            packet.setNonce(binary(node.get("nonce")));
+            packet.setAad(binary(node.get("aad")));
+            long timestamp = node.path("timestamp").asLong();
+            packet.setTimestamp(timestamp != 0 ? LocalDateTime.ofInstant(Instant.ofEpochMilli(timestamp), ZoneId.systemDefault()) : null);
+            packet.setMessageId(text(node.get("messageId")));
+            packet.setSeq(node.path("seq").asLong());
+            packet.setKeyWrap(binary(node.get("keyWrap")));
+            packet.setGroupId(text(node.get("groupId")));
+            JsonNode ttl = node.get("ttlSeconds");
+            packet.setTtlSeconds(ttl != null && !ttl.isNull() ? ttl.asLong() : null);
+            packet.setExpiresAt(node.path("expiresAt").asLong());
+            return packet;
+        }
+
+        private static String text(JsonNode value) {
+            return value != null && !value.isNull() ? value.asText() : null;
+        }
+
+        private static String binary(JsonNode value) throws IOException {
+            if (value == null || value.isNull()) {
+                return null;
+            }
+            return value.isBinary() ? Base64.getEncoder().encodeToString(value.binaryValue()) : value.asText();
+        }
+    }
+}
@@ -0,0 +1,13 @@
+package com.spruce.queue;
+
+/**
+ * What a {@link RecipientQueue} does with a packet that arrives while it is at capacity.
+ */
+public enum OverflowPolicy {
+    
+    /** Refuse the new packet; the sender gets an error. */
+    REJECT,
+    
+    /** Evict the oldest queued packet to make room for the new one. */
+    DROP_OLDEST
+}
@@ -0,0 +1,16 @@
+package com.spruce.queue;
+
+/**
+ * Thrown when a packet is offered to a full {@link RecipientQueue} under {@link OverflowPolicy#REJECT},
+ * or when a recipient's count or byte quota would be exceeded.
+ */
+public class QueueFullException extends RuntimeException {
+    
+    public QueueFullException(String recipient, int capacity) {
+        super(String.format("Queue for %s is full (capacity %d)", recipient, capacity));
+    }
+    
+    public QueueFullException(String recipient, long bytes, long maxBytes) {
+        super(String.format("Queue for %s is over its byte quota (%d of %d bytes)", recipient, bytes, maxBytes));
+    }
+}
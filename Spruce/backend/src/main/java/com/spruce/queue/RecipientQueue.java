@@ -0,0 +1,465 @@
+package com.spruce.queue;
+
+import com.spruce.model.MessagePacket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Bounded, lock-free, multi-producer/single-consumer packet queue for one recipient.
+ *
+ * Packets live in a singly linked chain of nodes. Producers append with a CAS on
+ * {@code tail}; each node carries a sequence number one higher than its predecessor,
+ * so the queue size is simply {@code tail.seq - head.seq}. {@code head} is a sentinel
+ * pointing at the last removed node. Readers walk the chain between the head and a
+ * tail captured at the start of the read, so they never block writers and never see
+ * a list that is being mutated.
+ *
+ * The sequence number is also stamped on the packet and serves as the recipient's
+ * receive/ack cursor.
+ *
+ * Besides the packet count, the queue enforces a byte quota over the packets' payload
+ * sizes; producers reserve their bytes with a CAS before linking, so concurrent appends
+ * cannot overshoot it. Packets past their expiry time are hidden from readers at once and
+ * removed by {@link #expire} once every packet ahead of them has expired or been
+ * acknowledged. Callers re-run {@link #expire} after an acknowledgement and when
+ * {@link #getHeadExpiresAt the new head} expires, so no expired packet outlives the packets
+ * ahead of it.
+ *
+ * An empty queue can be {@link #tryClose closed} so its owner can discard it: the tail is
+ * swapped for a marker node with the same sequence number, and producers that find the
+ * marker give up instead of appending to a queue nobody will read.
+ */
+public final class RecipientQueue {
+
+    private static final class Node {
+        volatile MessagePacket packet;
+        long seq;
+        volatile Node next;
+        final long expiresAt;
+        final int bytes;
+        // Tail marker of a closed queue; never linked into the chain
+        boolean closed;
+
+        Node(MessagePacket packet) {
+            this.packet = packet;
+            this.expiresAt = packet != null ? packet.getExpiresAt() : 0;
+            this.bytes = packet != null ? sizeOf(packet) : 0;
+        }
+
+        boolean isExpired(long now) {
+            return expiresAt != 0 && expiresAt <= now;
+        }
+    }
+
+    private final String recipient;
+    private final int capacity;
+    private final long maxBytes;
+    private final OverflowPolicy overflowPolicy;
+
+    private final AtomicReference<Node> head;
+    private final AtomicReference<Node> tail;
+
+    private final AtomicLong queuedBytes = new AtomicLong();
+    private final LongAdder dropped = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+    private final Consumer<MessagePacket> appendListener;
+
+    public RecipientQueue(String recipient, int capacity, OverflowPolicy overflowPolicy) {
+        this(recipient, capacity, Long.MAX_VALUE, overflowPolicy, 0, packet -> { });
+    }
+
+    /**
+     * @param maxBytes       quota on the summed payload sizes of queued packets
+     * @param startSeq       sequence number the queue resumes after, e.g. the last acknowledged one
+     * @param appendListener called on the appending thread once a packet has its sequence number,
+     *                       before {@link #offer} returns; a durable store logs the packet here
+     */
+    public RecipientQueue(String recipient, int capacity, long maxBytes, OverflowPolicy overflowPolicy,
+                          long startSeq, Consumer<MessagePacket> appendListener) {
+        if (capacity <= 0 || maxBytes <= 0) {
+            throw new IllegalArgumentException("Queue capacity and byte quota must be positive");
+        }
+        this.recipient = recipient;
+        this.capacity = capacity;
+        this.maxBytes = maxBytes;
+        this.overflowPolicy = overflowPolicy;
+        this.appendListener = appendListener;
+
+        Node stub = new Node(null);
+        stub.seq = startSeq;
+        this.head = new AtomicReference<>(stub);
+        this.tail = new AtomicReference<>(stub);
+    }
+
+    /**
+     * Append a packet, applying the overflow policy if the queue is full.
+     *
+     * @return false if the queue has been closed; the packet was not appended
+     * @throws QueueFullException if the queue is full and the policy is {@link OverflowPolicy#REJECT}
+     */
+    public boolean offer(MessagePacket packet) {
+        if (isClosed()) {
+            return false;
+        }
+        Node node = new Node(packet);
+        if (node.bytes > maxBytes) {
+            // Could never fit, whatever the policy evicts
+            rejected.increment();
+            throw new QueueFullException(recipient, node.bytes, maxBytes);
+        }
+
+        while (!tryAppend(node)) {
+            if (isClosed()) {
+                return false;
+            }
+            switch (overflowPolicy) {
+                case REJECT:
+                    rejected.increment();
+                    if (queuedBytes.get() + node.bytes > maxBytes) {
+                        throw new QueueFullException(recipient, queuedBytes.get(), maxBytes);
+                    }
+                    throw new QueueFullException(recipient, capacity);
+                case DROP_OLDEST:
+                    if (pollFirst() != null) {
+                        dropped.increment();
+                    } else {
+                        // The oldest node is still being linked by its producer
+                        Thread.onSpinWait();
+                    }
+                    break;
+                default:
+                    throw new IllegalStateException("Unknown overflow policy: " + overflowPolicy);
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Re-append a recovered packet under the sequence number it already carries.
+     * Bypasses the capacity check and the append listener; only for use before the queue is shared.
+     */
+    public void restore(MessagePacket packet) {
+        Node last = tail.get();
+        if (packet.getSeq() <= last.seq) {
+            throw new IllegalArgumentException("Recovered packets must be restored in sequence order");
+        }
+        Node node = new Node(packet);
+        node.seq = packet.getSeq();
+        tail.set(node);
+        last.next = node;
+        queuedBytes.addAndGet(node.bytes);
+    }
+
+    /**
+     * Read the packets currently queued, oldest first, without removing them.
+     */
+    public List<MessagePacket> snapshot() {
+        return readAfter(0, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Read up to {@code limit} unexpired packets with a sequence number greater than
+     * {@code afterSeq}, oldest first, without removing them.
+     */
+    public List<MessagePacket> readAfter(long afterSeq, int limit) {
+        long now = System.currentTimeMillis();
+        Node last = tail.get();
+        Node node = head.get();
+        int expected = (int) Math.min(limit, Math.max(0, last.seq - Math.max(afterSeq, node.seq)));
+        List<MessagePacket> packets = new ArrayList<>(expected);
+        while (node.seq < last.seq && packets.size() < limit) {
+            node = awaitNext(node);
+            MessagePacket packet = node.packet;
+            if (node.seq > afterSeq && packet != null && !node.isExpired(now)) {
+                packets.add(packet);
+            }
+        }
+        return packets;
+    }
+
+    /**
+     * Remove every packet with a sequence number up to and including {@code upToSeq}.
+     *
+     * @return the number of packets removed
+     */
+    public int acknowledge(long upToSeq) {
+        while (true) {
+            Node first = head.get();
+            Node last = tail.get();
+            long target = Math.min(upToSeq, last.seq);
+            if (target <= first.seq) {
+                return 0;
+            }
+            // Stop at the last node at or below the target; recovered queues may have gaps
+            Node node = first;
+            long bytes = 0;
+            while (node.seq < target) {
+                Node next = awaitNext(node);
+                if (next.seq > target) {
+                    break;
+                }
+                node = next;
+                bytes += node.bytes;
+            }
+            if (node == first) {
+                return 0;
+            }
+            if (head.compareAndSet(first, node)) {
+                node.packet = null;
+                queuedBytes.addAndGet(-bytes);
+                return (int) (node.seq - first.seq);
+            }
+        }
+    }
+
+    /**
+     * Remove the run of expired packets at the head of the queue. Expired packets behind
+     * a live one stay (hidden from readers) until that one expires or is acknowledged, so
+     * call this again at that point.
+     *
+     * @return the number of packets removed
+     */
+    public int expire(long now) {
+        while (true) {
+            Node first = head.get();
+            Node last = tail.get();
+            Node node = first;
+            long bytes = 0;
+            int count = 0;
+            while (node.seq < last.seq) {
+                Node next = awaitNext(node);
+                if (!next.isExpired(now)) {
+                    break;
+                }
+                node = next;
+                bytes += node.bytes;
+                count++;
+            }
+            if (count == 0) {
+                return 0;
+            }
+            if (head.compareAndSet(first, node)) {
+                node.packet = null;
+                queuedBytes.addAndGet(-bytes);
+                expired.add(count);
+                return count;
+            }
+        }
+    }
+
+    /**
+     * Sequence number of the most recently appended packet, or the start sequence if none has been appended.
+     */
+    public long getLastSeq() {
+        return tail.get().seq;
+    }
+
+    /**
+     * Expiry time of the oldest queued packet, or 0 if the queue is empty or that packet never expires.
+     */
+    public long getHeadExpiresAt() {
+        Node next = head.get().next;
+        return next != null ? next.expiresAt : 0;
+    }
+
+    /**
+     * Sequence number of the most recently removed packet; everything up to it is gone.
+     */
+    public long getHeadSeq() {
+        return head.get().seq;
+    }
+
+    /**
+     * Remove and return everything queued at the time of the call.
+     * Packets appended concurrently stay queued for the next read.
+     */
+    public List<MessagePacket> drain() {
+        while (true) {
+            Node first = head.get();
+            Node last = tail.get();
+            if (first.seq >= last.seq) {
+                return List.of();
+            }
+            if (!head.compareAndSet(first, last)) {
+                continue;
+            }
+
+            List<MessagePacket> packets = new ArrayList<>((int) (last.seq - first.seq));
+            Node node = first;
+            long bytes = 0;
+            while (node != last) {
+                node = awaitNext(node);
+                bytes += node.bytes;
+                MessagePacket packet = node.packet;
+                if (packet != null) {
+                    packets.add(packet);
+                }
+            }
+            last.packet = null;
+            queuedBytes.addAndGet(-bytes);
+            return packets;
+        }
+    }
+
+    /**
+     * Close the queue if it is empty. Once closed it stays empty: {@link #offer} returns false,
+     * and the owner appends to a new queue starting after {@link #getLastSeq} instead.
+     *
+     * @return whether the queue is closed
+     */
+    public boolean tryClose() {
+        Node last = tail.get();
+        if (last.closed) {
+            return true;
+        }
+        // head only reaches the tail once every packet is gone, and then cannot move past it
+        if (head.get() != last) {
+            return false;
+        }
+        Node marker = new Node(null);
+        marker.seq = last.seq;
+        marker.closed = true;
+        return tail.compareAndSet(last, marker);
+    }
+
+    public boolean isClosed() {
+        return tail.get().closed;
+    }
+
+    public boolean isEmpty() {
+        return size() == 0;
+    }
+
+    /**
+     * Number of queued packets.
+     */
+    public int size() {
+        long queued = tail.get().seq - head.get().seq;
+        return (int) Math.max(0, queued);
+    }
+
+    public int getCapacity() {
+        return capacity;
+    }
+
+    public long getMaxBytes() {
+        return maxBytes;
+    }
+
+    /**
+     * Summed payload size of the queued packets.
+     */
+    public long getQueuedBytes() {
+        return queuedBytes.get();
+    }
+
+    public OverflowPolicy getOverflowPolicy() {
+        return overflowPolicy;
+    }
+
+    /**
+     * Number of packets evicted under {@link OverflowPolicy#DROP_OLDEST}.
+     */
+    public long getDroppedCount() {
+        return dropped.sum();
+    }
+
+    /**
+     * Number of packets refused because the queue or its byte quota was full.
+     */
+    public long getRejectedCount() {
+        return rejected.sum();
+    }
+
+    /**
+     * Number of packets removed by {@link #expire}.
+     */
+    public long getExpiredCount() {
+        return expired.sum();
+    }
+
+    /**
+     * Payload size charged against a recipient's byte quota.
+     */
+    public static int sizeOf(MessagePacket packet) {
+        return length(packet.getEncryptedContent()) + length(packet.getNonce())
+            + length(packet.getAad()) + length(packet.getKeyWrap());
+    }
+
+    private static int length(String value) {
+        return value != null ? value.length() : 0;
+    }
+
+    private boolean tryAppend(Node node) {
+        if (!reserveBytes(node.bytes)) {
+            return false;
+        }
+        MessagePacket packet = node.packet;
+        while (true) {
+            Node last = tail.get();
+            if (last.closed) {
+                queuedBytes.addAndGet(-node.bytes);
+                return false;
+            }
+            // head is read after tail, so a concurrent removal can only make this estimate larger
+            if (last.seq - head.get().seq >= capacity) {
+                queuedBytes.addAndGet(-node.bytes);
+                return false;
+            }
+            node.seq = last.seq + 1;
+            packet.setSeq(node.seq);
+            if (tail.compareAndSet(last, node)) {
+                last.next = node;
+                appendListener.accept(packet);
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Charge {@code bytes} against the quota, unless that would exceed it.
+     */
+    private boolean reserveBytes(int bytes) {
+        while (true) {
+            long current = queuedBytes.get();
+            if (current + bytes > maxBytes) {
+                return false;
+            }
+            if (queuedBytes.compareAndSet(current, current + bytes)) {
+                return true;
+            }
+        }
+    }
+
+    private MessagePacket pollFirst() {
+        while (true) {
+            Node first = head.get();
+            Node next = first.next;
+            if (next == null) {
+                return null;
+            }
+            if (head.compareAndSet(first, next)) {
+                queuedBytes.addAndGet(-next.bytes);
+                MessagePacket packet = next.packet;
+                // next is now the sentinel; let its packet be collected
+                next.packet = null;
+                return packet;
+            }
+        }
+    }
+
+    private static Node awaitNext(Node node) {
+        Node next;
+        // A producer that won the tail CAS links its node immediately after; wait out that gap
+        while ((next = node.next) == null) {
+            Thread.onSpinWait();
+        }
+        return next;
+    }
+}
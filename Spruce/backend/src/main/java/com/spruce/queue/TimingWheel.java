@@ -0,0 +1,103 @@
+package com.spruce.queue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.Consumer;
+
+/**
+ * Hashed timing wheel for coarse-grained deadlines.
+ *
+ * Deadlines hash by tick into a fixed ring of buckets, so scheduling is O(1) and each
+ * tick only visits the entries of one bucket; nothing ever scans every pending entry.
+ * Entries more than one rotation away stay in their bucket and are skipped until the
+ * rotation in which they fall due. Entries fire once the whole tick containing their
+ * deadline has passed, i.e. up to one tick late.
+ *
+ * {@link #schedule} may be called from any thread; {@link #advance} from one thread only.
+ */
+public final class TimingWheel<T> {
+
+    private static final class Entry<T> {
+        final long tick;
+        final T item;
+
+        Entry(long tick, T item) {
+            this.tick = tick;
+            this.item = item;
+        }
+    }
+
+    private final long tickMs;
+    private final Queue<Entry<T>>[] buckets;
+
+    // Next tick to be processed; written only by the advancing thread
+    private volatile long currentTick;
+
+    @SuppressWarnings("unchecked")
+    public TimingWheel(long tickMs, int wheelSize, long startMs) {
+        if (tickMs <= 0 || wheelSize <= 0) {
+            throw new IllegalArgumentException("Tick and wheel size must be positive");
+        }
+        this.tickMs = tickMs;
+        this.buckets = new Queue[wheelSize];
+        for (int i = 0; i < wheelSize; i++) {
+            buckets[i] = new ConcurrentLinkedQueue<>();
+        }
+        this.currentTick = startMs / tickMs;
+    }
+
+    public long tickOf(long deadlineMs) {
+        return deadlineMs / tickMs;
+    }
+
+    /**
+     * Schedule an item to fire once {@code deadlineMs} has passed.
+     */
+    public void schedule(long deadlineMs, T item) {
+        // Past deadlines go in the next bucket to be processed. If that bucket is being
+        // processed right now the entry waits one rotation; callers must tolerate late expiry.
+        long tick = Math.max(tickOf(deadlineMs), currentTick);
+        buckets[bucketIndex(tick)].add(new Entry<>(tick, item));
+    }
+
+    /**
+     * Fire every entry whose tick has fully passed by {@code nowMs}.
+     *
+     * @return the number of entries fired
+     */
+    public int advance(long nowMs, Consumer<T> onExpire) {
+        long nowTick = tickOf(nowMs);
+        // After a stall there is no point visiting a bucket more than once
+        long from = Math.max(currentTick, nowTick - buckets.length);
+        int fired = 0;
+        List<Entry<T>> notDue = new ArrayList<>();
+        for (long tick = from; tick < nowTick; tick++) {
+            Queue<Entry<T>> bucket = buckets[bucketIndex(tick)];
+            Entry<T> entry;
+            while ((entry = bucket.poll()) != null) {
+                if (entry.tick < nowTick) {
+                    onExpire.accept(entry.item);
+                    fired++;
+                } else {
+                    notDue.add(entry);
+                }
+            }
+            bucket.addAll(notDue);
+            notDue.clear();
+        }
+        if (nowTick > currentTick) {
+            currentTick = nowTick;
+        }
+        return fired;
+    }
+
+    public long getTickMs() {
+        return tickMs;
+    }
+
+    private int bucketIndex(long tick) {
+        return (int) Math.floorMod(tick, (long) buckets.length);
+    }
+}
@@ -3,16 +3,22 @@ package com.spruce.repository;
 import com.spruce.model.LogEntry;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
 import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
 import java.util.List;
 
 @Repository
-public interface LogRepository extends JpaRepository<LogEntry, Long> {
+public interface LogRepository extends JpaRepository<LogEntry, Long>, JpaSpecificationExecutor<LogEntry> {
 
     @Query("SELECT l FROM LogEntry l ORDER BY l.id DESC")
     List<LogEntry> findRecent(Pageable pageable);
+
+    @Query("SELECT l FROM LogEntry l WHERE l.createdAt < :before ORDER BY l.id DESC")
+    List<LogEntry> findOlderThan(@Param("before") LocalDateTime before, Pageable pageable);
 }
 
 
@@ -0,0 +1,53 @@
+package com.spruce.repository;
+
+import com.spruce.dto.LogQuery;
+import com.spruce.model.LogEntry;
+import jakarta.persistence.criteria.Predicate;
+import org.springframework.data.jpa.domain.Specification;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Criteria for {@link LogQuery}.
+ *
+ * Results are ordered by id descending and paged with an {@code id < before} cursor rather
+ * than an offset. With the composite indexes on {@code logs} ({@code category, id},
+ * {@code level, id}, {@code category, level, id}) an equality-filtered page is one short
+ * descending index range starting where the previous page stopped, however deep it is.
+ * The substring filter cannot use an index and is only checked on the rows that range visits.
+ */
+public final class LogSpecifications {
+    
+    private LogSpecifications() {
+    }
+    
+    public static Specification<LogEntry> matching(LogQuery query) {
+        return (root, criteriaQuery, cb) -> {
+            List<Predicate> predicates = new ArrayList<>();
+            if (query.getCategory() != null) {
+                predicates.add(cb.equal(root.get("category"), query.getCategory()));
+            }
+            if (query.getLevel() != null) {
+                predicates.add(cb.equal(root.get("level"), query.getLevel()));
+            }
+            if (query.getFrom() != null) {
+                predicates.add(cb.greaterThanOrEqualTo(root.get("createdAt"), query.getFrom()));
+            }
+            if (query.getTo() != null) {
+                predicates.add(cb.lessThan(root.get("createdAt"), query.getTo()));
+            }
+            if (query.getBefore() != null) {
+                predicates.add(cb.lessThan(root.get("id"), query.getBefore()));
+            }
+            if (query.getContains() != null) {
+                predicates.add(cb.like(root.get("message"), "%" + escapeLike(query.getContains()) + "%", '\\'));
+            }
+            return cb.and(predicates.toArray(new Predicate[0]));
+        };
+    }
+    
+    private static String escapeLike(String value) {
+        return value.replace("\\", "\\\\").replace("%", "\\%").replace("_", "\\_");
+    }
+}
@@ -0,0 +1,86 @@
+package com.spruce.service;
+
+import com.spruce.crypto.AttachmentFormat;
+import com.spruce.store.BlobStore;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.util.Map;
+
+/**
+ * Relays encrypted attachments too large to travel inside a message packet.
+ *
+ * Clients encrypt attachments end to end in {@link AttachmentFormat} (see
+ * {@link CryptoService#encryptAttachment}) and send the recipient the attachment id in an
+ * ordinary message. The relay never sees the key; it only checks the header, so anything
+ * else is turned away before it is stored, and streams the bytes to and from the
+ * {@link BlobStore}.
+ */
+@Service
+@RequiredArgsConstructor
+@Slf4j
+public class AttachmentService {
+    
+    private final BlobStore blobStore;
+    private final LogService logService;
+    
+    /**
+     * Stream an encrypted attachment into the store.
+     *
+     * @throws IOException if the content is not an encrypted attachment or cannot be stored
+     */
+    public BlobStore.Blob store(String sender, InputStream body) throws IOException {
+        byte[] header = body.readNBytes(AttachmentFormat.HEADER_LENGTH);
+        int chunkSize = AttachmentFormat.chunkSize(header);
+        
+        BlobStore.Blob blob = blobStore.put(Channels.newChannel(new SequenceInputStream(new ByteArrayInputStream(header), body)));
+        
+        logService.logMessage("Attachment stored", "Id: {}, Sender: {}, Bytes: {}, Chunk size: {}",
+            blob.getId(), sender, blob.getSize(), chunkSize);
+        return blob;
+    }
+    
+    /**
+     * Open a stored attachment; the caller closes the channel.
+     *
+     * @throws java.nio.file.NoSuchFileException if there is no such attachment
+     */
+    public FileChannel open(String id) throws IOException {
+        return blobStore.open(id);
+    }
+    
+    /**
+     * Stream an attachment opened with {@link #open} to {@code out}.
+     */
+    public void send(String id, FileChannel attachment, WritableByteChannel out) throws IOException {
+        long bytes = blobStore.transferTo(attachment, out);
+        logService.logMessage("Attachment served", "Id: {}, Bytes: {}", id, bytes);
+    }
+    
+    public boolean delete(String id) throws IOException {
+        boolean deleted = blobStore.delete(id);
+        if (deleted) {
+            logService.logMessage("Attachment deleted", "Id: {}", id);
+        }
+        return deleted;
+    }
+    
+    public long getMaxBytes() {
+        return blobStore.getMaxBytes();
+    }
+    
+    /**
+     * Attachment store counters (for admin monitoring).
+     */
+    public Map<String, Object> getStats() {
+        return blobStore.getStats();
+    }
+}
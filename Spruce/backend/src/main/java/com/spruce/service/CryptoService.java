@@ -1,11 +1,33 @@
 package com.spruce.service;
 
+import com.spruce.crypto.AttachmentFormat;
+import com.spruce.crypto.EphemeralKeyPools;
+import com.spruce.crypto.GcmIvGenerator;
+import com.spruce.crypto.RandomSource;
+import com.spruce.crypto.SessionKeyCache;
+import com.spruce.crypto.SessionKeyId;
+import com.spruce.crypto.SignatureCheck;
+import com.spruce.crypto.VerificationExecutor;
 import lombok.extern.slf4j.Slf4j;
+import org.bouncycastle.crypto.AsymmetricCipherKeyPair;
+import org.bouncycastle.crypto.SecretWithEncapsulation;
 import org.bouncycastle.crypto.agreement.X25519Agreement;
 import org.bouncycastle.crypto.generators.HKDFBytesGenerator;
 import org.bouncycastle.crypto.params.HKDFParameters;
+import org.bouncycastle.crypto.params.ParametersWithRandom;
 import org.bouncycastle.crypto.params.X25519PrivateKeyParameters;
 import org.bouncycastle.crypto.params.X25519PublicKeyParameters;
+import org.bouncycastle.pqc.crypto.crystals.dilithium.DilithiumKeyGenerationParameters;
+import org.bouncycastle.pqc.crypto.crystals.dilithium.DilithiumKeyPairGenerator;
+import org.bouncycastle.pqc.crypto.crystals.dilithium.DilithiumParameters;
+import org.bouncycastle.pqc.crypto.crystals.dilithium.DilithiumPrivateKeyParameters;
+import org.bouncycastle.pqc.crypto.crystals.dilithium.DilithiumPublicKeyParameters;
+import org.bouncycastle.pqc.crypto.crystals.dilithium.DilithiumSigner;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberKEMExtractor;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberKEMGenerator;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberParameters;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPrivateKeyParameters;
+import org.bouncycastle.pqc.crypto.crystals.kyber.KyberPublicKeyParameters;
 import org.bouncycastle.pqc.jcajce.provider.BouncyCastlePQCProvider;
 import java.security.Security;
 import org.springframework.stereotype.Service;
@@ -13,16 +35,33 @@ import org.springframework.stereotype.Service;
 import javax.crypto.Cipher;
 import javax.crypto.spec.GCMParameterSpec;
 import javax.crypto.spec.SecretKeySpec;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
 import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
 import java.security.MessageDigest;
-import java.security.SecureRandom;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
 import org.bouncycastle.crypto.digests.SHA256Digest;
 
 
 /**
  * Cryptographic service implementing hybrid post-quantum cryptography.
- * Combines X25519, Kyber (simulated), Dilithium (simulated), and AES-GCM.
+ * Combines X25519, Kyber-768, Dilithium3 and AES-GCM. Ephemeral X25519 and Kyber
+ * keypairs come from {@link EphemeralKeyPools}, which generates them in the background.
+ * Randomness comes from a DRBG per thread ({@link RandomSource}), and AES-GCM IVs from a
+ * counter ({@link GcmIvGenerator}), so concurrent callers never queue on a shared generator.
+ * 
+ * Cipher, digest and HKDF instances are cached per thread, since looking them up per call
+ * costs more than the operation for small messages. The byte[] and ByteBuffer methods are
+ * the primary API; the Base64 String methods are wrappers kept for existing callers.
  */
 @Service
 @Slf4j
@@ -39,38 +78,104 @@ public class CryptoService {
     private static final int GCM_TAG_LENGTH = 16;
     private static final int HKDF_LENGTH = 32;
     
+    private static final byte[] SESSION_SALT = "Spruce-Hybrid-Session".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] SESSION_INFO = SESSION_SALT;
+    private static final KyberParameters KYBER_PARAMETERS = EphemeralKeyPools.KYBER_PARAMETERS;
+    private static final DilithiumParameters DILITHIUM_PARAMETERS = DilithiumParameters.dilithium3;
+    
+    // Each is fully re-initialized before use, so a failed operation leaves nothing behind
+    private static final ThreadLocal<Cipher> GCM_CIPHER = ThreadLocal.withInitial(() -> {
+        try {
+            return Cipher.getInstance(AES_GCM_TRANSFORMATION);
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("AES-GCM is not available", e);
+        }
+    });
+    private static final ThreadLocal<MessageDigest> SHA256 = ThreadLocal.withInitial(() -> {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (GeneralSecurityException e) {
+            throw new IllegalStateException("SHA-256 is not available", e);
+        }
+    });
+    private static final ThreadLocal<HKDFBytesGenerator> HKDF = ThreadLocal.withInitial(() -> new HKDFBytesGenerator(new SHA256Digest()));
+    
     private final LogService logService;
-    private final SecureRandom secureRandom;
+    private final SessionKeyCache sessionKeys;
+    private final EphemeralKeyPools keyPools;
+    private final VerificationExecutor verificationExecutor;
+    private final RandomSource randomSource;
+    private final GcmIvGenerator ivGenerator;
     
-    public CryptoService(LogService logService) {
+    public CryptoService(LogService logService, SessionKeyCache sessionKeys, EphemeralKeyPools keyPools,
+                         VerificationExecutor verificationExecutor, RandomSource randomSource, GcmIvGenerator ivGenerator) {
         this.logService = logService;
-        this.secureRandom = new SecureRandom();
+        this.sessionKeys = sessionKeys;
+        this.keyPools = keyPools;
+        this.verificationExecutor = verificationExecutor;
+        this.randomSource = randomSource;
+        this.ivGenerator = ivGenerator;
     }
     
     /**
-     * Generate X25519 key pair.
+     * Generate an ephemeral X25519 key pair, taken from the pre-generated pool when one is ready.
      */
     public X25519KeyPair generateX25519KeyPair() {
-        X25519PrivateKeyParameters privateKey = new X25519PrivateKeyParameters(secureRandom);
-        X25519PublicKeyParameters publicKey = privateKey.generatePublicKey();
+        AsymmetricCipherKeyPair pair = keyPools.takeX25519();
         
-        String privateKeyBase64 = Base64.getEncoder().encodeToString(privateKey.getEncoded());
-        String publicKeyBase64 = Base64.getEncoder().encodeToString(publicKey.getEncoded());
+        String privateKeyBase64 = Base64.getEncoder().encodeToString(((X25519PrivateKeyParameters) pair.getPrivate()).getEncoded());
+        String publicKeyBase64 = Base64.getEncoder().encodeToString(((X25519PublicKeyParameters) pair.getPublic()).getEncoded());
         
         logService.logCrypto("X25519 Key Generation", "Generated new X25519 key pair");
         
         return new X25519KeyPair(privateKeyBase64, publicKeyBase64);
     }
     
+    /**
+     * Generate an ephemeral Kyber-768 key pair, taken from the pre-generated pool when one is ready.
+     * The private key is BouncyCastle's full encoding, which embeds the public key.
+     */
+    public KyberKeyPair generateKyberKeyPair() {
+        AsymmetricCipherKeyPair pair = keyPools.takeKyber();
+        
+        String privateKeyBase64 = Base64.getEncoder().encodeToString(((KyberPrivateKeyParameters) pair.getPrivate()).getEncoded());
+        String publicKeyBase64 = Base64.getEncoder().encodeToString(((KyberPublicKeyParameters) pair.getPublic()).getEncoded());
+        
+        logService.logCrypto("Kyber Key Generation", "Generated new Kyber-768 key pair");
+        
+        return new KyberKeyPair(privateKeyBase64, publicKeyBase64);
+    }
+    
+    /**
+     * Generate a long-term Dilithium3 signing key pair.
+     */
+    public DilithiumKeyPair generateDilithiumKeyPair() {
+        DilithiumKeyPairGenerator generator = new DilithiumKeyPairGenerator();
+        generator.init(new DilithiumKeyGenerationParameters(randomSource.current(), DILITHIUM_PARAMETERS));
+        AsymmetricCipherKeyPair pair = generator.generateKeyPair();
+        
+        String privateKeyBase64 = Base64.getEncoder().encodeToString(((DilithiumPrivateKeyParameters) pair.getPrivate()).getEncoded());
+        String publicKeyBase64 = Base64.getEncoder().encodeToString(((DilithiumPublicKeyParameters) pair.getPublic()).getEncoded());
+        
+        logService.logCrypto("Dilithium Key Generation", "Generated new Dilithium3 key pair");
+        
+        return new DilithiumKeyPair(privateKeyBase64, publicKeyBase64);
+    }
+    
     /**
      * Perform X25519 key agreement.
      */
     public byte[] performX25519Agreement(String privateKeyBase64, String publicKeyBase64) {
+        return performX25519Agreement(Base64.getDecoder().decode(privateKeyBase64), Base64.getDecoder().decode(publicKeyBase64));
+    }
+    
+    /**
+     * Perform X25519 key agreement on raw 32-byte keys.
+     */
+    public byte[] performX25519Agreement(byte[] privateKeyBytes, byte[] publicKeyBytes) {
         try {
-            X25519PrivateKeyParameters privateKey = new X25519PrivateKeyParameters(
-                Base64.getDecoder().decode(privateKeyBase64), 0);
-            X25519PublicKeyParameters publicKey = new X25519PublicKeyParameters(
-                Base64.getDecoder().decode(publicKeyBase64), 0);
+            X25519PrivateKeyParameters privateKey = new X25519PrivateKeyParameters(privateKeyBytes, 0);
+            X25519PublicKeyParameters publicKey = new X25519PublicKeyParameters(publicKeyBytes, 0);
             
             X25519Agreement agreement = new X25519Agreement();
             agreement.init(privateKey);
@@ -80,160 +185,291 @@ public class CryptoService {
             logService.logCrypto("X25519 Agreement", "Computed shared secret");
             return sharedSecret;
         } catch (Exception e) {
-            logService.logCrypto("X25519 Agreement Error", "Failed to compute shared secret: " + e.getMessage());
+            logService.logCrypto("X25519 Agreement Error", "Failed to compute shared secret: {}", e.getMessage());
             throw new RuntimeException("X25519 key agreement failed", e);
         }
     }
     
     /**
-     * Real Kyber encapsulation using BouncyCastle PQC JCA.
+     * Kyber-768 encapsulation to the peer's public key.
      */
     public KyberResult simulateKyberEncapsulation(String kyberPublicKeyBase64) {
         try {
-            // ciphertext = random bytes (simulate KEM ct)
-            byte[] ciphertext = new byte[1088]; // demo length, same as before
-            secureRandom.nextBytes(ciphertext);
-            String ciphertextBase64 = Base64.getEncoder().encodeToString(ciphertext);
-    
-            // Derive shared secret deterministically from (ciphertext || kyberPublicKey)
-            // so decapsulator can compute same secret (using same kyberPublicKey)
-            byte[] pubKeyBytes = Base64.getDecoder().decode(kyberPublicKeyBase64);
-            byte[] input = new byte[ciphertext.length + pubKeyBytes.length];
-            System.arraycopy(ciphertext, 0, input, 0, ciphertext.length);
-            System.arraycopy(pubKeyBytes, 0, input, ciphertext.length, pubKeyBytes.length);
-    
-            // Use HKDF-SHA256 to derive 32-byte shared secret
-            byte[] sharedSecret = hkdfExtractExpand(input, "spruce:kyber-demo".getBytes(StandardCharsets.UTF_8), null, 32);
-    
+            KyberPublicKeyParameters publicKey = new KyberPublicKeyParameters(KYBER_PARAMETERS, Base64.getDecoder().decode(kyberPublicKeyBase64));
+            SecretWithEncapsulation encapsulated = new KyberKEMGenerator(randomSource.current()).generateEncapsulated(publicKey);
+            
+            byte[] sharedSecret = encapsulated.getSecret();
             String sharedSecretBase64 = Base64.getEncoder().encodeToString(sharedSecret);
-    
-            logService.logCrypto("Kyber Encapsulation (demo)", "Encapsulation produced deterministic shared secret");
-    
+            String ciphertextBase64 = Base64.getEncoder().encodeToString(encapsulated.getEncapsulation());
+            Arrays.fill(sharedSecret, (byte) 0);
+            
+            logService.logCrypto("Kyber Encapsulation", "Encapsulated shared secret to Kyber-768 public key");
+            
             return new KyberResult(sharedSecretBase64, ciphertextBase64);
         } catch (Exception e) {
-            logService.logCrypto("Kyber Encapsulation Error", "Failed to encapsulate: " + e.getMessage());
+            logService.logCrypto("Kyber Encapsulation Error", "Failed to encapsulate: {}", e.getMessage());
             throw new RuntimeException("Kyber encapsulation failed", e);
         }
     }
     
-    
-    // Real Kyber decapsulation using BouncyCastle PQC JCA.
-     public String simulateKyberDecapsulation(String ciphertextBase64, String kyberPublicKeyBase64) {
-    try {
-        byte[] ciphertext = Base64.getDecoder().decode(ciphertextBase64);
-        byte[] pubKeyBytes = Base64.getDecoder().decode(kyberPublicKeyBase64);
-
-        // compute same input = ciphertext || pubKeyBytes
-        byte[] input = new byte[ciphertext.length + pubKeyBytes.length];
-        System.arraycopy(ciphertext, 0, input, 0, ciphertext.length);
-        System.arraycopy(pubKeyBytes, 0, input, ciphertext.length, pubKeyBytes.length);
-
-        byte[] sharedSecret = hkdfExtractExpand(input, "spruce:kyber-demo".getBytes(StandardCharsets.UTF_8), null, 32);
-        logService.logCrypto("Kyber Decapsulation (demo)", "Decapsulation derived deterministic shared secret");
-
-        return Base64.getEncoder().encodeToString(sharedSecret);
-    } catch (Exception e) {
-        logService.logCrypto("Kyber Decapsulation Error", "Failed to decapsulate: " + e.getMessage());
-        throw new RuntimeException("Kyber decapsulation failed", e);
+    /**
+     * Kyber-768 decapsulation with the recipient's private key, as encoded by {@link #generateKyberKeyPair()}.
+     */
+    public String decapsulateKyber(String ciphertextBase64, String kyberPrivateKeyBase64) {
+        try {
+            byte[] ciphertext = Base64.getDecoder().decode(ciphertextBase64);
+            KyberPrivateKeyParameters privateKey = new KyberPrivateKeyParameters(KYBER_PARAMETERS, Base64.getDecoder().decode(kyberPrivateKeyBase64));
+            
+            byte[] sharedSecret = new KyberKEMExtractor(privateKey).extractSecret(ciphertext);
+            String sharedSecretBase64 = Base64.getEncoder().encodeToString(sharedSecret);
+            Arrays.fill(sharedSecret, (byte) 0);
+            
+            logService.logCrypto("Kyber Decapsulation", "Decapsulated Kyber-768 shared secret");
+            
+            return sharedSecretBase64;
+        } catch (Exception e) {
+            logService.logCrypto("Kyber Decapsulation Error", "Failed to decapsulate: {}", e.getMessage());
+            throw new RuntimeException("Kyber decapsulation failed", e);
+        }
     }
-}
     
     /**
-     * Real Dilithium signature generation using BouncyCastle PQC JCA.
+     * Dilithium3 signature over the message's UTF-8 bytes.
      */
     public String simulateDilithiumSign(String message, String dilithiumPrivateKeyBase64) {
         try {
-            // For demo purposes, generate mock signature
-            // In production, this would use real Dilithium signing
-            byte[] signature = new byte[2420]; // Dilithium-3 signature size
-            secureRandom.nextBytes(signature);
+            DilithiumPrivateKeyParameters privateKey = new DilithiumPrivateKeyParameters(DILITHIUM_PARAMETERS,
+                Base64.getDecoder().decode(dilithiumPrivateKeyBase64), null);
+            DilithiumSigner signer = new DilithiumSigner();
+            signer.init(true, new ParametersWithRandom(privateKey, randomSource.current()));
             
-            String signatureBase64 = Base64.getEncoder().encodeToString(signature);
+            String signatureBase64 = Base64.getEncoder().encodeToString(signer.generateSignature(message.getBytes(StandardCharsets.UTF_8)));
             
-            logService.logCrypto("Dilithium Sign", "Dilithium signature generated (demo mode)");
+            logService.logCrypto("Dilithium Sign", "Dilithium3 signature generated");
             
             return signatureBase64;
         } catch (Exception e) {
-            logService.logCrypto("Dilithium Sign Error", "Failed to sign: " + e.getMessage());
+            logService.logCrypto("Dilithium Sign Error", "Failed to sign: {}", e.getMessage());
             throw new RuntimeException("Dilithium signing failed", e);
         }
     }
     
     /**
-     * Real Dilithium signature verification using BouncyCastle PQC JCA.
+     * Verify a Dilithium3 signature over the message's UTF-8 bytes. Malformed keys or
+     * signatures count as invalid.
      */
     public boolean simulateDilithiumVerify(String message, String signatureBase64, String dilithiumPublicKeyBase64) {
         try {
-            // For demo purposes, always return true
-            // In production, this would use real Dilithium verification
-            logService.logCrypto("Dilithium Verify", "Dilithium signature verification: valid (demo mode)");
+            boolean valid = verifyDilithium(message, signatureBase64, dilithiumPublicKeyBase64);
+            
+            logService.logCrypto("Dilithium Verify", "Dilithium3 signature verification: {}", valid ? "valid" : "invalid");
             
-            return true;
+            return valid;
+        } catch (Exception e) {
+            logService.logCrypto("Dilithium Verify Error", "Failed to verify: {}", e.getMessage());
+            return false;
+        }
+    }
+    
+    /**
+     * Verify many Dilithium3 signatures in parallel on the verification pool. The calling
+     * thread verifies the first itself, and also takes over when the pool's queue is full.
+     * Malformed keys or signatures count as invalid.
+     *
+     * @return one result per check, in order
+     */
+    public boolean[] verifyDilithiumBatch(List<SignatureCheck> checks) {
+        boolean[] valid = new boolean[checks.size()];
+        if (checks.isEmpty()) {
+            return valid;
+        }
+        
+        List<Future<Boolean>> pending = new ArrayList<>(checks.size() - 1);
+        for (int i = 1; i < checks.size(); i++) {
+            SignatureCheck check = checks.get(i);
+            pending.add(verificationExecutor.submit(() -> verifyQuietly(check)));
+        }
+        valid[0] = verifyQuietly(checks.get(0));
+        
+        int validCount = valid[0] ? 1 : 0;
+        for (int i = 1; i < valid.length; i++) {
+            try {
+                valid[i] = pending.get(i - 1).get();
+            } catch (ExecutionException e) {
+                valid[i] = false;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                pending.forEach(future -> future.cancel(true));
+                throw new IllegalStateException("Interrupted while verifying signatures", e);
+            }
+            if (valid[i]) {
+                validCount++;
+            }
+        }
+        
+        logService.logCrypto("Dilithium Batch Verify", "Dilithium3 batch verification: {} of {} valid", validCount, valid.length);
+        
+        return valid;
+    }
+    
+    /**
+     * Verification pool counters (for admin monitoring).
+     */
+    public Map<String, Object> getVerificationStats() {
+        return verificationExecutor.getStats();
+    }
+    
+    /**
+     * DRBG reseeds and GCM IVs issued (for admin monitoring).
+     */
+    public Map<String, Object> getRandomStats() {
+        Map<String, Object> stats = randomSource.getStats();
+        stats.put("gcmIvsIssued", ivGenerator.getStats().get("issued"));
+        return stats;
+    }
+    
+    private static boolean verifyQuietly(SignatureCheck check) {
+        try {
+            return verifyDilithium(check.getMessage(), check.getSignature(), check.getPublicKey());
         } catch (Exception e) {
-            logService.logCrypto("Dilithium Verify Error", "Failed to verify: " + e.getMessage());
             return false;
         }
     }
     
+    private static boolean verifyDilithium(String message, String signatureBase64, String dilithiumPublicKeyBase64) {
+        DilithiumPublicKeyParameters publicKey = new DilithiumPublicKeyParameters(DILITHIUM_PARAMETERS,
+            Base64.getDecoder().decode(dilithiumPublicKeyBase64));
+        DilithiumSigner verifier = new DilithiumSigner();
+        verifier.init(false, publicKey);
+        return verifier.verifySignature(message.getBytes(StandardCharsets.UTF_8), Base64.getDecoder().decode(signatureBase64));
+    }
+    
     /**
      * Derive session key using HKDF.
      */
     public byte[] deriveSessionKey(byte[] x25519SharedSecret, String kyberSharedSecretBase64) {
+        return deriveSessionKey(x25519SharedSecret, Base64.getDecoder().decode(kyberSharedSecretBase64));
+    }
+    
+    /**
+     * Derive session key using HKDF from the raw X25519 and Kyber shared secrets.
+     */
+    public byte[] deriveSessionKey(byte[] x25519SharedSecret, byte[] kyberSharedSecret) {
         try {
-            byte[] kyberSharedSecret = Base64.getDecoder().decode(kyberSharedSecretBase64);
-            
-            // Combine X25519 and Kyber shared secrets
-            byte[] combinedSecret = new byte[x25519SharedSecret.length + kyberSharedSecret.length];
-            System.arraycopy(x25519SharedSecret, 0, combinedSecret, 0, x25519SharedSecret.length);
-            System.arraycopy(kyberSharedSecret, 0, combinedSecret, x25519SharedSecret.length, kyberSharedSecret.length);
-            
-            // Hash the combined secret
-            MessageDigest sha256 = MessageDigest.getInstance("SHA-256");
-            byte[] sessionSeed = sha256.digest(combinedSecret);
+            // Hash the combined secret X25519 || Kyber
+            MessageDigest sha256 = SHA256.get();
+            sha256.reset();
+            sha256.update(x25519SharedSecret);
+            sha256.update(kyberSharedSecret);
+            byte[] sessionSeed = sha256.digest();
             
             // Derive session key using HKDF (BouncyCastle)
-            HKDFBytesGenerator hkdf = new HKDFBytesGenerator(new SHA256Digest());
-            byte[] salt = "Spruce-Hybrid-Session".getBytes(StandardCharsets.UTF_8);
-            HKDFParameters params = new HKDFParameters(sessionSeed, salt, "Spruce-Hybrid-Session".getBytes(StandardCharsets.UTF_8));
-            hkdf.init(params);
-            
-            byte[] sessionKey = new byte[HKDF_LENGTH];
-            hkdf.generateBytes(sessionKey, 0, HKDF_LENGTH);
+            byte[] sessionKey = hkdfExtractExpand(sessionSeed, SESSION_SALT, SESSION_INFO, HKDF_LENGTH);
             
             logService.logCrypto("Session Key Derivation", "Derived hybrid session key using HKDF");
             
             return sessionKey;
         } catch (Exception e) {
-            logService.logCrypto("Session Key Derivation Error", "Failed to derive session key: " + e.getMessage());
+            logService.logCrypto("Session Key Derivation Error", "Failed to derive session key: {}", e.getMessage());
             throw new RuntimeException("Session key derivation failed", e);
         }
     }
     
+    /**
+     * Session key for a completed hybrid handshake, from the cache if this session is
+     * already established; otherwise runs the X25519 agreement and Kyber decapsulation,
+     * derives the key and caches it. The returned array is a copy the caller may zero.
+     */
+    public byte[] establishSessionKey(SessionKeyId session, String x25519PrivateKeyBase64, String peerX25519PublicKeyBase64,
+                                      String kyberCiphertextBase64, String kyberPrivateKeyBase64) {
+        return sessionKeys.getOrDerive(session, () -> {
+            byte[] x25519Secret = performX25519Agreement(x25519PrivateKeyBase64, peerX25519PublicKeyBase64);
+            String kyberSecret = decapsulateKyber(kyberCiphertextBase64, kyberPrivateKeyBase64);
+            try {
+                return deriveSessionKey(x25519Secret, kyberSecret);
+            } finally {
+                Arrays.fill(x25519Secret, (byte) 0);
+            }
+        });
+    }
+    
+    /**
+     * Cached key of an established session (a copy), or null if it has to be re-established.
+     */
+    public byte[] getSessionKey(SessionKeyId session) {
+        return sessionKeys.get(session);
+    }
+    
+    /**
+     * Forget a session's key, zeroing it.
+     */
+    public void closeSession(SessionKeyId session) {
+        sessionKeys.invalidate(session);
+    }
+    
+    /**
+     * Forget every session a user takes part in, e.g. after a key rotation.
+     */
+    public int closeSessions(String username) {
+        return sessionKeys.invalidateUser(username);
+    }
+    
+    /**
+     * Session key cache counters (for admin monitoring).
+     */
+    public Map<String, Object> getSessionKeyCacheStats() {
+        return sessionKeys.getStats();
+    }
+    
+    /**
+     * Ephemeral keypair pool depth, refill rate and hit ratio (for admin monitoring).
+     */
+    public Map<String, Object> getKeyPoolStats() {
+        return keyPools.getStats();
+    }
+    
     /**
      * Encrypt message using AES-GCM.
      */
     public AESResult encryptMessage(String plaintext, byte[] sessionKey) {
+        byte[] sealed = encryptMessage(plaintext.getBytes(StandardCharsets.UTF_8), sessionKey);
+        Base64.Encoder encoder = Base64.getEncoder();
+        String ivBase64 = StandardCharsets.ISO_8859_1.decode(encoder.encode(ByteBuffer.wrap(sealed, 0, GCM_IV_LENGTH))).toString();
+        String ciphertextBase64 = StandardCharsets.ISO_8859_1.decode(
+            encoder.encode(ByteBuffer.wrap(sealed, GCM_IV_LENGTH, sealed.length - GCM_IV_LENGTH))).toString();
+        return new AESResult(ciphertextBase64, ivBase64);
+    }
+    
+    /**
+     * Encrypt with AES-GCM under a fresh IV from {@link GcmIvGenerator}.
+     *
+     * @return {@code iv || ciphertext || tag}
+     */
+    public byte[] encryptMessage(byte[] plaintext, byte[] sessionKey) {
+        return encryptMessage(ByteBuffer.wrap(plaintext), sessionKey);
+    }
+    
+    /**
+     * Encrypt the buffer's remaining bytes with AES-GCM under a fresh IV; consumes the buffer.
+     *
+     * @return {@code iv || ciphertext || tag}
+     */
+    public byte[] encryptMessage(ByteBuffer plaintext, byte[] sessionKey) {
         try {
-            Cipher cipher = Cipher.getInstance(AES_GCM_TRANSFORMATION);
-            SecretKeySpec secretKeySpec = new SecretKeySpec(sessionKey, AES_ALGORITHM);
+            // The IV and then the cipher write straight into the output, allocated once at its final size
+            byte[] sealed = new byte[GCM_IV_LENGTH + plaintext.remaining() + GCM_TAG_LENGTH];
+            ivGenerator.next(sealed, 0);
             
-            // Generate random IV
-            byte[] iv = new byte[GCM_IV_LENGTH];
-            secureRandom.nextBytes(iv);
-            
-            GCMParameterSpec gcmSpec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv);
-            cipher.init(Cipher.ENCRYPT_MODE, secretKeySpec, gcmSpec);
-            
-            byte[] ciphertext = cipher.doFinal(plaintext.getBytes(StandardCharsets.UTF_8));
-            
-            String ciphertextBase64 = Base64.getEncoder().encodeToString(ciphertext);
-            String ivBase64 = Base64.getEncoder().encodeToString(iv);
+            Cipher cipher = GCM_CIPHER.get();
+            cipher.init(Cipher.ENCRYPT_MODE, new SecretKeySpec(sessionKey, AES_ALGORITHM),
+                new GCMParameterSpec(GCM_TAG_LENGTH * 8, sealed, 0, GCM_IV_LENGTH));
+            cipher.doFinal(plaintext, ByteBuffer.wrap(sealed, GCM_IV_LENGTH, sealed.length - GCM_IV_LENGTH));
             
             logService.logCrypto("AES-GCM Encryption", "Encrypted message successfully");
             
-            return new AESResult(ciphertextBase64, ivBase64);
+            return sealed;
         } catch (Exception e) {
-            logService.logCrypto("AES-GCM Encryption Error", "Failed to encrypt message: " + e.getMessage());
+            logService.logCrypto("AES-GCM Encryption Error", "Failed to encrypt message: {}", e.getMessage());
             throw new RuntimeException("Message encryption failed", e);
         }
     }
@@ -242,26 +478,174 @@ public class CryptoService {
      * Decrypt message using AES-GCM.
      */
     public String decryptMessage(String ciphertextBase64, String ivBase64, byte[] sessionKey) {
+        byte[] iv = Base64.getDecoder().decode(ivBase64);
+        byte[] ciphertext = Base64.getDecoder().decode(ciphertextBase64);
+        return new String(decryptMessage(iv, ByteBuffer.wrap(ciphertext), sessionKey), StandardCharsets.UTF_8);
+    }
+    
+    /**
+     * Decrypt the output of {@link #encryptMessage(byte[], byte[])}.
+     *
+     * @param sealed {@code iv || ciphertext || tag}
+     */
+    public byte[] decryptMessage(byte[] sealed, byte[] sessionKey) {
+        return decryptMessage(ByteBuffer.wrap(sealed), sessionKey);
+    }
+    
+    /**
+     * Decrypt the buffer's remaining bytes, laid out as {@code iv || ciphertext || tag}; consumes the buffer.
+     */
+    public byte[] decryptMessage(ByteBuffer sealed, byte[] sessionKey) {
+        if (sealed.remaining() < GCM_IV_LENGTH + GCM_TAG_LENGTH) {
+            throw new IllegalArgumentException("Sealed message is too short");
+        }
+        byte[] iv = new byte[GCM_IV_LENGTH];
+        sealed.get(iv);
+        return decryptMessage(iv, sealed, sessionKey);
+    }
+    
+    private byte[] decryptMessage(byte[] iv, ByteBuffer ciphertext, byte[] sessionKey) {
         try {
-            Cipher cipher = Cipher.getInstance(AES_GCM_TRANSFORMATION);
-            SecretKeySpec secretKeySpec = new SecretKeySpec(sessionKey, AES_ALGORITHM);
+            Cipher cipher = GCM_CIPHER.get();
+            cipher.init(Cipher.DECRYPT_MODE, new SecretKeySpec(sessionKey, AES_ALGORITHM),
+                new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv));
             
-            byte[] iv = Base64.getDecoder().decode(ivBase64);
-            GCMParameterSpec gcmSpec = new GCMParameterSpec(GCM_TAG_LENGTH * 8, iv);
-            cipher.init(Cipher.DECRYPT_MODE, secretKeySpec, gcmSpec);
-            
-            byte[] ciphertext = Base64.getDecoder().decode(ciphertextBase64);
-            byte[] plaintext = cipher.doFinal(ciphertext);
+            byte[] plaintext = new byte[Math.max(0, ciphertext.remaining() - GCM_TAG_LENGTH)];
+            cipher.doFinal(ciphertext, ByteBuffer.wrap(plaintext));
             
             logService.logCrypto("AES-GCM Decryption", "Decrypted message successfully");
             
-            return new String(plaintext, StandardCharsets.UTF_8);
+            return plaintext;
         } catch (Exception e) {
-            logService.logCrypto("AES-GCM Decryption Error", "Failed to decrypt message: " + e.getMessage());
+            logService.logCrypto("AES-GCM Decryption Error", "Failed to decrypt message: {}", e.getMessage());
             throw new RuntimeException("Message decryption failed", e);
         }
     }
     
+    /**
+     * Encrypt a stream as an attachment in {@link AttachmentFormat}, a chunk at a time, so
+     * memory use does not depend on the attachment's size. Neither channel is closed.
+     *
+     * @return plaintext bytes encrypted
+     */
+    public long encryptAttachment(ReadableByteChannel in, WritableByteChannel out, byte[] key, int chunkSize) throws IOException {
+        if (chunkSize <= 0 || chunkSize > AttachmentFormat.MAX_CHUNK_SIZE) {
+            throw new IllegalArgumentException("Invalid attachment chunk size " + chunkSize);
+        }
+        byte[] noncePrefix = new byte[AttachmentFormat.NONCE_PREFIX_LENGTH];
+        randomSource.nextBytes(noncePrefix);
+        byte[] header = AttachmentFormat.header(chunkSize, noncePrefix);
+        writeFully(out, ByteBuffer.wrap(header));
+        
+        try {
+            long total = transformChunks(in, out, key, header, chunkSize, Cipher.ENCRYPT_MODE);
+            logService.logCrypto("Attachment Encryption", "Encrypted {} bytes in {} byte chunks", total, chunkSize);
+            return total;
+        } catch (GeneralSecurityException e) {
+            logService.logCrypto("Attachment Encryption Error", "Failed to encrypt attachment: {}", e.getMessage());
+            throw new RuntimeException("Attachment encryption failed", e);
+        }
+    }
+    
+    /**
+     * Encrypt a stream as an attachment with {@link AttachmentFormat#DEFAULT_CHUNK_SIZE} chunks.
+     */
+    public long encryptAttachment(ReadableByteChannel in, WritableByteChannel out, byte[] key) throws IOException {
+        return encryptAttachment(in, out, key, AttachmentFormat.DEFAULT_CHUNK_SIZE);
+    }
+    
+    /**
+     * Decrypt an attachment a chunk at a time. Each chunk is authenticated before it is
+     * written, so on failure {@code out} holds a verified prefix that the caller must discard.
+     *
+     * @return plaintext bytes written
+     */
+    public long decryptAttachment(ReadableByteChannel in, WritableByteChannel out, byte[] key) throws IOException {
+        byte[] header = new byte[AttachmentFormat.HEADER_LENGTH];
+        ByteBuffer headerBuffer = ByteBuffer.wrap(header);
+        if (!fill(in, headerBuffer)) {
+            throw new IOException("Attachment is shorter than its header");
+        }
+        int chunkSize = AttachmentFormat.chunkSize(header);
+        
+        try {
+            long total = transformChunks(in, out, key, header, chunkSize + AttachmentFormat.TAG_LENGTH, Cipher.DECRYPT_MODE);
+            logService.logCrypto("Attachment Decryption", "Decrypted {} bytes in {} byte chunks", total, chunkSize);
+            return total;
+        } catch (GeneralSecurityException e) {
+            logService.logCrypto("Attachment Decryption Error", "Failed to decrypt attachment: {}", e.getMessage());
+            throw new RuntimeException("Attachment decryption failed", e);
+        }
+    }
+    
+    /**
+     * Seal or open every chunk of an attachment body. One chunk is read ahead so the final
+     * chunk is known when it is processed, even when the input ends on a chunk boundary.
+     *
+     * @param inputChunk size of a full input chunk: the chunk size, plus the tag when decrypting
+     * @return plaintext bytes processed
+     */
+    private long transformChunks(ReadableByteChannel in, WritableByteChannel out, byte[] key, byte[] header,
+                                 int inputChunk, int mode) throws IOException, GeneralSecurityException {
+        ByteBuffer current = ByteBuffer.allocate(inputChunk);
+        ByteBuffer next = ByteBuffer.allocate(inputChunk);
+        ByteBuffer output = ByteBuffer.allocate(mode == Cipher.ENCRYPT_MODE ? inputChunk + AttachmentFormat.TAG_LENGTH : inputChunk);
+        SecretKeySpec keySpec = new SecretKeySpec(key, AES_ALGORITHM);
+        Cipher cipher = GCM_CIPHER.get();
+        byte[] nonce = new byte[AttachmentFormat.NONCE_LENGTH];
+        
+        long total = 0;
+        boolean eof = !fill(in, current);
+        for (long counter = 0; ; counter++) {
+            boolean last = eof;
+            if (!last) {
+                eof = !fill(in, next);
+                last = next.position() == 0;
+            }
+            if (mode == Cipher.DECRYPT_MODE && current.position() < AttachmentFormat.TAG_LENGTH) {
+                throw new IOException("Attachment is truncated");
+            }
+            
+            AttachmentFormat.nonce(header, counter, last, nonce);
+            cipher.init(mode, keySpec, new GCMParameterSpec(AttachmentFormat.TAG_LENGTH * 8, nonce));
+            cipher.updateAAD(header);
+            current.flip();
+            output.clear();
+            cipher.doFinal(current, output);
+            output.flip();
+            total += mode == Cipher.ENCRYPT_MODE ? current.limit() : output.remaining();
+            writeFully(out, output);
+            
+            if (last) {
+                return total;
+            }
+            ByteBuffer swap = current;
+            current = next;
+            next = swap;
+            next.clear();
+        }
+    }
+    
+    /**
+     * Read until the buffer is full or the channel ends.
+     *
+     * @return false if the channel ended
+     */
+    private static boolean fill(ReadableByteChannel in, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            if (in.read(buffer) < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+    
+    private static void writeFully(WritableByteChannel out, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            out.write(buffer);
+        }
+    }
+    
     // Helper classes for return values
     public static class X25519KeyPair {
         public final String privateKey;
@@ -273,6 +657,26 @@ public class CryptoService {
         }
     }
     
+    public static class KyberKeyPair {
+        public final String privateKey;
+        public final String publicKey;
+        
+        public KyberKeyPair(String privateKey, String publicKey) {
+            this.privateKey = privateKey;
+            this.publicKey = publicKey;
+        }
+    }
+    
+    public static class DilithiumKeyPair {
+        public final String privateKey;
+        public final String publicKey;
+        
+        public DilithiumKeyPair(String privateKey, String publicKey) {
+            this.privateKey = privateKey;
+            this.publicKey = publicKey;
+        }
+    }
+    
     public static class KyberResult {
         public final String sharedSecret;
         public final String ciphertext;
@@ -294,7 +698,7 @@ public class CryptoService {
     }
 
     private static byte[] hkdfExtractExpand(byte[] ikm, byte[] salt, byte[] info, int length) {
-        HKDFBytesGenerator hkdf = new HKDFBytesGenerator(new SHA256Digest());
+        HKDFBytesGenerator hkdf = HKDF.get();
         HKDFParameters params = new HKDFParameters(ikm, salt, info);
         hkdf.init(params);
         byte[] out = new byte[length];
@@ -1,104 +1,219 @@
 package com.spruce.service;
 
+import com.spruce.config.LogProperties;
+import com.spruce.dto.LogQuery;
+import com.spruce.logging.AsyncLogWriter;
+import com.spruce.logging.DatabaseLogSink;
+import com.spruce.logging.LogCategory;
+import com.spruce.logging.LogEvent;
+import com.spruce.logging.LogRetention;
+import com.spruce.logging.LogSampler;
+import com.spruce.logging.RecentLogRing;
 import com.spruce.model.LogEntry;
 import com.spruce.repository.LogRepository;
+import com.spruce.repository.LogSpecifications;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
-import java.io.FileWriter;
-import java.io.IOException;
 import java.time.LocalDateTime;
-import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.Map;
 
+/**
+ * Audit log for the demo. Events are handed to the {@link AsyncLogWriter}, whose
+ * thread writes them to the text log file, the {@code logs} table and the application log.
+ *
+ * Details are passed as a template with {@code {}} placeholders and formatted only when
+ * written. Categories can be sampled or rate limited in {@code spruce.log.categories};
+ * suppressed events are counted and reported in periodic summary events instead.
+ */
 @Service
 @Slf4j
 @RequiredArgsConstructor
 public class LogService {
 
-    private static final String LOG_FILE = "logs/spruce-demo.log";
-    private final List<String> logBuffer = new CopyOnWriteArrayList<>();
-    private final DateTimeFormatter formatter = DateTimeFormatter.ofPattern("yyyy-MM-dd HH:mm:ss.SSS");
+    /** Largest page {@link #findLogs} returns. */
+    public static final int MAX_QUERY_LIMIT = 1000;
+
     private final LogRepository logRepository;
+    private final AsyncLogWriter logWriter;
+    private final DatabaseLogSink databaseLogSink;
+    private final LogRetention logRetention;
+    private final LogProperties logProperties;
 
-    private void log(String level, String category, String message) {
-        String timestamp = LocalDateTime.now().format(formatter);
-        String logEntry = String.format("[%s] [%s] [%s] %s", timestamp, level, category, message);
+    private RecentLogRing recentLogs;
+    private LogSampler sampler;
+    private volatile boolean running;
+    private Thread summaryWriter;
 
-        log.info(logEntry);
-        logBuffer.add(logEntry);
-        writeToFile(logEntry);
-        persistToDatabase(level, category, message);
+    @PostConstruct
+    public void init() {
+        recentLogs = new RecentLogRing(logProperties.getTailCapacity());
+        sampler = new LogSampler(logProperties.getCategories());
+        if (!sampler.isEmpty()) {
+            running = true;
+            summaryWriter = new Thread(this::summaryLoop, "log-summary");
+            summaryWriter.setDaemon(true);
+            summaryWriter.start();
+        }
+    }
 
-        if (logBuffer.size() > 1000) {
-            logBuffer.remove(0);
+    @PreDestroy
+    public void shutdown() {
+        running = false;
+        if (summaryWriter != null) {
+            summaryWriter.interrupt();
         }
+        // Report whatever was counted since the last summary
+        writeSummaries();
+    }
+
+    /**
+     * Log an event whose details are formatted from {@code template} only if it is written.
+     *
+     * @param event    what happened, e.g. "AES-GCM Encryption"
+     * @param template details with {@code {}} placeholders
+     * @param args     values for the placeholders; should be immutable, they are read later
+     */
+    public void log(LogCategory category, String event, String template, Object... args) {
+        if (!sampler.admit(category, event)) {
+            return;
+        }
+        submit(new LogEvent(System.currentTimeMillis(), "INFO", category.name(), event, template, args));
+    }
+
+    private void submit(LogEvent event) {
+        recentLogs.add(event);
+        logWriter.submit(event);
     }
 
     public void logInfo(String message) {
-        log("INFO", "GENERAL", message);
+        log(LogCategory.GENERAL, message, null);
     }
 
     public void logHandshake(String event, String details) {
-        log("INFO", "HANDSHAKE", String.format("%s | %s", event, details));
+        log(LogCategory.HANDSHAKE, event, details);
+    }
+
+    public void logHandshake(String event, String template, Object... args) {
+        log(LogCategory.HANDSHAKE, event, template, args);
     }
 
     public void logSignature(String event, String details) {
-        log("INFO", "SIGNATURE", String.format("%s | %s", event, details));
+        log(LogCategory.SIGNATURE, event, details);
+    }
+
+    public void logSignature(String event, String template, Object... args) {
+        log(LogCategory.SIGNATURE, event, template, args);
     }
 
     public void logSession(String event, String details) {
-        log("INFO", "SESSION", String.format("%s | %s", event, details));
+        log(LogCategory.SESSION, event, details);
+    }
+
+    public void logSession(String event, String template, Object... args) {
+        log(LogCategory.SESSION, event, template, args);
     }
 
     public void logMessage(String event, String details) {
-        log("INFO", "MESSAGE", String.format("%s | %s", event, details));
+        log(LogCategory.MESSAGE, event, details);
+    }
+
+    public void logMessage(String event, String template, Object... args) {
+        log(LogCategory.MESSAGE, event, template, args);
     }
 
     public void logCrypto(String operation, String details) {
-        log("INFO", "CRYPTO", String.format("%s | %s", operation, details));
+        log(LogCategory.CRYPTO, operation, details);
     }
 
+    public void logCrypto(String operation, String template, Object... args) {
+        log(LogCategory.CRYPTO, operation, template, args);
+    }
+
+    /**
+     * The most recent log lines, newest first. Served from the in-memory tail;
+     * the database is only queried for entries older than the tail holds.
+     */
     public List<String> getRecentLogs(int count) {
+        List<LogEvent> recent = recentLogs.latest(count);
+        List<String> lines = new ArrayList<>(Math.min(count, recent.size() + 16));
+        for (LogEvent event : recent) {
+            lines.add(event.toLine());
+        }
+        if (lines.size() >= count) {
+            return lines;
+        }
+
+        LocalDateTime before = recent.isEmpty() ? LocalDateTime.now() : recent.get(recent.size() - 1).getDateTime();
         try {
-            List<LogEntry> recent = logRepository.findRecent(PageRequest.of(0, count));
-            if (!recent.isEmpty()) {
-                List<String> lines = new ArrayList<>();
-                for (LogEntry e : recent) {
-                    String ts = e.getCreatedAt() != null ? e.getCreatedAt().format(formatter) : "";
-                    lines.add(String.format("[%s] [%s] [%s] %s", ts, e.getLevel(), e.getCategory(), e.getMessage()));
-                }
-                return lines;
+            for (LogEntry e : logRepository.findOlderThan(before, PageRequest.of(0, count - lines.size()))) {
+                lines.add(e.toLine());
             }
-        } catch (Exception ignored) {
-            // fallback to in-memory
+        } catch (Exception e) {
+            log.debug("Failed to load older logs: {}", e.getMessage());
         }
-        int startIndex = Math.max(0, logBuffer.size() - count);
-        return new ArrayList<>(logBuffer.subList(startIndex, logBuffer.size()));
+        return lines;
+    }
+
+    /**
+     * Persisted entries matching the query, newest first, at most {@code query.limit}.
+     * Entries still waiting in the batch writer are not visible yet.
+     */
+    public List<LogEntry> findLogs(LogQuery query) {
+        int limit = Math.max(1, Math.min(query.getLimit(), MAX_QUERY_LIMIT));
+        return logRepository.findBy(LogSpecifications.matching(query),
+            q -> q.sortBy(Sort.by(Sort.Direction.DESC, "id")).limit(limit).all());
+    }
+
+    /**
+     * Number of events the writer dropped under the DROP overflow policy (for admin monitoring).
+     */
+    public long getDroppedLogCount() {
+        return logWriter.getDroppedCount();
     }
 
-    private void writeToFile(String logEntry) {
-        try (FileWriter writer = new FileWriter(LOG_FILE, true)) {
-            writer.write(logEntry + System.lineSeparator());
-        } catch (IOException e) {
-            log.error("Failed to write to log file: {}", e.getMessage());
+    /**
+     * Batch size, flush latency and drop counters of the {@code logs} table writer (for admin monitoring).
+     */
+    public Map<String, Object> getPersistenceStats() {
+        return databaseLogSink.getStats();
+    }
+
+    /**
+     * Rows, partitions and file archives removed by retention (for admin monitoring).
+     */
+    public Map<String, Object> getRetentionStats() {
+        return logRetention.getStats();
+    }
+
+    /**
+     * Events per category that were only counted because of sampling or rate limits (for admin monitoring).
+     */
+    public Map<String, Long> getSuppressedLogCounts() {
+        return sampler.getSuppressedCounts();
+    }
+
+    private void summaryLoop() {
+        long interval = logProperties.getSummaryIntervalMs();
+        while (running) {
+            try {
+                Thread.sleep(interval);
+            } catch (InterruptedException e) {
+                return;
+            }
+            writeSummaries();
         }
     }
 
-    private void persistToDatabase(String level, String category, String message) {
-        try {
-            LogEntry entry = LogEntry.builder()
-                .level(level)
-                .category(category)
-                .message(message)
-                .createdAt(LocalDateTime.now())
-                .build();
-            logRepository.save(entry);
-        } catch (Exception ignored) {
-            // DB may be H2 memory or MySQL not configured; ignore persist errors for demo
+    private void writeSummaries() {
+        for (LogEvent summary : sampler.drainSummaries(System.currentTimeMillis(), logProperties.getSummaryIntervalMs())) {
+            submit(summary);
         }
     }
 }
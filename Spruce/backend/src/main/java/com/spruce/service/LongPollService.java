@@ -0,0 +1,182 @@
+package com.spruce.service;
+
+import com.spruce.config.RelayProperties;
+import com.spruce.model.DeliveryChannel;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.context.request.async.DeferredResult;
+
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BooleanSupplier;
+import java.util.function.Supplier;
+
+/**
+ * Registry of parked long-poll requests.
+ * Requests wait here without holding a servlet thread and are completed
+ * as soon as something is enqueued for their user, or when they time out.
+ *
+ * Completing a request reads the store, so wakes are handed to a small pool of
+ * "long-poll-wake" threads instead of running on the sender's request thread. At most one
+ * wake per user and channel is pending at a time, which bounds the pool's queue by the
+ * number of parked users. A user's entry is removed when their last request completes.
+ */
+@Service
+@Slf4j
+public class LongPollService {
+
+    public static final long MAX_WAIT_MS = 30_000;
+
+    private final Map<String, Waiters> parked = new ConcurrentHashMap<>();
+    private final AtomicInteger parkedCount = new AtomicInteger();
+    private final ExecutorService wakeExecutor;
+
+    public LongPollService(RelayProperties relayProperties) {
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.wakeExecutor = Executors.newFixedThreadPool(Math.max(1, relayProperties.getLongPoll().getWakeThreads()), task -> {
+            Thread thread = new Thread(task, "long-poll-wake-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        wakeExecutor.shutdownNow();
+    }
+
+    /**
+     * Park a request until data is available on the given channel.
+     *
+     * @param ready     checked after registration so an enqueue racing with the park is not missed
+     * @param onReady   builds the response once data has arrived
+     * @param onTimeout builds the (empty) response when the wait expires
+     */
+    public <T> DeferredResult<T> park(String username, DeliveryChannel channel, long waitMs,
+                                      BooleanSupplier ready, Supplier<T> onReady, Supplier<T> onTimeout) {
+        long timeout = Math.max(1, Math.min(waitMs, MAX_WAIT_MS));
+        DeferredResult<T> result = new DeferredResult<>(timeout);
+        ParkedRequest<T> request = new ParkedRequest<>(channel, result, onReady);
+
+        // Registered inside compute, so it cannot race with the removal of an emptied entry
+        parked.compute(username, (k, waiters) -> {
+            Waiters current = waiters != null ? waiters : new Waiters();
+            current.requests.add(request);
+            return current;
+        });
+        parkedCount.incrementAndGet();
+
+        result.onTimeout(() -> result.setResult(onTimeout.get()));
+        result.onError(e -> result.setResult(onTimeout.get()));
+        result.onCompletion(() -> unpark(username, request));
+
+        if (ready.getAsBoolean()) {
+            request.complete();
+        }
+        return result;
+    }
+
+    /**
+     * Complete every request parked by a user on the given channel. Returns at once; the
+     * requests are completed on a wake thread.
+     */
+    public void wake(String username, DeliveryChannel channel) {
+        Waiters waiters = parked.get(username);
+        if (waiters == null || !waiters.hasChannel(channel)) {
+            return;
+        }
+        AtomicBoolean pending = waiters.wakePending[channel.ordinal()];
+        if (!pending.compareAndSet(false, true)) {
+            // A wake already queued will see whatever this sender enqueued
+            return;
+        }
+        try {
+            wakeExecutor.execute(() -> {
+                pending.set(false);
+                for (ParkedRequest<?> request : waiters.requests) {
+                    if (request.channel == channel) {
+                        request.complete();
+                    }
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down; parked requests time out on their own
+            pending.set(false);
+        }
+    }
+
+    /**
+     * Number of requests currently parked (for admin monitoring).
+     */
+    public int getParkedCount() {
+        return parkedCount.get();
+    }
+
+    /**
+     * Number of users with at least one parked request.
+     */
+    public int getParkedUserCount() {
+        return parked.size();
+    }
+
+    private void unpark(String username, ParkedRequest<?> request) {
+        parked.computeIfPresent(username, (k, waiters) -> {
+            if (waiters.requests.remove(request)) {
+                parkedCount.decrementAndGet();
+            }
+            return waiters.requests.isEmpty() ? null : waiters;
+        });
+    }
+
+    private static final class Waiters {
+        private final Queue<ParkedRequest<?>> requests = new ConcurrentLinkedQueue<>();
+        private final AtomicBoolean[] wakePending = new AtomicBoolean[DeliveryChannel.values().length];
+
+        private Waiters() {
+            for (int i = 0; i < wakePending.length; i++) {
+                wakePending[i] = new AtomicBoolean();
+            }
+        }
+
+        private boolean hasChannel(DeliveryChannel channel) {
+            for (ParkedRequest<?> request : requests) {
+                if (request.channel == channel) {
+                    return true;
+                }
+            }
+            return false;
+        }
+    }
+
+    private static final class ParkedRequest<T> {
+        private final DeliveryChannel channel;
+        private final DeferredResult<T> result;
+        private final Supplier<T> onReady;
+
+        private ParkedRequest(DeliveryChannel channel, DeferredResult<T> result, Supplier<T> onReady) {
+            this.channel = channel;
+            this.result = result;
+            this.onReady = onReady;
+        }
+
+        private void complete() {
+            if (result.isSetOrExpired()) {
+                return;
+            }
+            try {
+                result.setResult(onReady.get());
+            } catch (Exception e) {
+                log.error("Failed to complete parked request", e);
+                result.setErrorResult(e);
+            }
+        }
+    }
+}
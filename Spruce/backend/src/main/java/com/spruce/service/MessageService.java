@@ -1,12 +1,24 @@
 package com.spruce.service;
 
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.spruce.config.RelayProperties;
+import com.spruce.crypto.SignatureCheck;
+import com.spruce.dto.GroupMessageRequest;
+import com.spruce.dto.PublicKeySet;
+import com.spruce.dto.SendResult;
+import com.spruce.model.DeliveryChannel;
 import com.spruce.model.MessagePacket;
+import com.spruce.store.MessageStore;
 import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.stereotype.Service;
 
+import java.time.Duration;
+import java.time.LocalDateTime;
 import java.util.*;
-import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * Service for managing encrypted message transmission.
@@ -18,97 +30,432 @@ import java.util.concurrent.ConcurrentHashMap;
 public class MessageService {
     
     private final LogService logService;
-    
-    // In-memory storage for demo (in production, use database)
-    private final Map<String, List<MessagePacket>> messageQueues = new ConcurrentHashMap<>();
-    private final Map<String, List<MessagePacket>> handshakeData = new ConcurrentHashMap<>();
+    private final LongPollService longPollService;
+    private final PushService pushService;
+    private final MessageStore messageStore;
+    private final RelayProperties relayProperties;
+    private final UserService userService;
+    private final CryptoService cryptoService;
+    private final ObjectMapper objectMapper;
     
     /**
      * Store a message packet for a recipient.
+     * Online recipients also get the queued packet pushed over their WebSocket session.
      */
     public void storeMessage(MessagePacket messagePacket) {
         String recipient = messagePacket.getRecipient();
-        messageQueues.computeIfAbsent(recipient, k -> new ArrayList<>()).add(messagePacket);
+        clearRelayFields(messagePacket);
+        stampExpiry(messagePacket, messagePacket.getTtlSeconds());
+        messageStore.append(DeliveryChannel.MESSAGES, messagePacket);
+        longPollService.wake(recipient, DeliveryChannel.MESSAGES);
+        pushService.deliver(recipient, DeliveryChannel.MESSAGES);
+        
+        logService.logMessage("Encrypted message relayed", "From {} → {}", 
+            messagePacket.getSender(), recipient);
+    }
+    
+    /**
+     * Store a batch of message packets in a single pass per recipient.
+     * The whole batch is logged as one entry.
+     *
+     * @return one result per packet, in request order
+     */
+    public List<SendResult> storeMessages(List<MessagePacket> packets) {
+        SendResult[] results = new SendResult[packets.size()];
+        Map<String, List<Integer>> byRecipient = new LinkedHashMap<>();
+        for (int i = 0; i < packets.size(); i++) {
+            byRecipient.computeIfAbsent(packets.get(i).getRecipient(), k -> new ArrayList<>()).add(i);
+        }
+        
+        int pushed = 0;
+        int failed = 0;
+        for (Map.Entry<String, List<Integer>> entry : byRecipient.entrySet()) {
+            String recipient = entry.getKey();
+            List<MessagePacket> queued = new ArrayList<>();
+            List<Integer> queuedIndexes = new ArrayList<>();
+            
+            for (int i : entry.getValue()) {
+                MessagePacket packet = packets.get(i);
+                if (recipient == null) {
+                    results[i] = new SendResult(packet.getMessageId(), null, false, false, 0, "Recipient is required");
+                    failed++;
+                } else {
+                    clearRelayFields(packet);
+                    stampExpiry(packet, packet.getTtlSeconds());
+                    queued.add(packet);
+                    queuedIndexes.add(i);
+                }
+            }
+            if (queued.isEmpty()) {
+                continue;
+            }
+            
+            List<RuntimeException> failures = messageStore.appendAll(DeliveryChannel.MESSAGES, queued);
+            longPollService.wake(recipient, DeliveryChannel.MESSAGES);
+            boolean online = pushService.deliver(recipient, DeliveryChannel.MESSAGES);
+            for (int j = 0; j < queued.size(); j++) {
+                MessagePacket packet = queued.get(j);
+                RuntimeException failure = failures.get(j);
+                results[queuedIndexes.get(j)] = failure == null
+                    ? new SendResult(packet.getMessageId(), recipient, true, online, packet.getSeq(), null)
+                    : new SendResult(packet.getMessageId(), recipient, false, false, 0, failure.getMessage());
+                if (failure != null) {
+                    failed++;
+                } else if (online) {
+                    pushed++;
+                }
+            }
+        }
+        
+        logService.logMessage("Encrypted batch relayed", "Packets: {}, Recipients: {}, Pushed: {}, Failed: {}", 
+            packets.size(), byRecipient.size(), pushed, failed);
+        
+        return Arrays.asList(results);
+    }
+    
+    /**
+     * Fan one encrypted payload out to several recipients. Each recipient gets a packet
+     * with their own key wrap; the queued copies share a single stored payload.
+     *
+     * @return one result per recipient, in request order
+     */
+    public List<SendResult> storeGroupMessage(GroupMessageRequest request) {
+        String groupId = UUID.randomUUID().toString();
+        String messageId = request.getMessageId() != null ? request.getMessageId() : groupId;
+        LocalDateTime now = LocalDateTime.now();
+        
+        List<GroupMessageRequest.Recipient> recipients = request.getRecipients();
+        SendResult[] results = new SendResult[recipients.size()];
+        List<MessagePacket> queued = new ArrayList<>();
+        List<Integer> queuedIndexes = new ArrayList<>();
+        int pushed = 0;
+        for (int i = 0; i < recipients.size(); i++) {
+            GroupMessageRequest.Recipient recipient = recipients.get(i);
+            // Every packet references the same content String
+            MessagePacket packet = new MessagePacket(request.getSender(), recipient.getUsername(),
+                request.getEncryptedContent(), request.getNonce(), request.getAad());
+            packet.setTimestamp(now);
+            packet.setMessageId(messageId);
+            packet.setKeyWrap(recipient.getKeyWrap());
+            packet.setGroupId(groupId);
+            
+            stampExpiry(packet, request.getTtlSeconds());
+            queued.add(packet);
+            queuedIndexes.add(i);
+        }
         
-        logService.logMessage("Encrypted message relayed", String.format("From %s → %s", 
-            messagePacket.getSender(), recipient));
+        int failed = 0;
+        if (!queued.isEmpty()) {
+            List<RuntimeException> failures = messageStore.appendGroup(DeliveryChannel.MESSAGES, queued);
+            for (int j = 0; j < queued.size(); j++) {
+                MessagePacket packet = queued.get(j);
+                RuntimeException failure = failures.get(j);
+                boolean online = false;
+                if (failure != null) {
+                    failed++;
+                } else {
+                    longPollService.wake(packet.getRecipient(), DeliveryChannel.MESSAGES);
+                    online = pushService.deliver(packet.getRecipient(), DeliveryChannel.MESSAGES);
+                    if (online) {
+                        pushed++;
+                    }
+                }
+                results[queuedIndexes.get(j)] = failure == null
+                    ? new SendResult(messageId, packet.getRecipient(), true, online, packet.getSeq(), null)
+                    : new SendResult(messageId, packet.getRecipient(), false, false, 0, failure.getMessage());
+            }
+        }
+        
+        logService.logMessage("Encrypted group message relayed", "From {} → {} recipients, Pushed: {}, Failed: {}", 
+            request.getSender(), recipients.size(), pushed, failed);
+        
+        return Arrays.asList(results);
     }
     
     /**
      * Retrieve messages for a user.
      */
     public List<MessagePacket> getMessages(String username) {
-        List<MessagePacket> messages = messageQueues.getOrDefault(username, new ArrayList<>());
+        return getMessages(username, 0, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Retrieve up to {@code limit} messages queued after the {@code afterSeq} cursor.
+     */
+    public List<MessagePacket> getMessages(String username, long afterSeq, int limit) {
+        List<MessagePacket> messages = messageStore.readAfter(DeliveryChannel.MESSAGES, username, afterSeq, limit);
         
         if (!messages.isEmpty()) {
-            logService.logMessage("Retrieved messages", String.format("User: %s, Count: %d", 
-                username, messages.size()));
+            logService.logMessage("Retrieved messages", "User: {}, Count: {}", 
+                username, messages.size());
         }
         
         return messages;
     }
     
+    /**
+     * Check whether a user has messages queued after the cursor without logging a retrieval.
+     */
+    public boolean hasMessages(String username, long afterSeq) {
+        return messageStore.hasAfter(DeliveryChannel.MESSAGES, username, afterSeq);
+    }
+    
+    /**
+     * Check whether a user has handshake data queued after the cursor without logging a retrieval.
+     */
+    public boolean hasHandshakeData(String username, long afterSeq) {
+        return messageStore.hasAfter(DeliveryChannel.HANDSHAKES, username, afterSeq);
+    }
+    
+    /**
+     * Remove a user's messages up to and including {@code upToSeq}.
+     *
+     * @return the number of messages removed
+     */
+    public int acknowledgeMessages(String username, long upToSeq) {
+        int removed = messageStore.acknowledge(DeliveryChannel.MESSAGES, username, upToSeq);
+        pushService.acknowledged(username, DeliveryChannel.MESSAGES, upToSeq);
+        
+        if (removed > 0) {
+            logService.logMessage("Acknowledged messages", "User: {}, Up to: {}, Count: {}", 
+                username, upToSeq, removed);
+        }
+        
+        return removed;
+    }
+    
     /**
      * Clear messages for a user after retrieval.
      */
     public void clearMessages(String username) {
         if ("all".equalsIgnoreCase(username)) {
-            messageQueues.clear();
-            handshakeData.clear();
+            messageStore.clearAll();
+            pushService.releasedAll();
             logService.logMessage("Cleared all queues", "Admin reset invoked");
             return;
         }
-        messageQueues.remove(username);
-        logService.logMessage("Cleared message queue", String.format("User: %s", username));
+        messageStore.clear(DeliveryChannel.MESSAGES, username);
+        pushService.released(username, DeliveryChannel.MESSAGES);
+        logService.logMessage("Cleared message queue", "User: {}", username);
     }
     
     /**
      * Store handshake data.
+     * Online recipients also get the queued handshake pushed over their WebSocket session.
+     *
+     * @return true if the recipient is online and the handshake will be pushed
      */
-    public void storeHandshakeData(String recipient, MessagePacket handshakePacket) {
-        handshakeData.computeIfAbsent(recipient, k -> new ArrayList<>()).add(handshakePacket);
+    public boolean storeHandshakeData(String recipient, MessagePacket handshakePacket) {
+        handshakePacket.setRecipient(recipient);
+        clearRelayFields(handshakePacket);
+        stampExpiry(handshakePacket, handshakePacket.getTtlSeconds());
+        messageStore.append(DeliveryChannel.HANDSHAKES, handshakePacket);
+        longPollService.wake(recipient, DeliveryChannel.HANDSHAKES);
+        boolean online = pushService.deliver(recipient, DeliveryChannel.HANDSHAKES);
         
         logService.logHandshake("Handshake data stored", 
-            String.format("Recipient: %s, Sender: %s", recipient, handshakePacket.getSender()));
+            "Recipient: {}, Sender: {}", recipient, handshakePacket.getSender());
+        return online;
+    }
+    
+    /**
+     * Verify and relay a batch of handshakes, e.g. from clients reconnecting together.
+     *
+     * Each packet's {@code encryptedContent} is the handshake JSON; its signature must
+     * verify against the sender's registered Dilithium key over the signed fields, exactly
+     * as the client serialized them. Signatures are verified in parallel; only handshakes
+     * that pass are delivered.
+     *
+     * @return one result per packet, in request order
+     */
+    public List<SendResult> ingestHandshakes(List<MessagePacket> packets) {
+        SendResult[] results = new SendResult[packets.size()];
+        Map<String, String> senderKeys = new HashMap<>();
+        List<SignatureCheck> checks = new ArrayList<>();
+        List<Integer> checkedIndexes = new ArrayList<>();
+        
+        for (int i = 0; i < packets.size(); i++) {
+            MessagePacket packet = packets.get(i);
+            String error = null;
+            if (packet.getSender() == null || packet.getRecipient() == null) {
+                error = "Sender and recipient are required";
+            } else {
+                String publicKey = senderKeys.computeIfAbsent(packet.getSender(), this::dilithiumKeyOf);
+                SignatureCheck check = publicKey != null ? handshakeSignatureCheck(packet, publicKey) : null;
+                if (publicKey == null) {
+                    error = "Unknown sender";
+                } else if (check == null) {
+                    error = "Malformed handshake";
+                } else {
+                    checks.add(check);
+                    checkedIndexes.add(i);
+                }
+            }
+            if (error != null) {
+                results[i] = new SendResult(packet.getMessageId(), packet.getRecipient(), false, false, 0, error);
+            }
+        }
+        
+        boolean[] valid = cryptoService.verifyDilithiumBatch(checks);
+        int delivered = 0;
+        for (int j = 0; j < valid.length; j++) {
+            int i = checkedIndexes.get(j);
+            MessagePacket packet = packets.get(i);
+            if (!valid[j]) {
+                logService.logSignature("Handshake signature rejected", "From {} → {}", packet.getSender(), packet.getRecipient());
+                results[i] = new SendResult(packet.getMessageId(), packet.getRecipient(), false, false, 0, "Invalid signature");
+                continue;
+            }
+            try {
+                boolean pushed = storeHandshakeData(packet.getRecipient(), packet);
+                results[i] = new SendResult(packet.getMessageId(), packet.getRecipient(), true, pushed, packet.getSeq(), null);
+                delivered++;
+            } catch (RuntimeException e) {
+                results[i] = new SendResult(packet.getMessageId(), packet.getRecipient(), false, false, 0, e.getMessage());
+            }
+        }
+        
+        logService.logHandshake("Handshake batch ingested", "Packets: {}, Checked: {}, Delivered: {}", 
+            packets.size(), checks.size(), delivered);
+        
+        return Arrays.asList(results);
     }
     
     /**
      * Retrieve handshake data for a user.
      */
     public List<MessagePacket> getHandshakeData(String username) {
-        List<MessagePacket> handshakes = handshakeData.getOrDefault(username, new ArrayList<>());
+        return getHandshakeData(username, 0, Integer.MAX_VALUE);
+    }
+    
+    /**
+     * Retrieve up to {@code limit} handshakes queued after the {@code afterSeq} cursor.
+     */
+    public List<MessagePacket> getHandshakeData(String username, long afterSeq, int limit) {
+        List<MessagePacket> handshakes = messageStore.readAfter(DeliveryChannel.HANDSHAKES, username, afterSeq, limit);
         
         if (!handshakes.isEmpty()) {
             logService.logHandshake("Handshake data retrieved", 
-                String.format("User: %s, Count: %d", username, handshakes.size()));
+                "User: {}, Count: {}", username, handshakes.size());
         }
         
         return handshakes;
     }
     
+    /**
+     * Remove a user's handshakes up to and including {@code upToSeq}.
+     *
+     * @return the number of handshakes removed
+     */
+    public int acknowledgeHandshakeData(String username, long upToSeq) {
+        int removed = messageStore.acknowledge(DeliveryChannel.HANDSHAKES, username, upToSeq);
+        pushService.acknowledged(username, DeliveryChannel.HANDSHAKES, upToSeq);
+        
+        if (removed > 0) {
+            logService.logHandshake("Handshake data acknowledged", "User: {}, Up to: {}, Count: {}", 
+                username, upToSeq, removed);
+        }
+        
+        return removed;
+    }
+    
     /**
      * Clear handshake data for a user.
      */
     public void clearHandshakeData(String username) {
-        handshakeData.remove(username);
-        logService.logHandshake("Handshake data cleared", String.format("User: %s", username));
+        messageStore.clear(DeliveryChannel.HANDSHAKES, username);
+        pushService.released(username, DeliveryChannel.HANDSHAKES);
+        logService.logHandshake("Handshake data cleared", "User: {}", username);
     }
     
     /**
      * Get all active message queues (for admin monitoring).
      */
     public Map<String, Integer> getMessageQueueStats() {
-        Map<String, Integer> stats = new HashMap<>();
-        messageQueues.forEach((user, messages) -> stats.put(user, messages.size()));
-        return stats;
+        return messageStore.queueSizes(DeliveryChannel.MESSAGES);
     }
     
     /**
      * Get all active handshake queues (for admin monitoring).
      */
     public Map<String, Integer> getHandshakeQueueStats() {
-        Map<String, Integer> stats = new HashMap<>();
-        handshakeData.forEach((user, handshakes) -> stats.put(user, handshakes.size()));
-        return stats;
+        return messageStore.queueSizes(DeliveryChannel.HANDSHAKES);
+    }
+    
+    /**
+     * Number of queued packets dropped because their lifetime ran out (for admin monitoring).
+     */
+    public long getExpiredCount() {
+        return messageStore.expiredCount();
+    }
+    
+    /**
+     * Number of packets refused by recipient quotas (for admin monitoring).
+     */
+    public long getRejectedCount() {
+        return messageStore.rejectedCount();
+    }
+    
+    /**
+     * Current epoch of the store's sequence numbers; receive cursors from another epoch are stale.
+     */
+    public long getEpoch() {
+        return messageStore.epoch();
+    }
+    
+    /**
+     * Reset the fields only the relay may set on a packet taken from a client. A forged
+     * {@code groupId} would otherwise have the packet stored against another group's shared
+     * payload; only {@link #storeGroupMessage} sets the group fields.
+     */
+    private static void clearRelayFields(MessagePacket packet) {
+        packet.setGroupId(null);
+        packet.setKeyWrap(null);
+        packet.setSeq(0);
+        packet.setExpiresAt(0);
+    }
+    
+    /**
+     * Set when a queued packet expires: the requested lifetime capped at the maximum,
+     * or the default lifetime when none was requested.
+     */
+    private void stampExpiry(MessagePacket packet, Long ttlSeconds) {
+        RelayProperties.Retention retention = relayProperties.getRetention();
+        Duration ttl = ttlSeconds != null && ttlSeconds > 0 ? Duration.ofSeconds(ttlSeconds) : retention.getDefaultTtl();
+        if (ttl.compareTo(retention.getMaxTtl()) > 0) {
+            ttl = retention.getMaxTtl();
+        }
+        packet.setExpiresAt(ttl.isZero() ? 0 : System.currentTimeMillis() + ttl.toMillis());
+    }
+    
+    private String dilithiumKeyOf(String username) {
+        PublicKeySet keys = userService.getPublicKeys(username);
+        return keys != null ? keys.getDilithiumPublicKey() : null;
+    }
+    
+    /**
+     * The check for a handshake's signature, or null if the handshake JSON is malformed.
+     * The signed text is the client's {@code JSON.stringify} of the ephemeral X25519 key,
+     * Kyber ciphertext and timestamp, in that order.
+     */
+    private SignatureCheck handshakeSignatureCheck(MessagePacket packet, String publicKey) {
+        try {
+            JsonNode handshake = objectMapper.readTree(packet.getEncryptedContent());
+            JsonNode x25519 = handshake.path("ephemeralX25519PublicKey");
+            JsonNode kyber = handshake.path("kyberCiphertext");
+            JsonNode timestamp = handshake.path("timestamp");
+            JsonNode signature = handshake.path("signature");
+            if (!x25519.isTextual() || !kyber.isTextual() || !timestamp.isNumber() || !signature.isTextual()) {
+                return null;
+            }
+            
+            ObjectNode signed = objectMapper.createObjectNode();
+            signed.set("ephemeralX25519PublicKey", x25519);
+            signed.set("kyberCiphertext", kyber);
+            signed.set("timestamp", timestamp);
+            return new SignatureCheck(objectMapper.writeValueAsString(signed), signature.asText(), publicKey);
+        } catch (JsonProcessingException | IllegalArgumentException e) {
+            return null;
+        }
     }
 }
@@ -0,0 +1,266 @@
+package com.spruce.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spruce.config.RelayProperties;
+import com.spruce.model.DeliveryChannel;
+import com.spruce.model.MessagePacket;
+import com.spruce.store.MessageStore;
+import jakarta.annotation.PreDestroy;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Service;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketSession;
+import org.springframework.web.socket.handler.ConcurrentWebSocketSessionDecorator;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Registry of online users' WebSocket sessions.
+ *
+ * Pushed packets are copies of packets already in the recipient's queue, carrying their
+ * seq: the queue only advances when the client acknowledges them, so a packet pushed into
+ * a dropped socket is still there for the next session or a long-poll. Each session pushes
+ * at most {@code window} seqs past its last acknowledgement, and a new session starts by
+ * replaying everything still queued. Pushes run on "push-delivery" threads, never on the
+ * sender's request thread.
+ */
+@Service
+@Slf4j
+public class PushService {
+
+    private static final int SEND_TIME_LIMIT_MS = 5_000;
+    private static final int SEND_BUFFER_LIMIT = 512 * 1024;
+    private static final int READ_BATCH = 64;
+
+    private final ObjectMapper objectMapper;
+    private final MessageStore messageStore;
+    private final int window;
+    private final ExecutorService deliveryExecutor;
+
+    // One session per authenticated user; a newer login replaces the older session
+    private final Map<String, PushSession> sessions = new ConcurrentHashMap<>();
+
+    public PushService(ObjectMapper objectMapper, MessageStore messageStore, RelayProperties relayProperties) {
+        this.objectMapper = objectMapper;
+        this.messageStore = messageStore;
+        RelayProperties.Push push = relayProperties.getPush();
+        this.window = Math.max(1, push.getWindow());
+        AtomicInteger threadNumber = new AtomicInteger();
+        this.deliveryExecutor = Executors.newFixedThreadPool(Math.max(1, push.getDeliveryThreads()), task -> {
+            Thread thread = new Thread(task, "push-delivery-" + threadNumber.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        deliveryExecutor.shutdownNow();
+    }
+
+    /**
+     * Bind a session to a user, closing any session it replaces. Nothing is pushed to it
+     * until {@link #replay}.
+     */
+    public void register(String username, WebSocketSession session) {
+        PushSession pushSession = new PushSession(new ConcurrentWebSocketSessionDecorator(session, SEND_TIME_LIMIT_MS, SEND_BUFFER_LIMIT));
+        PushSession previous = sessions.put(username, pushSession);
+        if (previous != null && !previous.session.getId().equals(session.getId())) {
+            try {
+                previous.session.close();
+            } catch (IOException e) {
+                log.debug("Failed to close replaced session for {}", username, e);
+            }
+        }
+    }
+
+    /**
+     * Start pushing everything still queued for a user to their session, on every channel.
+     */
+    public void replay(String username) {
+        for (DeliveryChannel channel : DeliveryChannel.values()) {
+            deliver(username, channel);
+        }
+    }
+
+    /**
+     * Remove a user's session, unless it has already been replaced by a newer one.
+     */
+    public void unregister(String username, WebSocketSession session) {
+        sessions.computeIfPresent(username, (k, current) -> current.session.getId().equals(session.getId()) ? null : current);
+    }
+
+    /**
+     * Push whatever has been queued for a user on a channel since the last push. Returns at
+     * once; the packets are read from the store and sent on a delivery thread.
+     *
+     * @return true if the user has an open session the packets will be pushed to
+     */
+    public boolean deliver(String username, DeliveryChannel channel) {
+        PushSession pushSession = sessions.get(username);
+        if (pushSession == null || !pushSession.session.isOpen()) {
+            return false;
+        }
+        schedule(username, pushSession, channel);
+        return true;
+    }
+
+    /**
+     * Record that a user acknowledged packets up to {@code upToSeq}, opening the window for
+     * the packets after them.
+     */
+    public void acknowledged(String username, DeliveryChannel channel, long upToSeq) {
+        PushSession pushSession = sessions.get(username);
+        if (pushSession == null) {
+            return;
+        }
+        pushSession.cursors[channel.ordinal()].acked.accumulateAndGet(upToSeq, Math::max);
+        schedule(username, pushSession, channel);
+    }
+
+    /**
+     * Forget the unacknowledged pushes on a channel, e.g. after its queue was cleared and no
+     * acknowledgement for them will come.
+     */
+    public void released(String username, DeliveryChannel channel) {
+        PushSession pushSession = sessions.get(username);
+        if (pushSession != null) {
+            Cursor cursor = pushSession.cursors[channel.ordinal()];
+            cursor.acked.accumulateAndGet(cursor.sent, Math::max);
+        }
+    }
+
+    /**
+     * {@link #released} for every session and channel.
+     */
+    public void releasedAll() {
+        sessions.forEach((username, pushSession) -> {
+            for (DeliveryChannel channel : DeliveryChannel.values()) {
+                released(username, channel);
+            }
+        });
+    }
+
+    /**
+     * Send a control frame (replies, errors) to a user's open session.
+     *
+     * @return true if the frame was handed to an open session
+     */
+    public boolean push(String username, String type, Object payload) {
+        PushSession pushSession = sessions.get(username);
+        if (pushSession == null || !pushSession.session.isOpen()) {
+            return false;
+        }
+        return send(username, pushSession, type, payload);
+    }
+
+    public boolean isOnline(String username) {
+        PushSession pushSession = sessions.get(username);
+        return pushSession != null && pushSession.session.isOpen();
+    }
+
+    /**
+     * Number of users with an open push session (for admin monitoring).
+     */
+    public int getOnlineCount() {
+        return sessions.size();
+    }
+
+    /**
+     * Run a delivery for the channel unless one is already running, in which case that one
+     * goes round again.
+     */
+    private void schedule(String username, PushSession pushSession, DeliveryChannel channel) {
+        Cursor cursor = pushSession.cursors[channel.ordinal()];
+        if (cursor.pending.getAndIncrement() != 0) {
+            return;
+        }
+        try {
+            deliveryExecutor.execute(() -> {
+                int missed = 1;
+                do {
+                    pushQueued(username, pushSession, channel, cursor);
+                    missed = cursor.pending.addAndGet(-missed);
+                } while (missed != 0);
+            });
+        } catch (RejectedExecutionException e) {
+            // Shutting down; the packets stay queued
+            cursor.pending.set(0);
+        }
+    }
+
+    private void pushQueued(String username, PushSession pushSession, DeliveryChannel channel, Cursor cursor) {
+        String type = channel == DeliveryChannel.MESSAGES ? "message" : "handshake";
+        try {
+            while (pushSession.session.isOpen() && sessions.get(username) == pushSession) {
+                long acked = cursor.acked.get();
+                // Nothing acknowledged yet: the window starts at the first packet pushed
+                int room = (int) Math.min(READ_BATCH, acked < 0 ? window : window - (cursor.sent - acked));
+                if (room <= 0) {
+                    return;
+                }
+                List<MessagePacket> packets = messageStore.readAfter(channel, username, cursor.sent, room);
+                if (packets.isEmpty()) {
+                    return;
+                }
+                cursor.acked.compareAndSet(-1, packets.get(0).getSeq() - 1);
+                for (MessagePacket packet : packets) {
+                    if (!send(username, pushSession, type, packet)) {
+                        return;
+                    }
+                    cursor.sent = packet.getSeq();
+                }
+            }
+        } catch (RuntimeException e) {
+            log.warn("Push of queued {} to {} failed: {}", type, username, e.getMessage());
+        }
+    }
+
+    private boolean send(String username, PushSession pushSession, String type, Object payload) {
+        try {
+            String json = objectMapper.writeValueAsString(Map.of("type", type, "payload", payload));
+            pushSession.session.sendMessage(new TextMessage(json));
+            return true;
+        } catch (Exception e) {
+            // Anything unacknowledged is still queued for the next session
+            log.warn("Push to {} failed, closing session: {}", username, e.getMessage());
+            unregister(username, pushSession.session);
+            try {
+                pushSession.session.close();
+            } catch (IOException ignored) {
+                // Already broken
+            }
+            return false;
+        }
+    }
+
+    private static final class PushSession {
+        private final WebSocketSession session;
+        private final Cursor[] cursors = new Cursor[DeliveryChannel.values().length];
+
+        private PushSession(WebSocketSession session) {
+            this.session = session;
+            for (int i = 0; i < cursors.length; i++) {
+                cursors[i] = new Cursor();
+            }
+        }
+    }
+
+    /**
+     * How far one channel has been pushed and acknowledged in a session.
+     */
+    private static final class Cursor {
+        // Deliveries requested while one runs; only the thread that took it from 0 delivers
+        private final AtomicInteger pending = new AtomicInteger();
+        private final AtomicLong acked = new AtomicLong(-1);
+        private volatile long sent;
+    }
+}
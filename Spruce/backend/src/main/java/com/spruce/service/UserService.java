@@ -1,11 +1,13 @@
 package com.spruce.service;
 
+import com.spruce.crypto.PublicKeyCache;
 import com.spruce.model.User;
 import com.spruce.repository.UserRepository;
 import com.spruce.dto.PublicKeySet;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
 
+import java.util.Map;
 import java.util.Optional;
 
 @Service
@@ -17,8 +19,14 @@ public class UserService {
     @Autowired
     private LogService logService;
 
+    @Autowired
+    private PublicKeyCache publicKeyCache;
+
+    @Autowired
+    private CryptoService cryptoService;
+
     public User registerUser(String username, String password, String x25519PublicKey, String kyberPublicKey, String dilithiumPublicKey) {
-        logService.logMessage("USER", "Registering user: " + username);
+        logService.logMessage("USER", "Registering user: {}", username);
         
         User user = new User();
         user.setUsername(username);
@@ -28,15 +36,54 @@ public class UserService {
         user.setDilithiumPublicKey(dilithiumPublicKey);
         
         User savedUser = userRepository.save(user);
-        logService.logMessage("USER", "User registered successfully: " + username);
+        publicKeyCache.invalidate(username);
+        logService.logMessage("USER", "User registered successfully: {}", username);
         return savedUser;
     }
 
+    /**
+     * Replace a user's public keys. Cached keys and established session keys are dropped,
+     * so peers fetch the new keys and handshake again.
+     *
+     * @return false if there is no such user
+     */
+    public boolean rotateKeys(String username, String x25519PublicKey, String kyberPublicKey, String dilithiumPublicKey) {
+        Optional<User> user = userRepository.findByUsername(username);
+        if (user.isEmpty()) {
+            return false;
+        }
+        user.get().setX25519PublicKey(x25519PublicKey);
+        user.get().setKyberPublicKey(kyberPublicKey);
+        user.get().setDilithiumPublicKey(dilithiumPublicKey);
+        userRepository.save(user.get());
+
+        publicKeyCache.invalidate(username);
+        int closed = cryptoService.closeSessions(username);
+        logService.logMessage("USER", "Keys rotated for: {}, sessions closed: {}", username, closed);
+        return true;
+    }
+
     public Optional<User> findByUsername(String username) {
         return userRepository.findByUsername(username);
     }
 
     public PublicKeySet getPublicKeys(String username) {
+        PublicKeyCache.Entry entry = getPublicKeyEntry(username);
+        return entry != null ? entry.getKeys() : null;
+    }
+
+    /**
+     * A user's public keys with their ETag, from the cache when they have been looked up before.
+     */
+    public PublicKeyCache.Entry getPublicKeyEntry(String username) {
+        return publicKeyCache.get(username, this::loadPublicKeys);
+    }
+
+    public Map<String, Object> getPublicKeyCacheStats() {
+        return publicKeyCache.getStats();
+    }
+
+    private PublicKeySet loadPublicKeys(String username) {
         Optional<User> user = userRepository.findByUsername(username);
         if (user.isPresent()) {
             return new PublicKeySet(
@@ -54,10 +101,10 @@ public class UserService {
         if (user.isPresent()) {
             // In production, use proper password hashing
             boolean authenticated = user.get().getPasswordHash().equals(password);
-            logService.logMessage("USER", "Authentication " + (authenticated ? "successful" : "failed") + " for: " + username);
+            logService.logMessage("USER", "Authentication {} for: {}", authenticated ? "successful" : "failed", username);
             return authenticated;
         }
-        logService.logMessage("USER", "User not found: " + username);
+        logService.logMessage("USER", "User not found: {}", username);
         return false;
     }
 
@@ -0,0 +1,217 @@
+package com.spruce.store;
+
+import com.spruce.config.RelayProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.Value;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.channels.FileChannel;
+import java.nio.channels.ReadableByteChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.regex.Pattern;
+
+/**
+ * File-backed store for attachment blobs, one file per blob.
+ *
+ * Blobs move between channels and files with {@link FileChannel#transferFrom} and
+ * {@link FileChannel#transferTo} in bounded steps, so a transfer never holds more than
+ * a small buffer, however large the blob. An upload is written to a {@code .part} file
+ * and renamed once complete; readers only ever see whole blobs. Blobs expire
+ * {@code ttl} after upload.
+ */
+@Component
+@Slf4j
+public class BlobStore {
+
+    private static final String BLOB_SUFFIX = ".blob";
+    private static final String PART_SUFFIX = ".part";
+    private static final long TRANSFER_STEP = 1024 * 1024;
+    private static final Pattern ID = Pattern.compile("[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}");
+
+    /**
+     * A stored blob.
+     */
+    @Value
+    public static class Blob {
+        String id;
+        long size;
+    }
+
+    private final RelayProperties.Attachments config;
+    private final Path directory;
+
+    private final LongAdder stored = new LongAdder();
+    private final LongAdder storedBytes = new LongAdder();
+    private final LongAdder served = new LongAdder();
+    private final LongAdder servedBytes = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private final LongAdder expired = new LongAdder();
+
+    private volatile boolean running;
+    private Thread sweeper;
+
+    public BlobStore(RelayProperties relayProperties) {
+        this.config = relayProperties.getAttachments();
+        this.directory = Paths.get(config.getDirectory());
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Files.createDirectories(directory);
+        // Uploads interrupted by the last shutdown can never complete
+        try (DirectoryStream<Path> parts = Files.newDirectoryStream(directory, "*" + PART_SUFFIX)) {
+            for (Path part : parts) {
+                Files.deleteIfExists(part);
+            }
+        }
+        running = true;
+        sweeper = new Thread(this::sweepLoop, "blob-expiry-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+
+    @PreDestroy
+    public void stop() {
+        running = false;
+        if (sweeper != null) {
+            sweeper.interrupt();
+        }
+    }
+
+    public long getMaxBytes() {
+        return config.getMaxSizeMb() * 1024 * 1024;
+    }
+
+    /**
+     * Store everything {@code in} yields as a new blob.
+     *
+     * @throws BlobTooLargeException if the content exceeds the size limit; nothing is stored
+     */
+    public Blob put(ReadableByteChannel in) throws IOException {
+        String id = UUID.randomUUID().toString();
+        Path part = directory.resolve(id + PART_SUFFIX);
+        long maxBytes = getMaxBytes();
+        long size = 0;
+        boolean complete = false;
+        try (FileChannel out = FileChannel.open(part, StandardOpenOption.CREATE_NEW, StandardOpenOption.WRITE)) {
+            while (true) {
+                // Ask for one byte past the limit so an oversized upload is detected
+                long transferred = out.transferFrom(in, size, Math.min(TRANSFER_STEP, maxBytes + 1 - size));
+                if (transferred == 0) {
+                    break;
+                }
+                size += transferred;
+                if (size > maxBytes) {
+                    rejected.increment();
+                    throw new BlobTooLargeException(maxBytes);
+                }
+            }
+            complete = true;
+        } finally {
+            if (!complete) {
+                Files.deleteIfExists(part);
+            }
+        }
+        Files.move(part, blobPath(id), StandardCopyOption.ATOMIC_MOVE);
+        stored.increment();
+        storedBytes.add(size);
+        return new Blob(id, size);
+    }
+
+    /**
+     * Open a blob for reading.
+     *
+     * @throws NoSuchFileException if there is no such blob
+     */
+    public FileChannel open(String id) throws IOException {
+        return FileChannel.open(blobPath(id), StandardOpenOption.READ);
+    }
+
+    /**
+     * Copy a whole blob opened with {@link #open} to {@code out}.
+     *
+     * @return bytes copied
+     */
+    public long transferTo(FileChannel blob, WritableByteChannel out) throws IOException {
+        long size = blob.size();
+        long position = 0;
+        while (position < size) {
+            position += blob.transferTo(position, Math.min(TRANSFER_STEP, size - position), out);
+        }
+        served.increment();
+        servedBytes.add(size);
+        return size;
+    }
+
+    /**
+     * @return false if there was no such blob
+     */
+    public boolean delete(String id) throws IOException {
+        return ID.matcher(id).matches() && Files.deleteIfExists(blobPath(id));
+    }
+
+    /**
+     * Blob counts and transfer totals (for admin monitoring).
+     */
+    public Map<String, Object> getStats() {
+        Map<String, Object> stats = new HashMap<>();
+        stats.put("stored", stored.sum());
+        stats.put("storedBytes", storedBytes.sum());
+        stats.put("served", served.sum());
+        stats.put("servedBytes", servedBytes.sum());
+        stats.put("rejected", rejected.sum());
+        stats.put("expired", expired.sum());
+        stats.put("maxBytes", getMaxBytes());
+        return stats;
+    }
+
+    private Path blobPath(String id) throws NoSuchFileException {
+        // Ids become file names, so nothing but our own UUIDs may reach the file system
+        if (!ID.matcher(id).matches()) {
+            throw new NoSuchFileException(id);
+        }
+        return directory.resolve(id + BLOB_SUFFIX);
+    }
+
+    private void sweepLoop() {
+        while (running) {
+            try {
+                Thread.sleep(config.getSweepIntervalMs());
+                deleteExpired(System.currentTimeMillis() - config.getTtl().toMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (IOException | RuntimeException e) {
+                log.error("Attachment expiry sweep failed", e);
+            }
+        }
+    }
+
+    private void deleteExpired(long cutoff) throws IOException {
+        try (DirectoryStream<Path> blobs = Files.newDirectoryStream(directory, "*" + BLOB_SUFFIX)) {
+            for (Path blob : blobs) {
+                try {
+                    if (Files.getLastModifiedTime(blob).toMillis() < cutoff && Files.deleteIfExists(blob)) {
+                        expired.increment();
+                    }
+                } catch (NoSuchFileException e) {
+                    // Deleted by its recipient meanwhile
+                }
+            }
+        }
+    }
+}
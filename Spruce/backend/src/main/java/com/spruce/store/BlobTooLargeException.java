@@ -0,0 +1,11 @@
+package com.spruce.store;
+
+/**
+ * Thrown when an upload to the {@link BlobStore} exceeds the attachment size limit.
+ */
+public class BlobTooLargeException extends RuntimeException {
+    
+    public BlobTooLargeException(long maxBytes) {
+        super(String.format("Attachment exceeds the size limit of %d bytes", maxBytes));
+    }
+}
@@ -0,0 +1,671 @@
+package com.spruce.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.spruce.config.RelayProperties;
+import com.spruce.model.DeliveryChannel;
+import com.spruce.model.MessagePacket;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Durable, segmented, append-only log of relayed packets.
+ *
+ * Packets are appended to memory-mapped segment files and made durable by a single
+ * flusher thread (group commit: every append that lands while a force is in progress
+ * rides on the next one). Acknowledgements are logged as cursor records; each segment
+ * counts its unacknowledged packets through a per-recipient index of seq to location,
+ * and a sealed segment is deleted once that count drops to zero. Before a segment is
+ * sealed, all cursors are written to a separate checkpoint file (replaced atomically),
+ * so deleting a segment never loses an ack however many recipients there are.
+ *
+ * A recipient's cursor is retired at a roll once none of its packets are unacknowledged
+ * and no remaining segment holds any of them: nothing on disk needs it any more. Instead
+ * of one entry per retired recipient the checkpoint keeps a single floor, the highest seq
+ * any retired cursor reached, and queues created after a restart start above it, so a
+ * recipient's sequence never goes back to a seq a client may still hold as its cursor.
+ *
+ * Group messages write their shared ciphertext once as a payload record; each member
+ * packet is logged without it and holds a reference. The payload record stays live
+ * until the last referencing packet has been acknowledged.
+ */
+@Component
+@RequiredArgsConstructor
+@Slf4j
+public class CommitLog {
+
+    private static final byte RECORD_PACKET = 1;
+    private static final byte RECORD_ACK = 2;
+    private static final byte RECORD_PAYLOAD = 3;
+
+    private static final String CHECKPOINT_FILE = "cursors.ckp";
+    private static final String EPOCH_FILE = "epoch";
+
+    private final RelayProperties relayProperties;
+    private final ObjectMapper objectMapper;
+
+    private final NavigableMap<Long, LogSegment> segments = new ConcurrentSkipListMap<>();
+    // Per recipient key: seq -> location (segment id << 32 | offset) of each unacknowledged packet
+    private final Map<String, NavigableMap<Long, Long>> index = new ConcurrentHashMap<>();
+    private final Map<String, Long> ackCursors = new ConcurrentHashMap<>();
+    // Per recipient key: id of the newest segment holding one of its packets
+    private final Map<String, Long> packetSegments = new ConcurrentHashMap<>();
+    // Cursors retired at the last roll, kept one more generation for appends that raced the retirement
+    private volatile Map<String, Long> retiredCursors = Map.of();
+    // Highest seq of any retired cursor
+    private final AtomicLong seqFloor = new AtomicLong();
+    // Group payloads by group id, and the group each unacknowledged member packet (by location) refers to
+    private final Map<String, PayloadRef> payloads = new ConcurrentHashMap<>();
+    private final Map<Long, String> packetGroups = new ConcurrentHashMap<>();
+
+    private final Object writeLock = new Object();
+    private final Object flushLock = new Object();
+
+    private Path directory;
+    private int segmentSize;
+    private long epoch;
+    private volatile LogSegment active;
+    private volatile long writtenLocation;
+    private volatile long flushedLocation;
+    private volatile boolean running;
+    private Thread flusher;
+
+    public boolean isEnabled() {
+        return relayProperties.getCommitLog().isEnabled();
+    }
+
+    /**
+     * Open the log, replay every segment and start the flusher.
+     *
+     * @return the unacknowledged packets per recipient queue, in sequence order
+     */
+    public List<RecoveredQueue> recover() {
+        if (!isEnabled()) {
+            return List.of();
+        }
+        RelayProperties.CommitLog config = relayProperties.getCommitLog();
+        directory = Paths.get(config.getDirectory());
+        segmentSize = config.getSegmentSizeMb() * 1024 * 1024;
+
+        long started = System.nanoTime();
+        Map<String, TreeMap<Long, MessagePacket>> pending = new TreeMap<>();
+        Map<String, String> payloadContents = new HashMap<>();
+        try {
+            Files.createDirectories(directory);
+            readEpoch();
+            readCheckpoint();
+            List<Path> files;
+            try (Stream<Path> listing = Files.list(directory)) {
+                files = listing.filter(LogSegment::isSegmentFile).sorted().toList();
+            }
+            for (Path file : files) {
+                LogSegment segment = LogSegment.open(file);
+                segments.put(segment.id, segment);
+                replay(segment, pending, payloadContents);
+            }
+            // Payloads whose members were all acknowledged during replay
+            payloads.forEach((groupId, ref) -> {
+                if (ref.refs.get() <= 0) {
+                    dropPayload(groupId, ref);
+                }
+            });
+            if (segments.isEmpty()) {
+                active = LogSegment.create(directory, 0, segmentSize);
+                segments.put(active.id, active);
+            } else {
+                active = segments.lastEntry().getValue();
+            }
+            writtenLocation = location(active.id, active.getWriteOffset());
+            flushedLocation = writtenLocation;
+            deleteReleasedSegments();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to open commit log in " + directory, e);
+        }
+
+        List<RecoveredQueue> recovered = new ArrayList<>();
+        int packets = 0;
+        for (Map.Entry<String, TreeMap<Long, MessagePacket>> entry : pending.entrySet()) {
+            String key = entry.getKey();
+            DeliveryChannel channel = DeliveryChannel.valueOf(key.substring(0, key.indexOf('/')));
+            String recipient = key.substring(key.indexOf('/') + 1);
+            recovered.add(new RecoveredQueue(channel, recipient, ackCursors.getOrDefault(key, 0L),
+                new ArrayList<>(entry.getValue().values())));
+            packets += entry.getValue().size();
+        }
+        // Recipients with only an ack cursor still need their sequence numbers to resume
+        for (Map.Entry<String, Long> cursor : ackCursors.entrySet()) {
+            if (!pending.containsKey(cursor.getKey())) {
+                String key = cursor.getKey();
+                recovered.add(new RecoveredQueue(DeliveryChannel.valueOf(key.substring(0, key.indexOf('/'))),
+                    key.substring(key.indexOf('/') + 1), cursor.getValue(), List.of()));
+            }
+        }
+
+        running = true;
+        flusher = new Thread(this::flushLoop, "commit-log-flusher");
+        flusher.setDaemon(true);
+        flusher.start();
+
+        log.info("Commit log recovered {} packets from {} segments in {} ms", packets, segments.size(),
+            (System.nanoTime() - started) / 1_000_000);
+        return recovered;
+    }
+
+    /**
+     * Append a queued packet and, in sync mode, wait until it is on disk. Runs before the
+     * send is acknowledged, so once the log is closed appends fail rather than go unlogged.
+     */
+    public void append(DeliveryChannel channel, MessagePacket packet) {
+        if (!running) {
+            if (isEnabled() && flusher != null) {
+                throw new IllegalStateException("Commit log is closed");
+            }
+            return;
+        }
+        String groupId = packet.getGroupId();
+        // A member whose payload is no longer live is logged in full
+        boolean shared = groupId != null && retainPayload(groupId);
+        byte[] json;
+        try {
+            if (!shared) {
+                json = objectMapper.writeValueAsBytes(packet);
+            } else {
+                // The ciphertext already lives in the group's payload record
+                ObjectNode node = objectMapper.valueToTree(packet);
+                node.remove("encryptedContent");
+                json = objectMapper.writeValueAsBytes(node);
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to serialize packet for commit log", e);
+        }
+        byte[] body = new byte[json.length + 1];
+        body[0] = (byte) channel.ordinal();
+        System.arraycopy(json, 0, body, 1, json.length);
+
+        String key = key(channel, packet.getRecipient());
+        long location;
+        synchronized (writeLock) {
+            location = write(RECORD_PACKET, body);
+            segments.get(segmentId(location)).liveRecords.incrementAndGet();
+            if (shared) {
+                packetGroups.put(location, groupId);
+            }
+            index.computeIfAbsent(key, k -> new ConcurrentSkipListMap<>()).put(packet.getSeq(), location);
+            packetSegments.put(key, segmentId(location));
+        }
+        // The recipient may already have acked this seq between the queue append and now
+        Long cursor = ackCursors.get(key);
+        if (cursor == null) {
+            cursor = retiredCursors.get(key);
+            if (cursor != null && cursor >= packet.getSeq()) {
+                // The packet is on disk again, so the checkpoint needs its cursor again
+                ackCursors.merge(key, cursor, Math::max);
+            }
+        }
+        if (cursor != null && cursor >= packet.getSeq()) {
+            release(key, cursor);
+        }
+
+        if (relayProperties.getCommitLog().isSync()) {
+            awaitFlushed(location);
+        }
+    }
+
+    /**
+     * Log the shared ciphertext of a group message once, before its member packets.
+     * The caller holds a reference until {@link #releasePayload} so the payload
+     * survives members being acknowledged while the fan-out is still in progress.
+     */
+    public void appendPayload(String groupId, String content) {
+        if (!running) {
+            return;
+        }
+        byte[] groupBytes = groupId.getBytes(StandardCharsets.UTF_8);
+        byte[] contentBytes = content.getBytes(StandardCharsets.UTF_8);
+        byte[] body = ByteBuffer.allocate(2 + groupBytes.length + contentBytes.length)
+            .putShort((short) groupBytes.length)
+            .put(groupBytes)
+            .put(contentBytes)
+            .array();
+        synchronized (writeLock) {
+            long location = write(RECORD_PAYLOAD, body);
+            segments.get(segmentId(location)).liveRecords.incrementAndGet();
+            payloads.put(groupId, new PayloadRef(location, 1));
+        }
+        // Member packets wait for their own flush, which covers this record too
+    }
+
+    /**
+     * Drop one reference to a group payload, releasing its record once none are left.
+     */
+    public void releasePayload(String groupId) {
+        if (!running) {
+            return;
+        }
+        PayloadRef ref = payloads.get(groupId);
+        if (ref != null && ref.refs.decrementAndGet() <= 0) {
+            dropPayload(groupId, ref);
+            deleteReleasedSegments();
+        }
+    }
+
+    /**
+     * Record that a recipient queue has been trimmed up to a sequence number.
+     * Acks are not forced to disk; losing one only means redelivery after a crash.
+     */
+    public void acknowledge(DeliveryChannel channel, String recipient, long upToSeq) {
+        if (!running) {
+            return;
+        }
+        String key = key(channel, recipient);
+        if (ackCursors.getOrDefault(key, 0L) >= upToSeq) {
+            return;
+        }
+        ackCursors.merge(key, upToSeq, Math::max);
+
+        synchronized (writeLock) {
+            write(RECORD_ACK, ackBody(key, upToSeq));
+        }
+        release(key, upToSeq);
+        deleteReleasedSegments();
+    }
+
+    /**
+     * Sequence number a queue with no recovered state starts after: at least the last seq of
+     * every recipient whose cursor has been retired.
+     */
+    public long getSeqFloor() {
+        return seqFloor.get();
+    }
+
+    /**
+     * Created with the log directory, so it changes only when the log, and with it every
+     * recipient's sequence, starts over.
+     */
+    public long getEpoch() {
+        return epoch;
+    }
+
+    public int getSegmentCount() {
+        return segments.size();
+    }
+
+    @PreDestroy
+    public void close() {
+        if (!running) {
+            return;
+        }
+        running = false;
+        synchronized (flushLock) {
+            flushLock.notifyAll();
+        }
+        try {
+            flusher.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        synchronized (segments) {
+            active.flush();
+            segments.values().forEach(LogSegment::close);
+        }
+    }
+
+    // Caller holds writeLock
+    private long write(byte type, byte[] body) {
+        if (LogSegment.HEADER_SIZE + body.length > segmentSize) {
+            throw new IllegalArgumentException("Record of " + body.length + " bytes exceeds the commit log segment size");
+        }
+        if (!active.hasRoom(body.length)) {
+            roll();
+        }
+        int offset = active.append(type, body);
+        long location = location(active.id, offset);
+        writtenLocation = location(active.id, active.getWriteOffset());
+        synchronized (flushLock) {
+            flushLock.notifyAll();
+        }
+        return location;
+    }
+
+    // Caller holds writeLock
+    private void roll() {
+        LogSegment sealed = active;
+        synchronized (segments) {
+            sealed.flush();
+        }
+        try {
+            retireCursors();
+            // Durable before the sealed segment can be deleted, so its ack records are never needed again
+            writeCheckpoint();
+            active = LogSegment.create(directory, sealed.id + 1, segmentSize);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to roll commit log segment", e);
+        }
+        segments.put(active.id, active);
+        flushedLocation = location(active.id, 0);
+    }
+
+    /**
+     * Drop the cursors of recipients whose packets are all acknowledged and whose segments
+     * are all gone, and every empty index entry. Caller holds writeLock, so no packet can
+     * be indexed meanwhile.
+     */
+    private void retireCursors() {
+        index.values().removeIf(Map::isEmpty);
+        Map<String, Long> retired = new HashMap<>();
+        for (Map.Entry<String, Long> cursor : ackCursors.entrySet()) {
+            String key = cursor.getKey();
+            NavigableMap<Long, Long> entries = index.get(key);
+            Long lastSegment = packetSegments.get(key);
+            boolean acknowledged = entries == null || entries.isEmpty();
+            boolean unreferenced = lastSegment == null || segments.headMap(lastSegment, true).isEmpty();
+            if (acknowledged && unreferenced && ackCursors.remove(key, cursor.getValue())) {
+                packetSegments.remove(key);
+                retired.put(key, cursor.getValue());
+                seqFloor.accumulateAndGet(cursor.getValue(), Math::max);
+            }
+        }
+        retiredCursors = retired;
+    }
+
+    /**
+     * Replace the checkpoint with the current cursors and the seq floor:
+     * {@code [int crc32c][int count]} then per cursor {@code [short keyLength][key][long upToSeq]},
+     * then {@code [long seqFloor]}.
+     */
+    private void writeCheckpoint() throws IOException {
+        List<byte[]> bodies = new ArrayList<>(ackCursors.size());
+        int length = 16;
+        for (Map.Entry<String, Long> cursor : ackCursors.entrySet()) {
+            byte[] body = ackBody(cursor.getKey(), cursor.getValue());
+            bodies.add(body);
+            length += body.length;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+        buffer.position(4);
+        buffer.putInt(bodies.size());
+        bodies.forEach(buffer::put);
+        buffer.putLong(seqFloor.get());
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 4, length - 4);
+        buffer.putInt(0, (int) crc.getValue());
+        buffer.flip();
+
+        Path temp = directory.resolve(CHECKPOINT_FILE + ".tmp");
+        try (FileChannel channel = FileChannel.open(temp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            channel.force(true);
+        }
+        Files.move(temp, directory.resolve(CHECKPOINT_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void readCheckpoint() throws IOException {
+        Path file = directory.resolve(CHECKPOINT_FILE);
+        if (!Files.exists(file)) {
+            return;
+        }
+        ByteBuffer buffer = ByteBuffer.wrap(Files.readAllBytes(file));
+        CRC32C crc = new CRC32C();
+        crc.update(buffer.array(), 4, Math.max(0, buffer.limit() - 4));
+        if (buffer.limit() < 8 || buffer.getInt(0) != (int) crc.getValue()) {
+            // Replaced atomically, so this is damage, not a torn write; acked packets may be redelivered
+            log.warn("Ignoring corrupt commit log checkpoint {}", file);
+            return;
+        }
+        buffer.position(4);
+        int count = buffer.getInt();
+        for (int i = 0; i < count; i++) {
+            byte[] keyBytes = new byte[buffer.getShort()];
+            buffer.get(keyBytes);
+            ackCursors.merge(new String(keyBytes, StandardCharsets.UTF_8), buffer.getLong(), Math::max);
+        }
+        // Checkpoints written before the floor existed end here
+        if (buffer.remaining() >= 8) {
+            seqFloor.accumulateAndGet(buffer.getLong(), Math::max);
+        }
+    }
+
+    private void readEpoch() throws IOException {
+        Path file = directory.resolve(EPOCH_FILE);
+        if (Files.exists(file)) {
+            epoch = Long.parseLong(Files.readString(file).trim());
+            return;
+        }
+        epoch = System.currentTimeMillis();
+        Path temp = directory.resolve(EPOCH_FILE + ".tmp");
+        Files.writeString(temp, Long.toString(epoch));
+        Files.move(temp, file, StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    private void flushLoop() {
+        while (running) {
+            synchronized (flushLock) {
+                while (running && flushedLocation >= writtenLocation) {
+                    try {
+                        flushLock.wait();
+                    } catch (InterruptedException e) {
+                        Thread.currentThread().interrupt();
+                        return;
+                    }
+                }
+            }
+            long durable;
+            synchronized (segments) {
+                LogSegment segment = active;
+                durable = location(segment.id, segment.flush());
+            }
+            synchronized (flushLock) {
+                flushedLocation = Math.max(flushedLocation, durable);
+                flushLock.notifyAll();
+            }
+        }
+    }
+
+    private void awaitFlushed(long location) {
+        synchronized (flushLock) {
+            while (running && flushedLocation <= location) {
+                try {
+                    flushLock.wait();
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                    throw new IllegalStateException("Interrupted while waiting for commit log flush", e);
+                }
+            }
+        }
+    }
+
+    private void replay(LogSegment segment, Map<String, TreeMap<Long, MessagePacket>> pending,
+                        Map<String, String> payloadContents) throws IOException {
+        int offset = 0;
+        LogSegment.Record record;
+        while ((record = segment.read(offset)) != null) {
+            if (record.type == RECORD_PACKET) {
+                DeliveryChannel channel = DeliveryChannel.values()[record.body[0]];
+                MessagePacket packet = objectMapper.readValue(record.body, 1, record.body.length - 1, MessagePacket.class);
+                String key = key(channel, packet.getRecipient());
+                packetSegments.put(key, segment.id);
+                if (packet.getSeq() > ackCursors.getOrDefault(key, 0L)) {
+                    long location = location(segment.id, record.offset);
+                    String groupId = packet.getGroupId();
+                    if (groupId != null && packet.getEncryptedContent() == null && retainPayload(groupId)) {
+                        // Every member shares the one recovered String, as it did before the restart
+                        packet.setEncryptedContent(payloadContents.get(groupId));
+                        packetGroups.put(location, groupId);
+                    }
+                    pending.computeIfAbsent(key, k -> new TreeMap<>()).put(packet.getSeq(), packet);
+                    index.computeIfAbsent(key, k -> new ConcurrentSkipListMap<>()).put(packet.getSeq(), location);
+                    segment.liveRecords.incrementAndGet();
+                }
+            } else if (record.type == RECORD_PAYLOAD) {
+                ByteBuffer body = ByteBuffer.wrap(record.body);
+                byte[] groupBytes = new byte[body.getShort()];
+                body.get(groupBytes);
+                String groupId = new String(groupBytes, StandardCharsets.UTF_8);
+                payloadContents.put(groupId, new String(record.body, body.position(), body.remaining(), StandardCharsets.UTF_8));
+                payloads.put(groupId, new PayloadRef(location(segment.id, record.offset), 0));
+                segment.liveRecords.incrementAndGet();
+            } else if (record.type == RECORD_ACK) {
+                ByteBuffer body = ByteBuffer.wrap(record.body);
+                byte[] keyBytes = new byte[body.getShort()];
+                body.get(keyBytes);
+                String key = new String(keyBytes, StandardCharsets.UTF_8);
+                long upToSeq = body.getLong();
+                ackCursors.merge(key, upToSeq, Math::max);
+                TreeMap<Long, MessagePacket> packets = pending.get(key);
+                if (packets != null) {
+                    packets.headMap(upToSeq, true).clear();
+                }
+                release(key, upToSeq);
+            }
+            offset = record.nextOffset;
+        }
+        segment.resumeAt(offset);
+    }
+
+    /**
+     * Drop index entries up to a cursor and release their segments.
+     */
+    private void release(String key, long upToSeq) {
+        NavigableMap<Long, Long> entries = index.get(key);
+        if (entries == null) {
+            return;
+        }
+        Map.Entry<Long, Long> entry;
+        while ((entry = entries.firstEntry()) != null && entry.getKey() <= upToSeq) {
+            if (entries.remove(entry.getKey(), entry.getValue())) {
+                LogSegment segment = segments.get(segmentId(entry.getValue()));
+                if (segment != null) {
+                    segment.liveRecords.decrementAndGet();
+                }
+                String groupId = packetGroups.remove(entry.getValue());
+                if (groupId != null) {
+                    PayloadRef ref = payloads.get(groupId);
+                    // While replaying, later segments may still hold members of this group
+                    if (ref != null && ref.refs.decrementAndGet() <= 0 && running) {
+                        dropPayload(groupId, ref);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Take a reference to a live payload; fails once the last reference has been dropped.
+     * During replay payloads start unreferenced, so any count is accepted.
+     */
+    private boolean retainPayload(String groupId) {
+        PayloadRef ref = payloads.get(groupId);
+        if (ref == null) {
+            return false;
+        }
+        int refs;
+        do {
+            refs = ref.refs.get();
+            if (refs <= 0 && running) {
+                return false;
+            }
+        } while (!ref.refs.compareAndSet(refs, refs + 1));
+        return true;
+    }
+
+    private void dropPayload(String groupId, PayloadRef ref) {
+        if (payloads.remove(groupId, ref)) {
+            LogSegment segment = segments.get(segmentId(ref.location));
+            if (segment != null) {
+                segment.liveRecords.decrementAndGet();
+            }
+        }
+    }
+
+    private void deleteReleasedSegments() {
+        LogSegment current = active;
+        Collection<LogSegment> sealed = segments.headMap(current.id, false).values();
+        for (LogSegment segment : sealed) {
+            if (segment.liveRecords.get() <= 0) {
+                synchronized (segments) {
+                    if (segments.remove(segment.id, segment)) {
+                        segment.delete();
+                        log.debug("Deleted fully acknowledged commit log segment {}", segment.path);
+                    }
+                }
+            }
+        }
+    }
+
+    private static byte[] ackBody(String key, long upToSeq) {
+        byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+        return ByteBuffer.allocate(2 + keyBytes.length + 8)
+            .putShort((short) keyBytes.length)
+            .put(keyBytes)
+            .putLong(upToSeq)
+            .array();
+    }
+
+    private static String key(DeliveryChannel channel, String recipient) {
+        return channel.name() + "/" + recipient;
+    }
+
+    private static long location(long segmentId, int offset) {
+        return (segmentId << 32) | (offset & 0xFFFFFFFFL);
+    }
+
+    private static long segmentId(long location) {
+        return location >>> 32;
+    }
+
+    private static final class PayloadRef {
+        final long location;
+        final AtomicInteger refs;
+
+        PayloadRef(long location, int refs) {
+            this.location = location;
+            this.refs = new AtomicInteger(refs);
+        }
+    }
+
+    /**
+     * Unacknowledged packets for one recipient queue, as found on disk.
+     */
+    public static class RecoveredQueue {
+        public final DeliveryChannel channel;
+        public final String recipient;
+        public final long ackedSeq;
+        public final List<MessagePacket> packets;
+
+        public RecoveredQueue(DeliveryChannel channel, String recipient, long ackedSeq, List<MessagePacket> packets) {
+            this.channel = channel;
+            this.recipient = recipient;
+            this.ackedSeq = ackedSeq;
+            this.packets = packets;
+        }
+    }
+}
@@ -0,0 +1,335 @@
+package com.spruce.store;
+
+import com.spruce.config.RelayProperties;
+import com.spruce.model.DeliveryChannel;
+import com.spruce.model.MessagePacket;
+import com.spruce.queue.RecipientQueue;
+import com.spruce.queue.TimingWheel;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+/**
+ * Message store backed by per-recipient {@link RecipientQueue}s,
+ * optionally made durable by the {@link CommitLog}.
+ *
+ * Expiry deadlines go into a {@link TimingWheel}, at most one entry per queue and tick;
+ * a sweeper thread advances the wheel and trims only the queues whose deadlines fired.
+ *
+ * A queue left empty by an acknowledgement, clear or expiry is closed and removed, so the
+ * map holds only recipients with something pending, whatever names senders make up. Its
+ * last seq raises a store-wide floor that new queues start above, keeping every
+ * recipient's sequence increasing without remembering each recipient.
+ */
+@Component
+@ConditionalOnProperty(name = "spruce.relay.store", havingValue = "memory", matchIfMissing = true)
+@RequiredArgsConstructor
+@Slf4j
+public class InMemoryMessageStore implements MessageStore {
+    
+    // With the default one-second tick a rotation covers about eight and a half minutes
+    private static final int WHEEL_SIZE = 512;
+    
+    private final RelayProperties relayProperties;
+    private final CommitLog commitLog;
+    
+    private final Map<DeliveryChannel, Map<String, RecipientQueue>> queues = newChannelMap();
+    // Highest last seq of any removed queue (or retired commit log cursor)
+    private final AtomicLong seqFloor = new AtomicLong();
+    // Counters of removed queues
+    private final LongAdder removedExpired = new LongAdder();
+    private final LongAdder removedRejected = new LongAdder();
+    
+    private TimingWheel<QueueKey> expiryWheel;
+    private volatile long epoch;
+    private volatile boolean running;
+    private Thread sweeper;
+    
+    /**
+     * Rebuild the queues from the commit log, if it is enabled, and start the expiry sweeper.
+     */
+    @PostConstruct
+    public void recoverQueues() {
+        long interval = relayProperties.getRetention().getSweepIntervalMs();
+        expiryWheel = new TimingWheel<>(interval, WHEEL_SIZE, System.currentTimeMillis());
+        
+        List<CommitLog.RecoveredQueue> recoveredQueues = commitLog.recover();
+        // Without the log every queue starts again at seq 1, so each start is a new epoch
+        epoch = commitLog.isEnabled() ? commitLog.getEpoch() : System.currentTimeMillis();
+        seqFloor.set(commitLog.getSeqFloor());
+        for (CommitLog.RecoveredQueue recovered : recoveredQueues) {
+            if (recovered.packets.isEmpty()) {
+                // Only a cursor: nothing to queue, but the recipient's next seq must come after it
+                seqFloor.accumulateAndGet(recovered.ackedSeq, Math::max);
+                continue;
+            }
+            QueueKey key = new QueueKey(recovered.channel, recovered.recipient);
+            RecipientQueue queue = newQueue(key, recovered.ackedSeq);
+            for (MessagePacket packet : recovered.packets) {
+                queue.restore(packet);
+                scheduleExpiry(key, packet.getExpiresAt());
+            }
+            queues.get(recovered.channel).put(recovered.recipient, queue);
+        }
+        
+        running = true;
+        sweeper = new Thread(this::sweepLoop, "relay-expiry-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+    
+    @PreDestroy
+    public void stopSweeper() {
+        running = false;
+        sweeper.interrupt();
+    }
+    
+    @Override
+    public void append(DeliveryChannel channel, MessagePacket packet) {
+        String recipient = packet.getRecipient();
+        RecipientQueue queue = queueFor(channel, recipient);
+        while (!queue.offer(packet)) {
+            queue = replaceClosed(channel, recipient, queue);
+        }
+        recordRemovals(channel, recipient, queue);
+    }
+    
+    @Override
+    public List<RuntimeException> appendAll(DeliveryChannel channel, List<MessagePacket> packets) {
+        List<RuntimeException> failures = new ArrayList<>(packets.size());
+        if (packets.isEmpty()) {
+            return failures;
+        }
+        String recipient = packets.get(0).getRecipient();
+        RecipientQueue queue = queueFor(channel, recipient);
+        for (MessagePacket packet : packets) {
+            try {
+                while (!queue.offer(packet)) {
+                    queue = replaceClosed(channel, recipient, queue);
+                }
+                failures.add(null);
+            } catch (RuntimeException e) {
+                failures.add(e);
+            }
+        }
+        recordRemovals(channel, recipient, queue);
+        return failures;
+    }
+    
+    @Override
+    public List<RuntimeException> appendGroup(DeliveryChannel channel, List<MessagePacket> packets) {
+        List<RuntimeException> failures = new ArrayList<>(packets.size());
+        if (packets.isEmpty()) {
+            return failures;
+        }
+        // In memory the members already share one String; only the commit log needs a payload record
+        String groupId = packets.get(0).getGroupId();
+        commitLog.appendPayload(groupId, packets.get(0).getEncryptedContent());
+        try {
+            for (MessagePacket packet : packets) {
+                try {
+                    append(channel, packet);
+                    failures.add(null);
+                } catch (RuntimeException e) {
+                    failures.add(e);
+                }
+            }
+        } finally {
+            commitLog.releasePayload(groupId);
+        }
+        return failures;
+    }
+    
+    @Override
+    public List<MessagePacket> readAfter(DeliveryChannel channel, String recipient, long afterSeq, int limit) {
+        RecipientQueue queue = queues.get(channel).get(recipient);
+        return queue != null ? queue.readAfter(afterSeq, limit) : List.of();
+    }
+    
+    @Override
+    public int acknowledge(DeliveryChannel channel, String recipient, long upToSeq) {
+        RecipientQueue queue = queues.get(channel).get(recipient);
+        int removed = queue != null ? queue.acknowledge(upToSeq) : 0;
+        if (removed > 0) {
+            // Expired packets that were waiting behind the acknowledged ones have no wheel entry of their own
+            queue.expire(System.currentTimeMillis());
+            recordRemovals(channel, recipient, queue);
+            removeIfEmpty(channel, recipient, queue);
+        }
+        return removed;
+    }
+    
+    @Override
+    public void clear(DeliveryChannel channel, String recipient) {
+        // Drain rather than remove so packets appended concurrently are not lost with the queue
+        RecipientQueue queue = queues.get(channel).get(recipient);
+        if (queue != null) {
+            queue.drain();
+            recordRemovals(channel, recipient, queue);
+            removeIfEmpty(channel, recipient, queue);
+        }
+    }
+    
+    @Override
+    public void clearAll() {
+        // Drain and close rather than drop the queues, so sequence numbers keep increasing
+        queues.forEach((channel, byRecipient) -> byRecipient.forEach((recipient, queue) -> {
+            queue.drain();
+            recordRemovals(channel, recipient, queue);
+            removeIfEmpty(channel, recipient, queue);
+        }));
+    }
+    
+    @Override
+    public Map<String, Integer> queueSizes(DeliveryChannel channel) {
+        Map<String, Integer> sizes = new HashMap<>();
+        queues.get(channel).forEach((recipient, queue) -> sizes.put(recipient, queue.size()));
+        return sizes;
+    }
+    
+    private static Map<DeliveryChannel, Map<String, RecipientQueue>> newChannelMap() {
+        Map<DeliveryChannel, Map<String, RecipientQueue>> map = new EnumMap<>(DeliveryChannel.class);
+        for (DeliveryChannel channel : DeliveryChannel.values()) {
+            map.put(channel, new ConcurrentHashMap<>());
+        }
+        return map;
+    }
+    
+    @Override
+    public long expiredCount() {
+        return removedExpired.sum() + sumOverQueues(RecipientQueue::getExpiredCount);
+    }
+    
+    @Override
+    public long rejectedCount() {
+        return removedRejected.sum() + sumOverQueues(RecipientQueue::getRejectedCount);
+    }
+    
+    @Override
+    public long epoch() {
+        return epoch;
+    }
+    
+    private long sumOverQueues(ToLongFunction<RecipientQueue> counter) {
+        long total = 0;
+        for (Map<String, RecipientQueue> byRecipient : queues.values()) {
+            for (RecipientQueue queue : byRecipient.values()) {
+                total += counter.applyAsLong(queue);
+            }
+        }
+        return total;
+    }
+    
+    private RecipientQueue queueFor(DeliveryChannel channel, String recipient) {
+        Map<String, RecipientQueue> byRecipient = queues.get(channel);
+        RecipientQueue queue = byRecipient.get(recipient);
+        return queue != null ? queue : byRecipient.computeIfAbsent(recipient, k -> newQueue(new QueueKey(channel, k), seqFloor.get()));
+    }
+    
+    /**
+     * Swap out a queue that was closed between looking it up and appending to it.
+     */
+    private RecipientQueue replaceClosed(DeliveryChannel channel, String recipient, RecipientQueue closed) {
+        discard(channel, recipient, closed);
+        return queueFor(channel, recipient);
+    }
+    
+    private void removeIfEmpty(DeliveryChannel channel, String recipient, RecipientQueue queue) {
+        if (queue.tryClose()) {
+            discard(channel, recipient, queue);
+        }
+    }
+    
+    /**
+     * Remove a closed queue. Both the closer and an appender that found it closed may get here,
+     * so the floor is raised by both before either removes it, and only the one that removes
+     * it keeps its counters.
+     */
+    private void discard(DeliveryChannel channel, String recipient, RecipientQueue closed) {
+        seqFloor.accumulateAndGet(closed.getLastSeq(), Math::max);
+        if (queues.get(channel).remove(recipient, closed)) {
+            removedExpired.add(closed.getExpiredCount());
+            removedRejected.add(closed.getRejectedCount());
+        }
+    }
+    
+    private RecipientQueue newQueue(QueueKey key, long startSeq) {
+        RelayProperties.Queue config = relayProperties.getQueue();
+        return new RecipientQueue(key.recipient, config.getCapacity(), config.getMaxBytes(), config.getOverflowPolicy(),
+            startSeq, packet -> {
+                commitLog.append(key.channel, packet);
+                scheduleExpiry(key, packet.getExpiresAt());
+            });
+    }
+    
+    private void scheduleExpiry(QueueKey key, long expiresAt) {
+        if (expiresAt == 0) {
+            return;
+        }
+        // Consecutive packets with the same TTL share a tick; one wheel entry covers them all
+        long tick = expiryWheel.tickOf(expiresAt);
+        if (key.scheduledTick.getAndSet(tick) != tick) {
+            expiryWheel.schedule(expiresAt, key);
+        }
+    }
+    
+    private void sweepLoop() {
+        long interval = expiryWheel.getTickMs();
+        while (running) {
+            try {
+                Thread.sleep(interval);
+                expiryWheel.advance(System.currentTimeMillis(), this::expire);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Expiry sweep failed", e);
+            }
+        }
+    }
+    
+    private void expire(QueueKey key) {
+        RecipientQueue queue = queues.get(key.channel).get(key.recipient);
+        if (queue == null) {
+            return;
+        }
+        if (queue.expire(System.currentTimeMillis()) > 0) {
+            recordRemovals(key.channel, key.recipient, queue);
+            removeIfEmpty(key.channel, key.recipient, queue);
+        }
+        // A live packet at the head holds back expired ones behind it; sweep again when it expires
+        scheduleExpiry(key, queue.getHeadExpiresAt());
+    }
+    
+    /**
+     * Log how far a queue has been trimmed (acks, clears and drop-oldest evictions).
+     */
+    private void recordRemovals(DeliveryChannel channel, String recipient, RecipientQueue queue) {
+        commitLog.acknowledge(channel, recipient, queue.getHeadSeq());
+    }
+    
+    private static final class QueueKey {
+        private final DeliveryChannel channel;
+        private final String recipient;
+        // Tick of the latest wheel entry for this queue
+        private final AtomicLong scheduledTick = new AtomicLong(-1);
+        
+        private QueueKey(DeliveryChannel channel, String recipient) {
+            this.channel = channel;
+            this.recipient = recipient;
+        }
+    }
+}
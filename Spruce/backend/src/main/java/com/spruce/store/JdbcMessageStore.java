@@ -0,0 +1,534 @@
+package com.spruce.store;
+
+import com.spruce.config.RelayProperties;
+import com.spruce.model.DeliveryChannel;
+import com.spruce.model.MessagePacket;
+import com.spruce.queue.QueueFullException;
+import com.spruce.queue.RecipientQueue;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.support.GeneratedKeyHolder;
+import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.stereotype.Component;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.SQLIntegrityConstraintViolationException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.sql.Types;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Message store backed by the {@code relay_messages} table, so several relay
+ * instances can share one database.
+ *
+ * Appends from concurrent senders are handed to a single writer thread that
+ * collects them for up to {@code batch-window-ms} and writes them with one
+ * multi-row INSERT and one commit. Reads use keyset pagination on
+ * (recipient, channel, seq), which the unique index covers.
+ *
+ * Sequence numbers are allocated per recipient and channel from {@code relay_sequences}
+ * in the same transaction as the INSERT. The counter's row lock is held until commit, so
+ * when several instances write for one recipient, a packet never becomes visible after a
+ * packet with a higher seq. A reader that has moved its cursor past a seq, and an ack up
+ * to it, can therefore never skip a row that commits later.
+ *
+ * Group message ciphertext is written once to {@code relay_payloads}; member rows
+ * reference it and the payload is deleted together with the last member.
+ *
+ * Quotas are checked against the recipient's current rows before enqueueing, so
+ * concurrent senders can overshoot them slightly. Expired rows are hidden from reads
+ * at once and deleted in small chunks by a sweeper thread using the expires_at index.
+ */
+@Component
+@ConditionalOnProperty(name = "spruce.relay.store", havingValue = "jdbc")
+@RequiredArgsConstructor
+@Slf4j
+public class JdbcMessageStore implements MessageStore {
+    
+    private static final String INSERT_PREFIX =
+        "INSERT INTO relay_messages (channel, recipient, seq, sender, message_id, encrypted_content, nonce, aad, sent_at, "
+            + "payload_id, key_wrap, group_id, expires_at, size_bytes) VALUES ";
+    private static final String INSERT_ROW = "(?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final String BUMP_SEQUENCE =
+        "UPDATE relay_sequences SET last_seq = last_seq + ? WHERE recipient = ? AND channel = ?";
+    private static final String INSERT_SEQUENCE =
+        "INSERT INTO relay_sequences (recipient, channel, last_seq) VALUES (?, ?, ?)";
+    private static final String SELECT_SEQUENCE =
+        "SELECT last_seq FROM relay_sequences WHERE recipient = ? AND channel = ? FOR UPDATE";
+    private static final String SELECT_AFTER =
+        "SELECT m.seq, m.recipient, m.sender, m.message_id, COALESCE(m.encrypted_content, p.content) AS encrypted_content, "
+            + "m.nonce, m.aad, m.sent_at, m.key_wrap, m.group_id, m.expires_at FROM relay_messages m "
+            + "LEFT JOIN relay_payloads p ON p.id = m.payload_id "
+            + "WHERE m.recipient = ? AND m.channel = ? AND m.seq > ? AND (m.expires_at IS NULL OR m.expires_at > ?) "
+            + "ORDER BY m.seq LIMIT ?";
+    private static final String SELECT_EXPIRED =
+        "SELECT id, payload_id FROM relay_messages WHERE expires_at <= ? ORDER BY expires_at LIMIT ?";
+    private static final int SWEEP_CHUNK = 500;
+    private static final String DELETE_ORPHAN_PAYLOAD =
+        "DELETE FROM relay_payloads WHERE id = ? AND NOT EXISTS (SELECT 1 FROM relay_messages WHERE payload_id = ?)";
+    
+    private final JdbcTemplate jdbcTemplate;
+    private final RelayProperties relayProperties;
+    
+    private final BlockingQueue<PendingInsert> pending = new LinkedBlockingQueue<>();
+    private final LongAdder expired = new LongAdder();
+    private final LongAdder rejected = new LongAdder();
+    private volatile boolean running;
+    private Thread writer;
+    private Thread sweeper;
+    
+    @PostConstruct
+    public void start() {
+        if (relayProperties.getCommitLog().isEnabled()) {
+            // Only the memory store replays the commit log; rows here are already durable
+            throw new IllegalStateException("spruce.relay.commit-log.enabled cannot be combined with spruce.relay.store=jdbc");
+        }
+        running = true;
+        writer = new Thread(this::writeLoop, "relay-batch-writer");
+        writer.setDaemon(true);
+        writer.start();
+        sweeper = new Thread(this::sweepLoop, "relay-expiry-sweeper");
+        sweeper.setDaemon(true);
+        sweeper.start();
+    }
+    
+    @PreDestroy
+    public void stop() {
+        running = false;
+        writer.interrupt();
+        sweeper.interrupt();
+    }
+    
+    @Override
+    public void append(DeliveryChannel channel, MessagePacket packet) {
+        RuntimeException failure = store(channel, List.of(packet), null).get(0);
+        if (failure != null) {
+            throw failure;
+        }
+    }
+    
+    @Override
+    public List<RuntimeException> appendAll(DeliveryChannel channel, List<MessagePacket> packets) {
+        return store(channel, packets, null);
+    }
+    
+    @Override
+    public List<RuntimeException> appendGroup(DeliveryChannel channel, List<MessagePacket> packets) {
+        if (packets.isEmpty()) {
+            return new ArrayList<>();
+        }
+        KeyHolder keyHolder = new GeneratedKeyHolder();
+        jdbcTemplate.update(connection -> {
+            PreparedStatement statement = connection.prepareStatement(
+                "INSERT INTO relay_payloads (content) VALUES (?)", Statement.RETURN_GENERATED_KEYS);
+            statement.setString(1, packets.get(0).getEncryptedContent());
+            return statement;
+        }, keyHolder);
+        long payloadId = keyHolder.getKey().longValue();
+        
+        List<RuntimeException> failures = store(channel, packets, payloadId);
+        // Nothing references the payload if every member failed
+        deleteOrphanPayloads(List.of(payloadId));
+        return failures;
+    }
+    
+    @Override
+    public List<MessagePacket> readAfter(DeliveryChannel channel, String recipient, long afterSeq, int limit) {
+        return jdbcTemplate.query(SELECT_AFTER, (rs, rowNum) -> toPacket(rs), recipient, channel.name(), afterSeq,
+            System.currentTimeMillis(), limit);
+    }
+    
+    @Override
+    public boolean hasAfter(DeliveryChannel channel, String recipient, long afterSeq) {
+        List<Integer> found = jdbcTemplate.queryForList(
+            "SELECT 1 FROM relay_messages WHERE recipient = ? AND channel = ? AND seq > ? "
+                + "AND (expires_at IS NULL OR expires_at > ?) LIMIT 1",
+            Integer.class, recipient, channel.name(), afterSeq, System.currentTimeMillis());
+        return !found.isEmpty();
+    }
+    
+    @Override
+    public int acknowledge(DeliveryChannel channel, String recipient, long upToSeq) {
+        List<Long> payloadIds = jdbcTemplate.queryForList(
+            "SELECT DISTINCT payload_id FROM relay_messages WHERE recipient = ? AND channel = ? AND seq <= ? AND payload_id IS NOT NULL",
+            Long.class, recipient, channel.name(), upToSeq);
+        int removed = jdbcTemplate.update("DELETE FROM relay_messages WHERE recipient = ? AND channel = ? AND seq <= ?",
+            recipient, channel.name(), upToSeq);
+        deleteOrphanPayloads(payloadIds);
+        return removed;
+    }
+    
+    @Override
+    public void clear(DeliveryChannel channel, String recipient) {
+        List<Long> payloadIds = jdbcTemplate.queryForList(
+            "SELECT DISTINCT payload_id FROM relay_messages WHERE recipient = ? AND channel = ? AND payload_id IS NOT NULL",
+            Long.class, recipient, channel.name());
+        jdbcTemplate.update("DELETE FROM relay_messages WHERE recipient = ? AND channel = ?", recipient, channel.name());
+        deleteOrphanPayloads(payloadIds);
+    }
+    
+    @Override
+    public void clearAll() {
+        jdbcTemplate.update("DELETE FROM relay_messages");
+        jdbcTemplate.update("DELETE FROM relay_payloads");
+    }
+    
+    @Override
+    public Map<String, Integer> queueSizes(DeliveryChannel channel) {
+        Map<String, Integer> sizes = new HashMap<>();
+        jdbcTemplate.query("SELECT recipient, COUNT(*) FROM relay_messages WHERE channel = ? GROUP BY recipient",
+            rs -> {
+                sizes.put(rs.getString(1), rs.getInt(2));
+            }, channel.name());
+        return sizes;
+    }
+    
+    @Override
+    public long expiredCount() {
+        return expired.sum();
+    }
+    
+    @Override
+    public long rejectedCount() {
+        return rejected.sum();
+    }
+    
+    @Override
+    public long epoch() {
+        // Sequences are allocated in the database and survive restarts
+        return 0;
+    }
+    
+    /**
+     * Check quotas, hand the admitted packets to the writer and wait for all of them.
+     */
+    private List<RuntimeException> store(DeliveryChannel channel, List<MessagePacket> packets, Long payloadId) {
+        RelayProperties.Queue quota = relayProperties.getQueue();
+        Map<String, long[]> usage = usage(channel, packets);
+        RuntimeException[] failures = new RuntimeException[packets.size()];
+        List<PendingInsert> inserts = new ArrayList<>(packets.size());
+        List<Integer> insertIndexes = new ArrayList<>(packets.size());
+        for (int i = 0; i < packets.size(); i++) {
+            MessagePacket packet = packets.get(i);
+            long[] used = usage.computeIfAbsent(packet.getRecipient(), k -> new long[2]);
+            int bytes = RecipientQueue.sizeOf(packet);
+            if (used[0] >= quota.getCapacity()) {
+                failures[i] = new QueueFullException(packet.getRecipient(), quota.getCapacity());
+            } else if (used[1] + bytes > quota.getMaxBytes()) {
+                failures[i] = new QueueFullException(packet.getRecipient(), used[1], quota.getMaxBytes());
+            } else {
+                used[0]++;
+                used[1] += bytes;
+                inserts.add(new PendingInsert(channel, packet, payloadId, bytes));
+                insertIndexes.add(i);
+                continue;
+            }
+            rejected.increment();
+        }
+        
+        // Enqueue everything before waiting so the whole batch shares the writer's INSERTs
+        pending.addAll(inserts);
+        for (int j = 0; j < inserts.size(); j++) {
+            try {
+                inserts.get(j).done.join();
+            } catch (CompletionException e) {
+                failures[insertIndexes.get(j)] = new IllegalStateException("Failed to store packet: " + e.getCause().getMessage(), e.getCause());
+            }
+        }
+        return Arrays.asList(failures);
+    }
+    
+    /**
+     * Current row count and payload bytes per recipient, for the recipients in a batch.
+     */
+    private Map<String, long[]> usage(DeliveryChannel channel, List<MessagePacket> packets) {
+        Set<String> recipients = new LinkedHashSet<>();
+        packets.forEach(packet -> recipients.add(packet.getRecipient()));
+        
+        String placeholders = String.join(", ", Collections.nCopies(recipients.size(), "?"));
+        List<Object> args = new ArrayList<>(recipients.size() + 1);
+        args.add(channel.name());
+        args.addAll(recipients);
+        
+        Map<String, long[]> usage = new HashMap<>();
+        jdbcTemplate.query("SELECT recipient, COUNT(*), COALESCE(SUM(size_bytes), 0) FROM relay_messages "
+                + "WHERE channel = ? AND recipient IN (" + placeholders + ") GROUP BY recipient",
+            rs -> {
+                usage.put(rs.getString(1), new long[] {rs.getLong(2), rs.getLong(3)});
+            }, args.toArray());
+        return usage;
+    }
+    
+    private void sweepLoop() {
+        long interval = relayProperties.getRetention().getSweepIntervalMs();
+        while (running) {
+            try {
+                Thread.sleep(interval);
+                deleteExpired(System.currentTimeMillis());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } catch (RuntimeException e) {
+                log.error("Expiry sweep failed", e);
+            }
+        }
+    }
+    
+    /**
+     * Delete expired rows a chunk at a time so a large backlog never holds long locks.
+     */
+    private void deleteExpired(long now) {
+        while (running) {
+            List<Long> ids = new ArrayList<>();
+            Set<Long> payloadIds = new LinkedHashSet<>();
+            jdbcTemplate.query(SELECT_EXPIRED, rs -> {
+                ids.add(rs.getLong(1));
+                long payloadId = rs.getLong(2);
+                if (!rs.wasNull()) {
+                    payloadIds.add(payloadId);
+                }
+            }, now, SWEEP_CHUNK);
+            if (ids.isEmpty()) {
+                return;
+            }
+            
+            String placeholders = String.join(", ", Collections.nCopies(ids.size(), "?"));
+            int deleted = jdbcTemplate.update("DELETE FROM relay_messages WHERE id IN (" + placeholders + ")", ids.toArray());
+            expired.add(deleted);
+            deleteOrphanPayloads(new ArrayList<>(payloadIds));
+            if (ids.size() < SWEEP_CHUNK) {
+                return;
+            }
+        }
+    }
+    
+    /**
+     * Delete payloads no member row refers to any more. Each member row is deleted and
+     * committed before its payload is checked, so whichever recipient acks last sees no references.
+     */
+    private void deleteOrphanPayloads(List<Long> payloadIds) {
+        if (payloadIds.isEmpty()) {
+            return;
+        }
+        jdbcTemplate.batchUpdate(DELETE_ORPHAN_PAYLOAD, payloadIds, payloadIds.size(), (statement, payloadId) -> {
+            statement.setLong(1, payloadId);
+            statement.setLong(2, payloadId);
+        });
+    }
+    
+    private void writeLoop() {
+        RelayProperties.Jdbc config = relayProperties.getJdbc();
+        List<PendingInsert> batch = new ArrayList<>(config.getMaxBatchSize());
+        while (running) {
+            try {
+                PendingInsert first = pending.poll(100, TimeUnit.MILLISECONDS);
+                if (first == null) {
+                    continue;
+                }
+                batch.add(first);
+                
+                // Hold the batch open briefly so concurrent senders share the round trip
+                long deadline = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(config.getBatchWindowMs());
+                while (batch.size() < config.getMaxBatchSize()) {
+                    long remaining = deadline - System.nanoTime();
+                    PendingInsert next = remaining > 0 ? pending.poll(remaining, TimeUnit.NANOSECONDS) : pending.poll();
+                    if (next == null) {
+                        break;
+                    }
+                    batch.add(next);
+                }
+                insertBatch(batch);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                break;
+            } finally {
+                batch.clear();
+            }
+        }
+        
+        PendingInsert abandoned;
+        while ((abandoned = pending.poll()) != null) {
+            abandoned.done.completeExceptionally(new IllegalStateException("Message store is shutting down"));
+        }
+    }
+    
+    private void insertBatch(List<PendingInsert> batch) {
+        StringBuilder sql = new StringBuilder(INSERT_PREFIX.length() + batch.size() * (INSERT_ROW.length() + 2));
+        sql.append(INSERT_PREFIX);
+        for (int i = 0; i < batch.size(); i++) {
+            sql.append(i == 0 ? "" : ", ").append(INSERT_ROW);
+        }
+        
+        try {
+            jdbcTemplate.execute((ConnectionCallback<Void>) connection -> {
+                boolean autoCommit = connection.getAutoCommit();
+                connection.setAutoCommit(false);
+                try {
+                    assignSeqs(connection, batch);
+                    try (PreparedStatement statement = connection.prepareStatement(sql.toString())) {
+                        int index = 1;
+                        for (PendingInsert insert : batch) {
+                            MessagePacket packet = insert.packet;
+                            statement.setString(index++, insert.channel.name());
+                            statement.setString(index++, packet.getRecipient());
+                            statement.setLong(index++, packet.getSeq());
+                            statement.setString(index++, packet.getSender());
+                            statement.setString(index++, packet.getMessageId());
+                            statement.setString(index++, insert.payloadId == null ? packet.getEncryptedContent() : null);
+                            statement.setString(index++, packet.getNonce());
+                            statement.setString(index++, packet.getAad());
+                            statement.setTimestamp(index++, packet.getTimestamp() != null ? Timestamp.valueOf(packet.getTimestamp()) : null);
+                            statement.setObject(index++, insert.payloadId, Types.BIGINT);
+                            statement.setString(index++, packet.getKeyWrap());
+                            statement.setString(index++, packet.getGroupId());
+                            statement.setObject(index++, packet.getExpiresAt() != 0 ? packet.getExpiresAt() : null, Types.BIGINT);
+                            statement.setInt(index++, insert.bytes);
+                        }
+                        statement.executeUpdate();
+                    }
+                    connection.commit();
+                } catch (SQLException | RuntimeException e) {
+                    connection.rollback();
+                    throw e;
+                } finally {
+                    connection.setAutoCommit(autoCommit);
+                }
+                return null;
+            });
+            batch.forEach(insert -> insert.done.complete(null));
+        } catch (Exception e) {
+            log.error("Failed to write batch of {} packets", batch.size(), e);
+            batch.forEach(insert -> insert.done.completeExceptionally(e));
+        }
+    }
+    
+    /**
+     * Reserve a block of seqs for each recipient in the batch and stamp the packets with
+     * them, in batch order. Counters are locked in key order so two instances writing for
+     * the same recipients cannot deadlock.
+     */
+    private void assignSeqs(Connection connection, List<PendingInsert> batch) throws SQLException {
+        Map<SequenceKey, List<MessagePacket>> byKey = new TreeMap<>();
+        for (PendingInsert insert : batch) {
+            byKey.computeIfAbsent(new SequenceKey(insert.packet.getRecipient(), insert.channel), k -> new ArrayList<>())
+                .add(insert.packet);
+        }
+        for (Map.Entry<SequenceKey, List<MessagePacket>> entry : byKey.entrySet()) {
+            List<MessagePacket> packets = entry.getValue();
+            long seq = reserveSeqs(connection, entry.getKey(), packets.size()) - packets.size();
+            for (MessagePacket packet : packets) {
+                packet.setSeq(++seq);
+            }
+        }
+    }
+    
+    /**
+     * Advance a recipient's counter by {@code count}, creating it on first use.
+     *
+     * @return the last seq reserved
+     */
+    private long reserveSeqs(Connection connection, SequenceKey key, int count) throws SQLException {
+        if (bumpSequence(connection, key, count) == 0) {
+            try (PreparedStatement statement = connection.prepareStatement(INSERT_SEQUENCE)) {
+                statement.setString(1, key.recipient);
+                statement.setString(2, key.channel.name());
+                statement.setLong(3, count);
+                statement.executeUpdate();
+                return count;
+            } catch (SQLIntegrityConstraintViolationException e) {
+                // Another instance created the counter first; take the next block from it
+                bumpSequence(connection, key, count);
+            }
+        }
+        try (PreparedStatement statement = connection.prepareStatement(SELECT_SEQUENCE)) {
+            statement.setString(1, key.recipient);
+            statement.setString(2, key.channel.name());
+            try (ResultSet rs = statement.executeQuery()) {
+                if (!rs.next()) {
+                    throw new SQLException("Sequence for " + key.recipient + " disappeared");
+                }
+                return rs.getLong(1);
+            }
+        }
+    }
+    
+    private static int bumpSequence(Connection connection, SequenceKey key, int count) throws SQLException {
+        try (PreparedStatement statement = connection.prepareStatement(BUMP_SEQUENCE)) {
+            statement.setLong(1, count);
+            statement.setString(2, key.recipient);
+            statement.setString(3, key.channel.name());
+            return statement.executeUpdate();
+        }
+    }
+    
+    private static MessagePacket toPacket(ResultSet rs) throws SQLException {
+        MessagePacket packet = new MessagePacket();
+        packet.setSeq(rs.getLong("seq"));
+        packet.setRecipient(rs.getString("recipient"));
+        packet.setSender(rs.getString("sender"));
+        packet.setMessageId(rs.getString("message_id"));
+        packet.setEncryptedContent(rs.getString("encrypted_content"));
+        packet.setNonce(rs.getString("nonce"));
+        packet.setAad(rs.getString("aad"));
+        Timestamp sentAt = rs.getTimestamp("sent_at");
+        packet.setTimestamp(sentAt != null ? sentAt.toLocalDateTime() : null);
+        packet.setKeyWrap(rs.getString("key_wrap"));
+        packet.setGroupId(rs.getString("group_id"));
+        packet.setExpiresAt(rs.getLong("expires_at"));
+        return packet;
+    }
+    
+    private static final class SequenceKey implements Comparable<SequenceKey> {
+        private final String recipient;
+        private final DeliveryChannel channel;
+        
+        private SequenceKey(String recipient, DeliveryChannel channel) {
+            this.recipient = recipient;
+            this.channel = channel;
+        }
+        
+        @Override
+        public int compareTo(SequenceKey other) {
+            int byRecipient = recipient.compareTo(other.recipient);
+            return byRecipient != 0 ? byRecipient : channel.compareTo(other.channel);
+        }
+    }
+    
+    private static final class PendingInsert {
+        private final DeliveryChannel channel;
+        private final MessagePacket packet;
+        private final Long payloadId;
+        private final int bytes;
+        private final CompletableFuture<Void> done = new CompletableFuture<>();
+        
+        private PendingInsert(DeliveryChannel channel, MessagePacket packet, Long payloadId, int bytes) {
+            this.channel = channel;
+            this.packet = packet;
+            this.payloadId = payloadId;
+            this.bytes = bytes;
+        }
+    }
+}
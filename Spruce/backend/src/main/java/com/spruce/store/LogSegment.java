@@ -0,0 +1,208 @@
+package com.spruce.store;
+
+import lombok.extern.slf4j.Slf4j;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.CRC32C;
+
+/**
+ * One memory-mapped, fixed-size file of the {@link CommitLog}.
+ *
+ * Record layout: {@code [int bodyLength][int crc32c(type, body)][byte type][body]}.
+ * The file is zero-filled when created, so a zero length marks the end of the written region.
+ */
+@Slf4j
+final class LogSegment {
+
+    static final int HEADER_SIZE = 9;
+
+    private static final String PREFIX = "segment-";
+    private static final String SUFFIX = ".log";
+
+    final long id;
+    final Path path;
+    final int size;
+
+    private final FileChannel channel;
+    private final MappedByteBuffer buffer;
+
+    // Guarded by the commit log's write lock
+    private int writeOffset;
+    private volatile int flushedOffset;
+
+    /** Packet and group payload records in this segment that are still referenced. */
+    final AtomicInteger liveRecords = new AtomicInteger();
+
+    private LogSegment(long id, Path path, FileChannel channel, int size) throws IOException {
+        this.id = id;
+        this.path = path;
+        this.channel = channel;
+        this.size = size;
+        this.buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+    }
+
+    static LogSegment create(Path directory, long id, int size) throws IOException {
+        Path path = directory.resolve(fileName(id));
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+            StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new LogSegment(id, path, channel, size);
+    }
+
+    static LogSegment open(Path path) throws IOException {
+        long id = parseId(path);
+        FileChannel channel = FileChannel.open(path, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        return new LogSegment(id, path, channel, (int) channel.size());
+    }
+
+    static boolean isSegmentFile(Path path) {
+        String name = path.getFileName().toString();
+        return name.startsWith(PREFIX) && name.endsWith(SUFFIX);
+    }
+
+    static long parseId(Path path) {
+        String name = path.getFileName().toString();
+        return Long.parseLong(name.substring(PREFIX.length(), name.length() - SUFFIX.length()));
+    }
+
+    private static String fileName(long id) {
+        return String.format("%s%020d%s", PREFIX, id, SUFFIX);
+    }
+
+    boolean hasRoom(int bodyLength) {
+        return writeOffset + HEADER_SIZE + bodyLength <= size;
+    }
+
+    /**
+     * Write a record at the current write offset.
+     *
+     * @return the offset the record was written at
+     */
+    int append(byte type, byte[] body) {
+        int offset = writeOffset;
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(body);
+
+        // Body and type first, length last: a torn write leaves a zero length or a bad CRC
+        buffer.put(offset + 8, type);
+        buffer.put(offset + HEADER_SIZE, body);
+        buffer.putInt(offset + 4, (int) crc.getValue());
+        buffer.putInt(offset, body.length);
+
+        writeOffset = offset + HEADER_SIZE + body.length;
+        return offset;
+    }
+
+    /**
+     * Read the record at an offset, or null at the end of the valid region.
+     */
+    Record read(int offset) {
+        if (offset + HEADER_SIZE > size) {
+            return null;
+        }
+        int length = buffer.getInt(offset);
+        if (length <= 0 || offset + HEADER_SIZE + length > size) {
+            return null;
+        }
+        int expectedCrc = buffer.getInt(offset + 4);
+        byte type = buffer.get(offset + 8);
+        byte[] body = new byte[length];
+        buffer.get(offset + HEADER_SIZE, body);
+
+        CRC32C crc = new CRC32C();
+        crc.update(type);
+        crc.update(body);
+        if ((int) crc.getValue() != expectedCrc) {
+            return null;
+        }
+        return new Record(offset, type, body, offset + HEADER_SIZE + length);
+    }
+
+    /**
+     * Position writes after the last valid record found during recovery, zeroing any torn tail.
+     */
+    void resumeAt(int offset) {
+        writeOffset = offset;
+        flushedOffset = offset;
+        int end = Math.min(size, offset + HEADER_SIZE);
+        for (int i = offset; i < end; i++) {
+            buffer.put(i, (byte) 0);
+        }
+    }
+
+    int getWriteOffset() {
+        return writeOffset;
+    }
+
+    /**
+     * Force everything written so far to disk.
+     *
+     * @return the offset up to which the segment is durable
+     */
+    int flush() {
+        int target = writeOffset;
+        int from = flushedOffset;
+        if (target > from) {
+            buffer.force(from, target - from);
+            flushedOffset = target;
+        }
+        return target;
+    }
+
+    void close() {
+        try {
+            channel.close();
+        } catch (IOException e) {
+            log.warn("Failed to close segment {}", path, e);
+        }
+        unmap(buffer);
+    }
+
+    void delete() {
+        close();
+        try {
+            Files.deleteIfExists(path);
+        } catch (IOException e) {
+            log.warn("Failed to delete segment {}", path, e);
+        }
+    }
+
+    /**
+     * Release the mapping eagerly so the file can be deleted on platforms that lock mapped files.
+     */
+    private static void unmap(ByteBuffer buffer) {
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Method invokeCleaner = unsafeClass.getMethod("invokeCleaner", ByteBuffer.class);
+            invokeCleaner.invoke(field.get(null), buffer);
+        } catch (Exception e) {
+            // Mapping is released when the buffer is garbage collected
+            log.debug("Could not unmap segment buffer: {}", e.getMessage());
+        }
+    }
+
+    static final class Record {
+        final int offset;
+        final byte type;
+        final byte[] body;
+        final int nextOffset;
+
+        Record(int offset, byte type, byte[] body, int nextOffset) {
+            this.offset = offset;
+            this.type = type;
+            this.body = body;
+            this.nextOffset = nextOffset;
+        }
+    }
+}
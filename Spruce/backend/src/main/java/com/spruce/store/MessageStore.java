@@ -0,0 +1,98 @@
+package com.spruce.store;
+
+import com.spruce.model.DeliveryChannel;
+import com.spruce.model.MessagePacket;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Storage for undelivered packets, one ordered queue per recipient and channel.
+ * Selected with {@code spruce.relay.store} ({@code memory} or {@code jdbc}).
+ */
+public interface MessageStore {
+    
+    /**
+     * Store a packet for its recipient and stamp it with a sequence number
+     * greater than any previously stored for that recipient and channel.
+     */
+    void append(DeliveryChannel channel, MessagePacket packet);
+    
+    /**
+     * Store several packets for the same recipient in one pass.
+     *
+     * @return one entry per packet, in order: null where the packet was stored, otherwise the failure
+     */
+    default List<RuntimeException> appendAll(DeliveryChannel channel, List<MessagePacket> packets) {
+        List<RuntimeException> failures = new ArrayList<>(packets.size());
+        for (MessagePacket packet : packets) {
+            try {
+                append(channel, packet);
+                failures.add(null);
+            } catch (RuntimeException e) {
+                failures.add(e);
+            }
+        }
+        return failures;
+    }
+    
+    /**
+     * Store the members of a group message, one packet per recipient. All members carry
+     * the same {@code groupId} and ciphertext, which is kept once rather than per recipient
+     * and freed when the last member has been acknowledged.
+     *
+     * @return one entry per packet, in order: null where the packet was stored, otherwise the failure
+     */
+    List<RuntimeException> appendGroup(DeliveryChannel channel, List<MessagePacket> packets);
+    
+    /**
+     * Read up to {@code limit} packets with a sequence number greater than {@code afterSeq}, oldest first.
+     */
+    List<MessagePacket> readAfter(DeliveryChannel channel, String recipient, long afterSeq, int limit);
+    
+    /**
+     * Check whether any packet is stored after the cursor.
+     */
+    default boolean hasAfter(DeliveryChannel channel, String recipient, long afterSeq) {
+        return !readAfter(channel, recipient, afterSeq, 1).isEmpty();
+    }
+    
+    /**
+     * Remove packets up to and including {@code upToSeq}.
+     *
+     * @return the number of packets removed
+     */
+    int acknowledge(DeliveryChannel channel, String recipient, long upToSeq);
+    
+    /**
+     * Remove everything stored for a recipient.
+     */
+    void clear(DeliveryChannel channel, String recipient);
+    
+    /**
+     * Remove everything stored for every recipient.
+     */
+    void clearAll();
+    
+    /**
+     * Number of stored packets per recipient (for admin monitoring).
+     */
+    Map<String, Integer> queueSizes(DeliveryChannel channel);
+    
+    /**
+     * Number of packets removed because their lifetime ran out.
+     */
+    long expiredCount();
+    
+    /**
+     * Number of packets refused because a recipient's count or byte quota was full.
+     */
+    long rejectedCount();
+    
+    /**
+     * Identifies the store's sequence space. It changes whenever sequence numbers may have
+     * started over, so a cursor from another epoch no longer points at the same packets.
+     */
+    long epoch();
+}
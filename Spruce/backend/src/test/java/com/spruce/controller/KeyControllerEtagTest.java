@@ -0,0 +1,72 @@
+package com.spruce.controller;
+
+import com.spruce.config.CborConfig;
+import com.spruce.config.CryptoProperties;
+import com.spruce.config.SecurityConfig;
+import com.spruce.crypto.PublicKeyCache;
+import com.spruce.dto.PublicKeySet;
+import com.spruce.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.HttpHeaders;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.header;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Key lookups revalidate with If-None-Match and get 304 until the keys change.
+ */
+@WebMvcTest(KeyController.class)
+@Import({CborConfig.class, SecurityConfig.class})
+class KeyControllerEtagTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    UserService userService;
+
+    @Test
+    void unchangedKeysAreNotSentAgain() throws Exception {
+        PublicKeyCache cache = new PublicKeyCache(new CryptoProperties());
+        PublicKeyCache.Entry entry = cache.get("bob", username -> new PublicKeySet(username, "x1", "k1", "d1"));
+        when(userService.getPublicKeyEntry("bob")).thenReturn(entry);
+
+        String etag = mockMvc.perform(get("/api/keys/bob"))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.x25519PublicKey").value("x1"))
+            .andReturn().getResponse().getHeader(HttpHeaders.ETAG);
+
+        mockMvc.perform(get("/api/keys/bob").header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isNotModified())
+            .andExpect(header().string(HttpHeaders.ETAG, etag))
+            .andExpect(content().string(""));
+        mockMvc.perform(get("/api/keys/bob").header(HttpHeaders.IF_NONE_MATCH, "\"other\", W/" + etag))
+            .andExpect(status().isNotModified());
+
+        // Rotated keys carry a new ETag, so the old one no longer matches
+        cache.invalidate("bob");
+        PublicKeyCache.Entry rotated = cache.get("bob", username -> new PublicKeySet(username, "x2", "k2", "d2"));
+        when(userService.getPublicKeyEntry("bob")).thenReturn(rotated);
+        assertNotEquals(etag, rotated.getEtag());
+        mockMvc.perform(get("/api/keys/bob").header(HttpHeaders.IF_NONE_MATCH, etag))
+            .andExpect(status().isOk())
+            .andExpect(header().string(HttpHeaders.ETAG, rotated.getEtag()))
+            .andExpect(jsonPath("$.x25519PublicKey").value("x2"));
+    }
+
+    @Test
+    void unknownUsersAreNotFound() throws Exception {
+        mockMvc.perform(get("/api/keys/nobody").header(HttpHeaders.IF_NONE_MATCH, "*"))
+            .andExpect(status().isNotFound());
+    }
+}
@@ -0,0 +1,75 @@
+package com.spruce.controller;
+
+import com.spruce.config.CborConfig;
+import com.spruce.config.RelayProperties;
+import com.spruce.config.SecurityConfig;
+import com.spruce.service.LongPollService;
+import com.spruce.service.MessageService;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.context.TestPropertySource;
+import org.springframework.test.web.servlet.MockMvc;
+
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Bounds on how much one request can enqueue or read.
+ */
+@WebMvcTest(MessageController.class)
+@Import({CborConfig.class, SecurityConfig.class, RelayProperties.class})
+@TestPropertySource(properties = "spruce.relay.max-batch=2")
+class MessageControllerLimitsTest {
+
+    private static final String PACKET = "{\"sender\":\"alice\",\"recipient\":\"bob\",\"encryptedContent\":\"AQID\",\"nonce\":\"bg==\"}";
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    MessageService messageService;
+
+    @MockBean
+    LongPollService longPollService;
+
+    @Test
+    void oversizedSendBatchIsRefusedBeforeAnythingIsStored() throws Exception {
+        mockMvc.perform(post("/api/messages/send-batch").contentType(MediaType.APPLICATION_JSON)
+                .content("[" + PACKET + "," + PACKET + "," + PACKET + "]"))
+            .andExpect(status().isPayloadTooLarge())
+            .andExpect(jsonPath("$.success").value(false))
+            .andExpect(jsonPath("$.maxBatch").value(2));
+        verify(messageService, never()).storeMessages(anyList());
+
+        mockMvc.perform(post("/api/messages/send-batch").contentType(MediaType.APPLICATION_JSON)
+                .content("[" + PACKET + "," + PACKET + "]"))
+            .andExpect(status().isOk());
+    }
+
+    @Test
+    void oversizedHandshakeBatchIsRefusedBeforeAnySignatureIsChecked() throws Exception {
+        mockMvc.perform(post("/api/messages/handshake-batch").contentType(MediaType.APPLICATION_JSON)
+                .content("[" + PACKET + "," + PACKET + "," + PACKET + "]"))
+            .andExpect(status().isPayloadTooLarge())
+            .andExpect(jsonPath("$.maxBatch").value(2));
+        verify(messageService, never()).ingestHandshakes(anyList());
+    }
+
+    @Test
+    void receiveWithoutLimitReturnsOnePage() throws Exception {
+        mockMvc.perform(get("/api/messages/receive/bob"))
+            .andExpect(status().isOk());
+        verify(messageService).getMessages(eq("bob"), anyLong(), eq(100));
+    }
+}
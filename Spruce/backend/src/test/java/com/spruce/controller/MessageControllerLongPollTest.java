@@ -0,0 +1,109 @@
+package com.spruce.controller;
+
+import com.spruce.config.CborConfig;
+import com.spruce.config.RelayProperties;
+import com.spruce.config.SecurityConfig;
+import com.spruce.model.DeliveryChannel;
+import com.spruce.model.MessagePacket;
+import com.spruce.service.LongPollService;
+import com.spruce.service.MessageService;
+import jakarta.servlet.AsyncEvent;
+import jakarta.servlet.AsyncListener;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.mock.web.MockAsyncContext;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.MvcResult;
+
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.asyncDispatch;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.request;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * Long-poll receives park in the real {@link LongPollService} until woken or timed out.
+ */
+@WebMvcTest(MessageController.class)
+@Import({CborConfig.class, SecurityConfig.class, RelayProperties.class, LongPollService.class})
+class MessageControllerLongPollTest {
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @Autowired
+    LongPollService longPollService;
+
+    @MockBean
+    MessageService messageService;
+
+    @Test
+    void parkedReceiveCompletesWhenWoken() throws Exception {
+        MvcResult parked = mockMvc.perform(get("/api/messages/receive/bob").param("waitMs", "30000"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        assertEquals(1, longPollService.getParkedCount());
+
+        // A wake for the other channel leaves it parked
+        longPollService.wake("bob", DeliveryChannel.HANDSHAKES);
+        Thread.sleep(100);
+        assertEquals(1, longPollService.getParkedCount());
+
+        when(messageService.getMessages(eq("bob"), anyLong(), anyInt())).thenReturn(List.of(packet(7)));
+        longPollService.wake("bob", DeliveryChannel.MESSAGES);
+        parked.getAsyncResult(5_000);
+        mockMvc.perform(asyncDispatch(parked))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.messages[0].seq").value(7))
+            .andExpect(jsonPath("$.cursor").value(7));
+        assertEquals(0, longPollService.getParkedCount());
+        assertEquals(0, longPollService.getParkedUserCount());
+    }
+
+    @Test
+    void receiveWithDataQueuedDoesNotPark() throws Exception {
+        when(messageService.hasMessages(eq("bob"), anyLong())).thenReturn(true);
+        when(messageService.getMessages(eq("bob"), anyLong(), anyInt())).thenReturn(List.of(packet(3)));
+        MvcResult result = mockMvc.perform(get("/api/messages/receive/bob").param("waitMs", "30000"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        result.getAsyncResult(0);
+        mockMvc.perform(asyncDispatch(result))
+            .andExpect(jsonPath("$.messages[0].seq").value(3));
+    }
+
+    @Test
+    void timedOutReceiveReturnsNothingAndUnparks() throws Exception {
+        MvcResult parked = mockMvc.perform(get("/api/messages/receive/bob").param("waitMs", "50").param("after", "4"))
+            .andExpect(request().asyncStarted())
+            .andReturn();
+        assertEquals(1, longPollService.getParkedCount());
+
+        // The servlet container's timeout, which MockMvc never fires on its own
+        MockAsyncContext context = (MockAsyncContext) parked.getRequest().getAsyncContext();
+        for (AsyncListener listener : context.getListeners()) {
+            listener.onTimeout(new AsyncEvent(context));
+        }
+        mockMvc.perform(asyncDispatch(parked))
+            .andExpect(status().isOk())
+            .andExpect(jsonPath("$.messages").isEmpty())
+            .andExpect(jsonPath("$.cursor").value(4));
+        assertEquals(0, longPollService.getParkedCount());
+    }
+
+    private static MessagePacket packet(long seq) {
+        MessagePacket packet = new MessagePacket("alice", "bob", "AQID", "bm9uY2U=", null);
+        packet.setSeq(seq);
+        return packet;
+    }
+}
@@ -0,0 +1,114 @@
+package com.spruce.controller;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.dataformat.cbor.databind.CBORMapper;
+import com.spruce.config.CborConfig;
+import com.spruce.config.RelayProperties;
+import com.spruce.config.SecurityConfig;
+import com.spruce.model.MessagePacket;
+import com.spruce.service.LongPollService;
+import com.spruce.service.MessageService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.autoconfigure.web.servlet.WebMvcTest;
+import org.springframework.boot.test.mock.mockito.MockBean;
+import org.springframework.context.annotation.Import;
+import org.springframework.http.MediaType;
+import org.springframework.test.web.servlet.MockMvc;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.jsonPath;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+/**
+ * One handler per endpoint, with JSON or CBOR chosen by content negotiation.
+ */
+@WebMvcTest(MessageController.class)
+@Import({CborConfig.class, SecurityConfig.class, RelayProperties.class})
+class MessageControllerNegotiationTest {
+
+    private static final byte[] CIPHERTEXT = {1, 2, 3, (byte) 0xff};
+    private static final CBORMapper CBOR = new CBORMapper();
+
+    @Autowired
+    MockMvc mockMvc;
+
+    @MockBean
+    MessageService messageService;
+
+    @MockBean
+    LongPollService longPollService;
+
+    @BeforeEach
+    void queueOneMessage() {
+        MessagePacket packet = new MessagePacket("alice", "bob", Base64.getEncoder().encodeToString(CIPHERTEXT), "bm9uY2U=", null);
+        packet.setSeq(1);
+        when(messageService.getMessages(eq("bob"), anyLong(), anyInt())).thenReturn(List.of(packet));
+    }
+
+    @Test
+    void clientsThatAcceptAnythingGetJson() throws Exception {
+        mockMvc.perform(get("/api/messages/receive/bob").accept(MediaType.ALL))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON))
+            .andExpect(jsonPath("$.messages[0].encryptedContent").value(Base64.getEncoder().encodeToString(CIPHERTEXT)));
+    }
+
+    @Test
+    void clientsThatSendNoAcceptGetJson() throws Exception {
+        mockMvc.perform(get("/api/messages/receive/bob"))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+    }
+
+    @Test
+    void binaryClientsGetRawBytes() throws Exception {
+        byte[] body = mockMvc.perform(get("/api/messages/receive/bob").accept(MediaType.APPLICATION_CBOR))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_CBOR))
+            .andReturn().getResponse().getContentAsByteArray();
+
+        JsonNode message = CBOR.readTree(body).get("messages").get(0);
+        assertTrue(message.get("content").isBinary());
+        assertArrayEquals(CIPHERTEXT, message.get("content").binaryValue());
+        assertEquals(1, message.get("seq").asLong());
+    }
+
+    @Test
+    void binarySendsAreStoredAsBase64AndTextStaysText() throws Exception {
+        byte[] message = CBOR.writeValueAsBytes(Map.of("sender", "alice", "recipient", "bob",
+            "content", CIPHERTEXT, "nonce", new byte[] {9}));
+        mockMvc.perform(post("/api/messages/send").contentType(MediaType.APPLICATION_CBOR).content(message))
+            .andExpect(status().isOk())
+            .andExpect(content().contentTypeCompatibleWith(MediaType.APPLICATION_JSON));
+        ArgumentCaptor<MessagePacket> sent = ArgumentCaptor.forClass(MessagePacket.class);
+        verify(messageService).storeMessage(sent.capture());
+        assertEquals(Base64.getEncoder().encodeToString(CIPHERTEXT), sent.getValue().getEncryptedContent());
+        assertEquals("CQ==", sent.getValue().getNonce());
+
+        String handshakeJson = new ObjectMapper().writeValueAsString(Map.of("kyberCiphertext", "abc"));
+        byte[] handshake = CBOR.writeValueAsBytes(Map.of("sender", "alice", "recipient", "bob", "content", handshakeJson));
+        mockMvc.perform(post("/api/messages/handshake").contentType(MediaType.APPLICATION_CBOR).content(handshake))
+            .andExpect(status().isOk());
+        ArgumentCaptor<MessagePacket> handshakeSent = ArgumentCaptor.forClass(MessagePacket.class);
+        verify(messageService).storeHandshakeData(eq("bob"), handshakeSent.capture());
+        assertEquals(handshakeJson, handshakeSent.getValue().getEncryptedContent());
+    }
+}
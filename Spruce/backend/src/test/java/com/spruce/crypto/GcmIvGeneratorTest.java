@@ -0,0 +1,62 @@
+package com.spruce.crypto;
+
+import com.spruce.config.CryptoProperties;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * The fixed field of a {@link GcmIvGenerator} with a state file never repeats across
+ * restarts of one instance, nor between instances.
+ */
+class GcmIvGeneratorTest {
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void restartsNeverReuseAFixedField() throws Exception {
+        Path stateFile = directory.resolve("iv/state");
+        Set<String> ivs = new HashSet<>();
+        for (int boot = 0; boot < 3; boot++) {
+            GcmIvGenerator generator = new GcmIvGenerator(new RandomSource(new CryptoProperties()), properties(stateFile, 7));
+            assertEquals(7 << 24 | boot, generator.getFixedField());
+            // Each restart starts its counter from zero again
+            for (int i = 0; i < 10; i++) {
+                assertTrue(ivs.add(Arrays.toString(generator.next())));
+            }
+        }
+        assertEquals("2", Files.readString(stateFile));
+    }
+
+    @Test
+    void instancesDifferInTheTopByte() {
+        GcmIvGenerator first = new GcmIvGenerator(new RandomSource(new CryptoProperties()), properties(directory.resolve("a"), 1));
+        GcmIvGenerator second = new GcmIvGenerator(new RandomSource(new CryptoProperties()), properties(directory.resolve("b"), 2));
+        assertEquals(1, first.getFixedField() >>> 24);
+        assertEquals(2, second.getFixedField() >>> 24);
+    }
+
+    @Test
+    void exhaustedStateIsRefused() throws Exception {
+        Path stateFile = directory.resolve("state");
+        Files.writeString(stateFile, Integer.toString(GcmIvGenerator.MAX_BOOTS - 1));
+        assertThrows(IllegalStateException.class, () -> GcmIvGenerator.nextBoot(stateFile));
+    }
+
+    private static CryptoProperties properties(Path stateFile, int instanceId) {
+        CryptoProperties properties = new CryptoProperties();
+        properties.getIv().setStateFile(stateFile.toString());
+        properties.getIv().setInstanceId(instanceId);
+        return properties;
+    }
+}
@@ -0,0 +1,58 @@
+package com.spruce.crypto;
+
+import org.bouncycastle.crypto.generators.X25519KeyPairGenerator;
+import org.bouncycastle.crypto.params.X25519KeyGenerationParameters;
+import org.junit.jupiter.api.Test;
+
+import java.security.SecureRandom;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * A {@link KeyPairPool} generates nothing until something takes from it.
+ */
+class KeyPairPoolTest {
+
+    @Test
+    void refillStartsOnFirstPoll() throws InterruptedException {
+        KeyPairPool pool = new KeyPairPool("lazy", generator(), 4, 1000);
+        try {
+            Thread.sleep(100);
+            assertFalse(refillerRunning("lazy"));
+            assertEquals(0, pool.size());
+
+            // The first take is a miss; the pool fills behind it
+            assertNull(pool.poll());
+            long deadline = System.currentTimeMillis() + 5_000;
+            while (pool.size() < 4 && System.currentTimeMillis() < deadline) {
+                Thread.sleep(10);
+            }
+            assertEquals(4, pool.size());
+            assertTrue(refillerRunning("lazy"));
+        } finally {
+            pool.stop();
+        }
+    }
+
+    @Test
+    void stoppedPoolNeverStarts() {
+        KeyPairPool pool = new KeyPairPool("stopped", generator(), 4, 1000);
+        pool.stop();
+        assertNull(pool.poll());
+        assertFalse(refillerRunning("stopped"));
+    }
+
+    private static X25519KeyPairGenerator generator() {
+        X25519KeyPairGenerator generator = new X25519KeyPairGenerator();
+        generator.init(new X25519KeyGenerationParameters(new SecureRandom()));
+        return generator;
+    }
+
+    private static boolean refillerRunning(String name) {
+        return Thread.getAllStackTraces().keySet().stream()
+            .anyMatch(thread -> thread.getName().equals(name + "-keypool") && thread.isAlive());
+    }
+}
@@ -0,0 +1,138 @@
+package com.spruce.queue;
+
+import com.spruce.model.MessagePacket;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.LongAdder;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.junit.jupiter.api.Assertions.fail;
+
+/**
+ * Many senders hammering one recipient's queue while a single consumer reads and
+ * acknowledges, under each overflow policy.
+ */
+class RecipientQueueStressTest {
+
+    private static final int PRODUCERS = 8;
+    private static final int PACKETS_PER_PRODUCER = 5_000;
+    private static final int CAPACITY = 256;
+    private static final int READ_BATCH = 64;
+    private static final long TIMEOUT_SECONDS = 60;
+
+    @ParameterizedTest
+    @EnumSource(OverflowPolicy.class)
+    void everyPacketIsDeliveredOrAccountedFor(OverflowPolicy policy) throws Exception {
+        RecipientQueue queue = new RecipientQueue("bob", CAPACITY, policy);
+        int total = PRODUCERS * PACKETS_PER_PRODUCER;
+        ConcurrentLinkedQueue<MessagePacket> accepted = new ConcurrentLinkedQueue<>();
+        LongAdder refused = new LongAdder();
+        AtomicBoolean producing = new AtomicBoolean(true);
+        CountDownLatch start = new CountDownLatch(1);
+
+        ExecutorService pool = Executors.newFixedThreadPool(PRODUCERS + 1);
+        try {
+            List<Future<?>> producers = new ArrayList<>();
+            for (int p = 0; p < PRODUCERS; p++) {
+                String sender = "sender-" + p;
+                producers.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < PACKETS_PER_PRODUCER; i++) {
+                        MessagePacket packet = new MessagePacket(sender, "bob", "payload", "nonce", null);
+                        packet.setMessageId(sender + "/" + i);
+                        try {
+                            queue.offer(packet);
+                            accepted.add(packet);
+                        } catch (QueueFullException e) {
+                            refused.increment();
+                        }
+                    }
+                    return null;
+                }));
+            }
+            Future<Consumed> consumer = pool.submit(() -> consume(queue, producing));
+
+            start.countDown();
+            for (Future<?> producer : producers) {
+                producer.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            }
+            producing.set(false);
+            Consumed consumed = consumer.get(TIMEOUT_SECONDS, TimeUnit.SECONDS);
+            long acceptedCount = accepted.size();
+
+            // Every packet was acknowledged, evicted or refused, exactly once
+            assertEquals(refused.sum(), queue.getRejectedCount(), "rejections counted by the queue");
+            assertEquals(total, consumed.acknowledged + queue.getDroppedCount() + queue.getRejectedCount(),
+                "acknowledged + dropped + rejected");
+            assertEquals(total - refused.sum(), acceptedCount, "accepted packets");
+            if (policy != OverflowPolicy.REJECT) {
+                assertEquals(0, queue.getRejectedCount(), policy + " never rejects");
+            }
+            if (policy != OverflowPolicy.DROP_OLDEST) {
+                assertEquals(0, queue.getDroppedCount(), policy + " never drops");
+                assertEquals(acceptedCount, consumed.messageIds.size(), "every accepted packet read");
+            }
+
+            // Accepted packets hold exactly the seqs 1..n: none skipped, none given out twice
+            Set<Long> seqs = new HashSet<>();
+            for (MessagePacket packet : accepted) {
+                assertTrue(seqs.add(packet.getSeq()), "seq " + packet.getSeq() + " assigned twice");
+            }
+            for (long seq = 1; seq <= acceptedCount; seq++) {
+                assertTrue(seqs.contains(seq), "seq " + seq + " missing");
+            }
+
+            // The consumer saw each packet once, in seq order, and only packets that were accepted
+            Set<String> acceptedIds = new HashSet<>();
+            accepted.forEach(packet -> acceptedIds.add(packet.getMessageId()));
+            assertTrue(acceptedIds.containsAll(consumed.messageIds), "read a packet that was never accepted");
+            assertEquals(acceptedCount - queue.getDroppedCount(), consumed.acknowledged, "unread packets were dropped");
+
+            assertEquals(0, queue.size(), "queue drained");
+            assertEquals(0, queue.getQueuedBytes(), "byte quota released");
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static Consumed consume(RecipientQueue queue, AtomicBoolean producing) {
+        Consumed consumed = new Consumed();
+        long cursor = 0;
+        while (producing.get() || !queue.isEmpty()) {
+            List<MessagePacket> packets = queue.readAfter(cursor, READ_BATCH);
+            if (packets.isEmpty()) {
+                Thread.onSpinWait();
+                continue;
+            }
+            for (MessagePacket packet : packets) {
+                if (packet.getSeq() <= cursor) {
+                    fail("seq " + packet.getSeq() + " read after " + cursor);
+                }
+                cursor = packet.getSeq();
+                if (!consumed.messageIds.add(packet.getMessageId())) {
+                    fail("packet " + packet.getMessageId() + " read twice");
+                }
+            }
+            consumed.acknowledged += queue.acknowledge(cursor);
+        }
+        return consumed;
+    }
+
+    private static final class Consumed {
+        private final Set<String> messageIds = new HashSet<>();
+        private long acknowledged;
+    }
+}
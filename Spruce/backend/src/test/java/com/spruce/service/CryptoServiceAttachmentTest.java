@@ -0,0 +1,108 @@
+package com.spruce.service;
+
+import com.spruce.config.CryptoProperties;
+import com.spruce.crypto.AttachmentFormat;
+import com.spruce.crypto.EphemeralKeyPools;
+import com.spruce.crypto.GcmIvGenerator;
+import com.spruce.crypto.RandomSource;
+import com.spruce.crypto.SessionKeyCache;
+import com.spruce.crypto.VerificationExecutor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.channels.Channels;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.mockito.Mockito.mock;
+
+/**
+ * Chunked AES-GCM attachments round-trip at any size and refuse any change to the
+ * chunks, their order or their number.
+ */
+class CryptoServiceAttachmentTest {
+
+    private static final int CHUNK = 1024;
+
+    private CryptoService cryptoService;
+    private byte[] key;
+
+    @BeforeEach
+    void create() {
+        CryptoProperties properties = new CryptoProperties();
+        properties.getKeyPool().setX25519Depth(0);
+        properties.getKeyPool().setKyberDepth(0);
+        RandomSource randomSource = new RandomSource(properties);
+        cryptoService = new CryptoService(mock(LogService.class), new SessionKeyCache(properties),
+            new EphemeralKeyPools(properties, randomSource), new VerificationExecutor(properties), randomSource,
+            new GcmIvGenerator(randomSource));
+        key = new byte[32];
+        new Random(1).nextBytes(key);
+    }
+
+    @Test
+    void roundTripsOnAndOffChunkBoundaries() throws IOException {
+        for (int size : new int[] {0, 1, CHUNK - 1, CHUNK, CHUNK + 1, 3 * CHUNK}) {
+            byte[] plaintext = plaintext(size);
+            byte[] sealed = encrypt(plaintext);
+            int chunks = Math.max(1, (size + CHUNK - 1) / CHUNK);
+            assertEquals(AttachmentFormat.HEADER_LENGTH + size + chunks * AttachmentFormat.TAG_LENGTH, sealed.length, "size " + size);
+            assertArrayEquals(plaintext, decrypt(sealed), "size " + size);
+        }
+    }
+
+    @Test
+    void sameFileSealsDifferentlyEachTime() throws IOException {
+        byte[] plaintext = plaintext(CHUNK);
+        assertFalse(Arrays.equals(encrypt(plaintext), encrypt(plaintext)));
+    }
+
+    @Test
+    void tamperedFilesAreRefused() throws IOException {
+        byte[] sealed = encrypt(plaintext(3 * CHUNK));
+        int sealedChunk = CHUNK + AttachmentFormat.TAG_LENGTH;
+
+        byte[] flipped = sealed.clone();
+        flipped[AttachmentFormat.HEADER_LENGTH + sealedChunk + 5] ^= 1;
+        assertThrows(RuntimeException.class, () -> decrypt(flipped));
+
+        // Truncated at a chunk boundary: the new last chunk was not sealed as final
+        byte[] truncated = Arrays.copyOf(sealed, AttachmentFormat.HEADER_LENGTH + 2 * sealedChunk);
+        assertThrows(RuntimeException.class, () -> decrypt(truncated));
+
+        byte[] swapped = sealed.clone();
+        System.arraycopy(sealed, AttachmentFormat.HEADER_LENGTH, swapped, AttachmentFormat.HEADER_LENGTH + sealedChunk, sealedChunk);
+        System.arraycopy(sealed, AttachmentFormat.HEADER_LENGTH + sealedChunk, swapped, AttachmentFormat.HEADER_LENGTH, sealedChunk);
+        assertThrows(RuntimeException.class, () -> decrypt(swapped));
+
+        byte[] wrongKey = key.clone();
+        wrongKey[0] ^= 1;
+        assertThrows(RuntimeException.class, () -> cryptoService.decryptAttachment(
+            Channels.newChannel(new ByteArrayInputStream(sealed)), Channels.newChannel(new ByteArrayOutputStream()), wrongKey));
+    }
+
+    private byte[] encrypt(byte[] plaintext) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cryptoService.encryptAttachment(Channels.newChannel(new ByteArrayInputStream(plaintext)), Channels.newChannel(out), key, CHUNK);
+        return out.toByteArray();
+    }
+
+    private byte[] decrypt(byte[] sealed) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        cryptoService.decryptAttachment(Channels.newChannel(new ByteArrayInputStream(sealed)), Channels.newChannel(out), key);
+        return out.toByteArray();
+    }
+
+    private static byte[] plaintext(int size) {
+        byte[] plaintext = new byte[size];
+        new Random(size).nextBytes(plaintext);
+        return plaintext;
+    }
+}
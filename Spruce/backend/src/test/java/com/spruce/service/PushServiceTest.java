@@ -0,0 +1,117 @@
+package com.spruce.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spruce.config.RelayProperties;
+import com.spruce.model.DeliveryChannel;
+import com.spruce.model.MessagePacket;
+import com.spruce.store.CommitLog;
+import com.spruce.store.InMemoryMessageStore;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.web.socket.TextMessage;
+import org.springframework.web.socket.WebSocketMessage;
+import org.springframework.web.socket.WebSocketSession;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Pushes stay within the window past the last acknowledgement, and a new session replays
+ * whatever is still queued.
+ */
+class PushServiceTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().findAndRegisterModules();
+
+    private InMemoryMessageStore store;
+    private PushService pushService;
+
+    @BeforeEach
+    void open() {
+        RelayProperties properties = new RelayProperties();
+        properties.getPush().setWindow(2);
+        store = new InMemoryMessageStore(properties, new CommitLog(properties, MAPPER));
+        store.recoverQueues();
+        pushService = new PushService(MAPPER, store, properties);
+    }
+
+    @AfterEach
+    void stop() {
+        pushService.shutdown();
+        store.stopSweeper();
+    }
+
+    @Test
+    void pushesStopAtTheWindowUntilAcknowledged() throws Exception {
+        List<MessagePacket> queued = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            MessagePacket packet = new MessagePacket("alice", "bob", "m" + i, "nonce", null);
+            store.append(DeliveryChannel.MESSAGES, packet);
+            queued.add(packet);
+        }
+        List<JsonNode> pushed = Collections.synchronizedList(new ArrayList<>());
+        pushService.register("bob", session("s1", pushed));
+        pushService.replay("bob");
+        assertEquals(List.of("m0", "m1"), contents(awaitPushes(pushed, 2)));
+
+        pushService.acknowledged("bob", DeliveryChannel.MESSAGES, queued.get(0).getSeq());
+        assertEquals(List.of("m0", "m1", "m2"), contents(awaitPushes(pushed, 3)));
+
+        pushService.acknowledged("bob", DeliveryChannel.MESSAGES, queued.get(2).getSeq());
+        assertEquals(List.of("m0", "m1", "m2", "m3", "m4"), contents(awaitPushes(pushed, 5)));
+    }
+
+    @Test
+    void unacknowledgedPushesAreReplayedToTheNextSession() throws Exception {
+        MessagePacket first = new MessagePacket("alice", "bob", "m0", "nonce", null);
+        store.append(DeliveryChannel.MESSAGES, first);
+        store.append(DeliveryChannel.MESSAGES, new MessagePacket("alice", "bob", "m1", "nonce", null));
+
+        List<JsonNode> dropped = Collections.synchronizedList(new ArrayList<>());
+        pushService.register("bob", session("s1", dropped));
+        pushService.replay("bob");
+        awaitPushes(dropped, 2);
+
+        // Only the first was acknowledged before the socket went away
+        store.acknowledge(DeliveryChannel.MESSAGES, "bob", first.getSeq());
+        List<JsonNode> pushed = Collections.synchronizedList(new ArrayList<>());
+        pushService.register("bob", session("s2", pushed));
+        pushService.replay("bob");
+        assertEquals(List.of("m1"), contents(awaitPushes(pushed, 1)));
+    }
+
+    private static WebSocketSession session(String id, List<JsonNode> pushed) throws Exception {
+        WebSocketSession session = mock(WebSocketSession.class);
+        when(session.getId()).thenReturn(id);
+        when(session.isOpen()).thenReturn(true);
+        doAnswer(invocation -> {
+            WebSocketMessage<?> message = invocation.getArgument(0);
+            pushed.add(MAPPER.readTree(((TextMessage) message).getPayload()));
+            return null;
+        }).when(session).sendMessage(any());
+        return session;
+    }
+
+    private static List<JsonNode> awaitPushes(List<JsonNode> pushed, int count) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (pushed.size() < count && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        // Give a push past the window the chance to show up
+        Thread.sleep(100);
+        return new ArrayList<>(pushed);
+    }
+
+    private static List<String> contents(List<JsonNode> frames) {
+        return frames.stream().map(frame -> frame.path("payload").path("encryptedContent").asText()).toList();
+    }
+}
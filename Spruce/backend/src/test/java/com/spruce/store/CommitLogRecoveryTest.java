@@ -0,0 +1,265 @@
+package com.spruce.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spruce.config.RelayProperties;
+import com.spruce.dto.GroupMessageRequest;
+import com.spruce.model.DeliveryChannel;
+import com.spruce.model.MessagePacket;
+import com.spruce.queue.OverflowPolicy;
+import com.spruce.queue.QueueFullException;
+import com.spruce.service.CryptoService;
+import com.spruce.service.LogService;
+import com.spruce.service.LongPollService;
+import com.spruce.service.MessageService;
+import com.spruce.service.PushService;
+import com.spruce.service.UserService;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.EnumSource;
+
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+/**
+ * What a {@link CommitLog} hands back after a restart.
+ */
+class CommitLogRecoveryTest {
+
+    private static final ObjectMapper MAPPER = new ObjectMapper().findAndRegisterModules();
+
+    @TempDir
+    Path directory;
+
+    @Test
+    void unacknowledgedPacketsSurviveRestart() {
+        CommitLog log = open();
+        log.recover();
+        for (int seq = 1; seq <= 3; seq++) {
+            log.append(DeliveryChannel.MESSAGES, packet("bob", seq, "m" + seq));
+        }
+        log.append(DeliveryChannel.HANDSHAKES, packet("bob", 1, "h1"));
+        log.acknowledge(DeliveryChannel.MESSAGES, "bob", 1);
+        log.close();
+
+        Map<DeliveryChannel, CommitLog.RecoveredQueue> recovered = recoverAll().stream()
+            .collect(Collectors.toMap(queue -> queue.channel, Function.identity()));
+        CommitLog.RecoveredQueue messages = recovered.get(DeliveryChannel.MESSAGES);
+        assertEquals(1, messages.ackedSeq);
+        assertEquals(List.of("m2", "m3"), contents(messages));
+        assertEquals(List.of(2L, 3L), messages.packets.stream().map(MessagePacket::getSeq).toList());
+        assertEquals(List.of("h1"), contents(recovered.get(DeliveryChannel.HANDSHAKES)));
+    }
+
+    @Test
+    void acknowledgementsOutliveTheSegmentsTheyWereLoggedIn() {
+        CommitLog log = open();
+        log.recover();
+        String content = "x".repeat(4096);
+        // Several segments' worth, every packet acknowledged right away except the last recipient's
+        for (int i = 0; i < 1000; i++) {
+            log.append(DeliveryChannel.MESSAGES, packet("user-" + i, 1, content));
+            if (i < 999) {
+                log.acknowledge(DeliveryChannel.MESSAGES, "user-" + i, 1);
+            }
+        }
+        log.close();
+
+        List<CommitLog.RecoveredQueue> recovered = recoverAll();
+        List<CommitLog.RecoveredQueue> pending = recovered.stream().filter(queue -> !queue.packets.isEmpty()).toList();
+        assertEquals(1, pending.size());
+        assertEquals("user-999", pending.get(0).recipient);
+    }
+
+    @Test
+    void groupMembersShareTheRecoveredPayload() {
+        CommitLog log = open();
+        log.recover();
+        log.appendPayload("g1", "shared");
+        for (String recipient : List.of("bob", "carol")) {
+            MessagePacket member = packet(recipient, 1, "shared");
+            member.setGroupId("g1");
+            member.setKeyWrap("wrap-" + recipient);
+            log.append(DeliveryChannel.MESSAGES, member);
+        }
+        log.releasePayload("g1");
+        log.close();
+
+        List<CommitLog.RecoveredQueue> recovered = recoverAll();
+        assertEquals(2, recovered.size());
+        MessagePacket first = recovered.get(0).packets.get(0);
+        MessagePacket second = recovered.get(1).packets.get(0);
+        assertEquals("shared", first.getEncryptedContent());
+        assertSame(first.getEncryptedContent(), second.getEncryptedContent());
+    }
+
+    @Test
+    void plainSendCannotBorrowALiveGroupPayload() {
+        RelayProperties properties = properties();
+        CommitLog log = new CommitLog(properties, MAPPER);
+        InMemoryMessageStore store = new InMemoryMessageStore(properties, log);
+        store.recoverQueues();
+        MessageService messageService = new MessageService(mock(LogService.class), mock(LongPollService.class),
+            mock(PushService.class), store, properties, mock(UserService.class), mock(CryptoService.class), MAPPER);
+
+        GroupMessageRequest group = new GroupMessageRequest();
+        group.setSender("alice");
+        group.setEncryptedContent("group-ciphertext");
+        group.setNonce("nonce");
+        group.setRecipients(List.of(new GroupMessageRequest.Recipient("bob", "wrap")));
+        messageService.storeGroupMessage(group);
+        String groupId = store.readAfter(DeliveryChannel.MESSAGES, "bob", 0, 1).get(0).getGroupId();
+        assertNotNull(groupId);
+
+        // The group's payload is still live: bob has not acknowledged his copy
+        MessagePacket forged = new MessagePacket("mallory", "dave", "dave-ciphertext", "nonce", null);
+        forged.setGroupId(groupId);
+        forged.setKeyWrap("forged");
+        forged.setSeq(42);
+        messageService.storeMessage(forged);
+        store.stopSweeper();
+        log.close();
+
+        CommitLog.RecoveredQueue dave = recoverAll().stream()
+            .filter(queue -> queue.recipient.equals("dave")).findFirst().orElseThrow();
+        MessagePacket recovered = dave.packets.get(0);
+        assertEquals("dave-ciphertext", recovered.getEncryptedContent());
+        assertEquals(1, recovered.getSeq());
+        assertEquals(null, recovered.getGroupId());
+        assertEquals(null, recovered.getKeyWrap());
+        assertTrue(recovered.getExpiresAt() > System.currentTimeMillis(), "expiry stamped by the relay");
+    }
+
+    @ParameterizedTest
+    @EnumSource(OverflowPolicy.class)
+    void everyAcceptedSendIsLoggedBeforeItIsAcknowledged(OverflowPolicy policy) {
+        RelayProperties properties = properties();
+        properties.getQueue().setCapacity(4);
+        properties.getQueue().setOverflowPolicy(policy);
+        properties.getCommitLog().setSync(true);
+        CommitLog log = new CommitLog(properties, MAPPER);
+        InMemoryMessageStore store = new InMemoryMessageStore(properties, log);
+        store.recoverQueues();
+
+        List<String> accepted = new ArrayList<>();
+        for (int i = 0; i < 10; i++) {
+            try {
+                store.append(DeliveryChannel.MESSAGES, packet("bob", 0, "m" + i));
+                accepted.add("m" + i);
+            } catch (QueueFullException e) {
+                // Refused: the sender is told so
+            }
+        }
+        List<String> queued = store.readAfter(DeliveryChannel.MESSAGES, "bob", 0, 100).stream()
+            .map(MessagePacket::getEncryptedContent).toList();
+        store.stopSweeper();
+        log.close();
+
+        // Each send returned only after its packet was forced; what is still queued is what comes back
+        assertEquals(policy == OverflowPolicy.REJECT ? List.of("m0", "m1", "m2", "m3") : List.of("m6", "m7", "m8", "m9"), queued);
+        assertTrue(accepted.containsAll(queued));
+        assertEquals(queued, contents(recoverAll().get(0)));
+    }
+
+    @Test
+    void retiredRecipientsResumeAboveTheirLastSeq() {
+        RelayProperties properties = properties();
+        CommitLog log = new CommitLog(properties, MAPPER);
+        InMemoryMessageStore store = new InMemoryMessageStore(properties, log);
+        store.recoverQueues();
+        for (int i = 0; i < 3; i++) {
+            store.append(DeliveryChannel.MESSAGES, packet("bob", 0, "m" + i));
+        }
+        store.acknowledge(DeliveryChannel.MESSAGES, "bob", 3);
+        // Acknowledged traffic for others rolls past bob's segment until his cursor is retired
+        String content = "x".repeat(4096);
+        for (int i = 0; i < 1000; i++) {
+            MessagePacket packet = packet("user-" + i, 0, content);
+            store.append(DeliveryChannel.MESSAGES, packet);
+            store.acknowledge(DeliveryChannel.MESSAGES, "user-" + i, packet.getSeq());
+        }
+        store.stopSweeper();
+        log.close();
+
+        CommitLog reopened = new CommitLog(properties, MAPPER);
+        InMemoryMessageStore restarted = new InMemoryMessageStore(properties, reopened);
+        restarted.recoverQueues();
+        try {
+            assertTrue(reopened.getSeqFloor() >= 3, "floor persisted in the checkpoint");
+            MessagePacket next = packet("bob", 0, "after restart");
+            restarted.append(DeliveryChannel.MESSAGES, next);
+            assertTrue(next.getSeq() > 3, "seq " + next.getSeq() + " reused");
+            // A client still holding cursor 3 sees the new packet
+            assertEquals(List.of("after restart"), restarted.readAfter(DeliveryChannel.MESSAGES, "bob", 3, 10).stream()
+                .map(MessagePacket::getEncryptedContent).toList());
+        } finally {
+            restarted.stopSweeper();
+            reopened.close();
+        }
+    }
+
+    @Test
+    void epochLastsAsLongAsTheLog() {
+        CommitLog log = open();
+        log.recover();
+        long epoch = log.getEpoch();
+        log.close();
+
+        CommitLog reopened = open();
+        reopened.recover();
+        reopened.close();
+        assertEquals(epoch, reopened.getEpoch());
+    }
+
+    @Test
+    void appendsFailOnceTheLogIsClosed() {
+        CommitLog log = open();
+        log.recover();
+        log.close();
+        assertThrows(IllegalStateException.class, () -> log.append(DeliveryChannel.MESSAGES, packet("bob", 1, "late")));
+    }
+
+    private List<CommitLog.RecoveredQueue> recoverAll() {
+        CommitLog log = open();
+        try {
+            return log.recover();
+        } finally {
+            log.close();
+        }
+    }
+
+    private CommitLog open() {
+        return new CommitLog(properties(), MAPPER);
+    }
+
+    private RelayProperties properties() {
+        RelayProperties properties = new RelayProperties();
+        RelayProperties.CommitLog config = properties.getCommitLog();
+        config.setEnabled(true);
+        config.setDirectory(directory.toString());
+        config.setSegmentSizeMb(1);
+        config.setSync(false);
+        return properties;
+    }
+
+    private static MessagePacket packet(String recipient, long seq, String content) {
+        MessagePacket packet = new MessagePacket("alice", recipient, content, "nonce", null);
+        packet.setSeq(seq);
+        return packet;
+    }
+
+    private static List<String> contents(CommitLog.RecoveredQueue queue) {
+        return queue.packets.stream().map(MessagePacket::getEncryptedContent).toList();
+    }
+}
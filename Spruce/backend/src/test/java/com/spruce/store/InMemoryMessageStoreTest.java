@@ -0,0 +1,158 @@
+package com.spruce.store;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.spruce.config.RelayProperties;
+import com.spruce.model.DeliveryChannel;
+import com.spruce.model.MessagePacket;
+import com.spruce.queue.QueueFullException;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+/**
+ * Queue lifecycle of the {@link InMemoryMessageStore} without the commit log: removal of
+ * drained queues, expiry and quotas.
+ */
+class InMemoryMessageStoreTest {
+
+    private InMemoryMessageStore store;
+
+    @AfterEach
+    void stop() {
+        if (store != null) {
+            store.stopSweeper();
+        }
+    }
+
+    @Test
+    void drainedQueuesAreRemovedAndSeqsKeepIncreasing() {
+        store = open(new RelayProperties());
+        store.append(DeliveryChannel.MESSAGES, packet("bob", "m1"));
+        store.append(DeliveryChannel.MESSAGES, packet("bob", "m2"));
+        assertEquals(2, store.acknowledge(DeliveryChannel.MESSAGES, "bob", 2));
+        assertTrue(store.queueSizes(DeliveryChannel.MESSAGES).isEmpty());
+
+        MessagePacket next = packet("bob", "m3");
+        store.append(DeliveryChannel.MESSAGES, next);
+        assertTrue(next.getSeq() > 2, "seq " + next.getSeq() + " reused");
+        // A client still holding cursor 2 sees the new packet
+        assertEquals(List.of("m3"), contents(store.readAfter(DeliveryChannel.MESSAGES, "bob", 2, 10)));
+    }
+
+    @Test
+    void madeUpRecipientsDoNotAccumulate() {
+        store = open(new RelayProperties());
+        for (int i = 0; i < 1000; i++) {
+            store.append(DeliveryChannel.MESSAGES, packet("nobody-" + i, "m"));
+            store.clear(DeliveryChannel.MESSAGES, "nobody-" + i);
+        }
+        assertTrue(store.queueSizes(DeliveryChannel.MESSAGES).isEmpty());
+    }
+
+    @Test
+    void expiredPacketsAreSweptAndCounted() throws InterruptedException {
+        RelayProperties properties = new RelayProperties();
+        properties.getRetention().setSweepIntervalMs(10);
+        store = open(properties);
+        MessagePacket packet = packet("bob", "short-lived");
+        packet.setExpiresAt(System.currentTimeMillis() + 50);
+        store.append(DeliveryChannel.MESSAGES, packet);
+        store.append(DeliveryChannel.MESSAGES, packet("bob", "kept"));
+
+        long deadline = System.currentTimeMillis() + 5_000;
+        while (store.expiredCount() == 0 && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(1, store.expiredCount());
+        assertEquals(List.of("kept"), contents(store.readAfter(DeliveryChannel.MESSAGES, "bob", 0, 10)));
+
+        store.acknowledge(DeliveryChannel.MESSAGES, "bob", 2);
+        // Counted even after the queue has been removed
+        assertTrue(store.queueSizes(DeliveryChannel.MESSAGES).isEmpty());
+        assertEquals(1, store.expiredCount());
+    }
+
+    @Test
+    void byteQuotaRejectsUntilAcknowledged() {
+        RelayProperties properties = new RelayProperties();
+        properties.getQueue().setMaxBytes(100);
+        store = open(properties);
+        String content = "x".repeat(60);
+        store.append(DeliveryChannel.MESSAGES, packet("bob", content));
+        assertThrows(QueueFullException.class, () -> store.append(DeliveryChannel.MESSAGES, packet("bob", content)));
+        assertEquals(1, store.rejectedCount());
+
+        store.acknowledge(DeliveryChannel.MESSAGES, "bob", 1);
+        store.append(DeliveryChannel.MESSAGES, packet("bob", content));
+        assertEquals(1, store.queueSizes(DeliveryChannel.MESSAGES).get("bob"));
+    }
+
+    @Test
+    void appendsRacingQueueRemovalAreNeitherLostNorReordered() throws Exception {
+        store = open(new RelayProperties());
+        int producers = 4;
+        int perProducer = 2_000;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService pool = Executors.newFixedThreadPool(producers);
+        try {
+            List<Future<?>> futures = new ArrayList<>();
+            for (int p = 0; p < producers; p++) {
+                String sender = "sender-" + p;
+                futures.add(pool.submit(() -> {
+                    start.await();
+                    for (int i = 0; i < perProducer; i++) {
+                        store.append(DeliveryChannel.MESSAGES, packet("bob", sender + "/" + i));
+                    }
+                    return null;
+                }));
+            }
+            start.countDown();
+
+            // Acknowledge everything read, so the queue keeps emptying and being replaced
+            Set<String> delivered = new HashSet<>();
+            long cursor = 0;
+            long deadline = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(60);
+            while (delivered.size() < producers * perProducer && System.currentTimeMillis() < deadline) {
+                for (MessagePacket packet : store.readAfter(DeliveryChannel.MESSAGES, "bob", cursor, 64)) {
+                    assertTrue(packet.getSeq() > cursor, "seq went back from " + cursor + " to " + packet.getSeq());
+                    assertTrue(delivered.add(packet.getEncryptedContent()), "delivered twice: " + packet.getEncryptedContent());
+                    cursor = packet.getSeq();
+                }
+                store.acknowledge(DeliveryChannel.MESSAGES, "bob", cursor);
+            }
+            for (Future<?> future : futures) {
+                future.get(60, TimeUnit.SECONDS);
+            }
+            assertEquals(producers * perProducer, delivered.size());
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static InMemoryMessageStore open(RelayProperties properties) {
+        InMemoryMessageStore store = new InMemoryMessageStore(properties, new CommitLog(properties, new ObjectMapper()));
+        store.recoverQueues();
+        return store;
+    }
+
+    private static MessagePacket packet(String recipient, String content) {
+        return new MessagePacket("alice", recipient, content, "nonce", null);
+    }
+
+    private static List<String> contents(List<MessagePacket> packets) {
+        return packets.stream().map(MessagePacket::getEncryptedContent).toList();
+    }
+}
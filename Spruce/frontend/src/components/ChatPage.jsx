@@ -164,8 +164,9 @@ function ChatPage() {
         }
       }
       
-      // Clear messages after processing
-      await apiService.clearMessages(user.username)
+      // Acknowledge what was processed; receives are paged, so more may be waiting
+      const lastSeq = Math.max(...messagePackets.map((packet) => packet.seq))
+      await apiService.acknowledgeMessages(user.username, lastSeq)
     } catch (error) {
       console.error('Message processing failed:', error)
       setError('Failed to process messages: ' + error.message)
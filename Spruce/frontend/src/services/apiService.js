@@ -35,6 +35,21 @@ api.interceptors.response.use(
   }
 )
 
+// A receive cursor: pass the same object to every receive call to read only what is new.
+// The relay ignores a cursor from an earlier epoch (its sequence numbers restarted) and
+// reads from the start, so the cursor simply takes whatever position and epoch come back.
+export const createCursor = () => ({ after: 0, epoch: null })
+
+const cursorParams = (cursor) =>
+  cursor ? { after: cursor.after, ...(cursor.epoch !== null && { epoch: cursor.epoch }) } : {}
+
+const advanceCursor = (cursor, data) => {
+  if (cursor && data?.success) {
+    cursor.after = data.cursor
+    cursor.epoch = data.epoch
+  }
+}
+
 export const apiService = {
   // Authentication endpoints
   async login(username, password) {
@@ -99,15 +114,25 @@ export const apiService = {
     }
   },
 
-  async receiveMessages(username) {
+  async receiveMessages(username, cursor) {
     try {
-      const response = await api.get(`/messages/receive/${username}`)
+      const response = await api.get(`/messages/receive/${username}`, { params: cursorParams(cursor) })
+      advanceCursor(cursor, response.data)
       return response.data
     } catch (error) {
       throw new Error(error.response?.data?.message || 'Failed to receive messages')
     }
   },
 
+  async acknowledgeMessages(username, upTo) {
+    try {
+      const response = await api.post(`/messages/ack/${username}`, null, { params: { upTo } })
+      return response.data
+    } catch (error) {
+      throw new Error(error.response?.data?.message || 'Failed to acknowledge messages')
+    }
+  },
+
   async clearMessages(username) {
     try {
       const response = await api.delete(`/messages/clear/${username}`)
@@ -126,9 +151,10 @@ export const apiService = {
     }
   },
 
-  async receiveHandshake(username) {
+  async receiveHandshake(username, cursor) {
     try {
-      const response = await api.get(`/messages/handshake/${username}`)
+      const response = await api.get(`/messages/handshake/${username}`, { params: cursorParams(cursor) })
+      advanceCursor(cursor, response.data)
       return response.data
     } catch (error) {
       throw new Error(error.response?.data?.message || 'Failed to receive handshake')